@@ -3,10 +3,12 @@ package com.yuesf.aireader;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.mybatis.spring.annotation.MapperScan;
 
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 @MapperScan(basePackages = {"com.yuesf.aireader.mapper", "com.yuesf.aireader.mapper.tracking"})
 public class AiReaderApplication {
 
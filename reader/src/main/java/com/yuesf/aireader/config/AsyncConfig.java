@@ -1,11 +1,13 @@
 package com.yuesf.aireader.config;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 异步任务配置
@@ -27,4 +29,41 @@ public class AsyncConfig implements AsyncConfigurer {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * PDF渲染专用线程池
+     * 渲染是CPU密集型任务，线程数按CPU核数设置，队列有界且满时拒绝，
+     * 避免突发的渲染请求占满Tomcat工作线程、拖慢其他接口
+     */
+    @Bean("pdfRenderExecutor")
+    public ThreadPoolTaskExecutor pdfRenderExecutor(PdfConfig pdfConfig) {
+        PdfConfig.RenderConfig config = pdfConfig.getRender();
+        int threads = config.getThreads() > 0 ? config.getThreads() : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(config.getQueueCapacity());
+        executor.setThreadNamePrefix("pdf-render-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy()); // 队列满时拒绝，由调用方返回503
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * PDF上传后优化线程池
+     * 线性化和图片重压缩耗时较长，单线程顺序处理，不与页面渲染争抢CPU
+     */
+    @Bean("pdfOptimizeExecutor")
+    public ThreadPoolTaskExecutor pdfOptimizeExecutor(PdfConfig pdfConfig) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(pdfConfig.getOptimize().getQueueCapacity());
+        executor.setThreadNamePrefix("pdf-optimize-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy()); // 队列满时跳过，原文件仍可正常访问
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
 }
@@ -0,0 +1,70 @@
+package com.yuesf.aireader.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 进程内缓存配置
+ * 缓存热点数据库查询结果，数据变更时主动失效，过期时间兜底多实例间的不一致
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheConfig {
+
+    /**
+     * 文件信息缓存配置
+     */
+    private CacheSpec fileInfo = new CacheSpec();
+
+    /**
+     * 报告详情缓存配置
+     */
+    private CacheSpec reportDetail = new CacheSpec(5000, Duration.ofMinutes(5), Duration.ofSeconds(30));
+
+    /**
+     * 报告列表缓存配置
+     */
+    private CacheSpec reportList = new CacheSpec(2000, Duration.ofSeconds(60), Duration.ZERO);
+
+    /**
+     * 缓存规格
+     */
+    @Getter
+    @Setter
+    public static class CacheSpec {
+        /**
+         * 是否启用
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最大条目数
+         */
+        private int maxSize = 10000;
+
+        /**
+         * 条目存活时间
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * 不存在的键（空结果）的缓存时间，为0时不缓存
+         */
+        private Duration negativeTtl = Duration.ofSeconds(30);
+
+        public CacheSpec() {
+        }
+
+        public CacheSpec(int maxSize, Duration ttl, Duration negativeTtl) {
+            this.maxSize = maxSize;
+            this.ttl = ttl;
+            this.negativeTtl = negativeTtl;
+        }
+    }
+}
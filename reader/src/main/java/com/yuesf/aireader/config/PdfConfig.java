@@ -0,0 +1,311 @@
+package com.yuesf.aireader.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * PDF预览相关配置
+ * 包括页图磁盘缓存、已解析文档池、OSS对象本地镜像等
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.pdf")
+public class PdfConfig {
+
+    /**
+     * 页图磁盘缓存配置
+     */
+    private PageCacheConfig pageCache = new PageCacheConfig();
+
+    /**
+     * 已解析文档池配置
+     */
+    private DocumentPoolConfig documentPool = new DocumentPoolConfig();
+
+    /**
+     * OSS对象本地镜像配置
+     */
+    private MirrorConfig mirror = new MirrorConfig();
+
+    /**
+     * 后台预渲染配置
+     */
+    private PrerenderConfig prerender = new PrerenderConfig();
+
+    /**
+     * 渲染线程池配置
+     */
+    private RenderConfig render = new RenderConfig();
+
+    /**
+     * 瓦片渲染配置
+     */
+    private TileConfig tile = new TileConfig();
+
+    /**
+     * 文档加载配置
+     */
+    private LoaderConfig loader = new LoaderConfig();
+
+    /**
+     * 上传后优化（线性化）配置
+     */
+    private OptimizeConfig optimize = new OptimizeConfig();
+
+    /**
+     * 页图磁盘缓存配置类
+     */
+    @Getter
+    @Setter
+    public static class PageCacheConfig {
+        /**
+         * 是否启用页图缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓存目录
+         */
+        private String dir = System.getProperty("java.io.tmpdir") + "/ai-reader/page-cache";
+
+        /**
+         * 磁盘占用上限
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(2);
+
+        /**
+         * 最大缓存条目数
+         */
+        private int maxEntries = 20000;
+    }
+
+    /**
+     * 已解析文档池配置类
+     */
+    @Getter
+    @Setter
+    public static class DocumentPoolConfig {
+        /**
+         * 是否启用文档池，关闭后每次渲染都重新下载并解析
+         */
+        private boolean enabled = true;
+
+        /**
+         * 常驻文档的估算内存预算（按文件大小 x 句柄数估算）
+         */
+        private DataSize maxMemory = DataSize.ofMegabytes(512);
+
+        /**
+         * 最多常驻的文档数
+         */
+        private int maxDocuments = 32;
+
+        /**
+         * 单个文档最多同时打开的句柄数（PDDocument 非线程安全，每个句柄同一时刻只借给一个线程）
+         */
+        private int maxHandlesPerDocument = 2;
+
+        /**
+         * 空闲多久后关闭文档
+         */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * 借用句柄的最长等待时间
+         */
+        private Duration borrowTimeout = Duration.ofSeconds(30);
+    }
+
+    /**
+     * OSS对象本地镜像配置类
+     */
+    @Getter
+    @Setter
+    public static class MirrorConfig {
+        /**
+         * 镜像文件目录
+         */
+        private String dir = System.getProperty("java.io.tmpdir") + "/ai-reader/oss-mirror";
+
+        /**
+         * 磁盘配额（按已拉取字节计算）
+         */
+        private DataSize maxSize = DataSize.ofGigabytes(5);
+
+        /**
+         * 拉取块大小，缺失区间按此大小对齐后再请求OSS，减少碎片化的小请求
+         */
+        private DataSize blockSize = DataSize.ofMegabytes(1);
+
+        /**
+         * 多久未访问后淘汰
+         */
+        private Duration expireAfterAccess = Duration.ofHours(2);
+    }
+
+    /**
+     * 后台预渲染配置类
+     */
+    @Getter
+    @Setter
+    public static class PrerenderConfig {
+        /**
+         * 是否启用上传后预渲染及翻页预取
+         */
+        private boolean enabled = true;
+
+        /**
+         * 渲染线程数
+         */
+        private int workers = 2;
+
+        /**
+         * 待渲染队列容量，队列满时丢弃优先级最低的任务
+         */
+        private int queueCapacity = 2000;
+
+        /**
+         * 上传后预渲染的前N页
+         */
+        private int warmupPages = 5;
+
+        /**
+         * 缩略图DPI
+         */
+        private int thumbnailDpi = 36;
+
+        /**
+         * 缩略图最多渲染的页数
+         */
+        private int thumbnailMaxPages = 200;
+
+        /**
+         * 用户翻页时向后预取的页数
+         */
+        private int prefetchPages = 2;
+
+        /**
+         * 预渲染进度保留时长
+         */
+        private Duration progressRetention = Duration.ofHours(1);
+    }
+
+    /**
+     * 渲染线程池配置类
+     */
+    @Getter
+    @Setter
+    public static class RenderConfig {
+        /**
+         * 渲染线程数，0表示按CPU核数
+         */
+        private int threads = 0;
+
+        /**
+         * 等待队列容量，队列满时直接返回503
+         */
+        private int queueCapacity = 100;
+
+        /**
+         * 请求线程等待单页渲染的最长时间
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+
+        /**
+         * 批量渲染单次最多页数
+         */
+        private int maxBatchPages = 20;
+    }
+
+    /**
+     * 瓦片渲染配置类
+     */
+    @Getter
+    @Setter
+    public static class TileConfig {
+        /**
+         * 瓦片边长（像素）
+         */
+        private int tileSize = 256;
+
+        /**
+         * 最高缩放级别对应的分辨率上限（DPI）
+         */
+        private int maxDpi = 600;
+    }
+
+    /**
+     * 文档加载配置类
+     */
+    @Getter
+    @Setter
+    public static class LoaderConfig {
+        /**
+         * 单个文档解析时的堆内存上限，超出部分写入临时文件
+         */
+        private DataSize maxMainMemory = DataSize.ofMegabytes(64);
+
+        /**
+         * 解析临时文件目录
+         */
+        private String scratchDir = System.getProperty("java.io.tmpdir") + "/ai-reader/pdf-scratch";
+
+        /**
+         * 是否按需读取OSS上的PDF：只拉取解析和渲染实际访问到的字节区间，关闭时打开前先完整下载
+         */
+        private boolean lazyFetch = true;
+
+        /**
+         * 按需读取时的拉取块大小，小于镜像块大小以减少首屏拉取量
+         */
+        private DataSize fetchBlockSize = DataSize.ofKilobytes(256);
+    }
+
+    /**
+     * 上传后优化配置类
+     */
+    @Getter
+    @Setter
+    public static class OptimizeConfig {
+        /**
+         * 是否在上传后生成优化版本
+         */
+        private boolean enabled = true;
+
+        /**
+         * qpdf 可执行文件路径，用于线性化；不可用时跳过线性化
+         */
+        private String qpdfPath = "qpdf";
+
+        /**
+         * 单个文件的 qpdf 处理超时
+         */
+        private Duration timeout = Duration.ofMinutes(2);
+
+        /**
+         * 是否重新压缩过大的内嵌图片
+         */
+        private boolean recompressImages = false;
+
+        /**
+         * 内嵌图片长边像素上限，超过时缩小后以JPEG重新编码
+         */
+        private int maxImageDimension = 2000;
+
+        /**
+         * 重新编码图片时的JPEG质量（0-1）
+         */
+        private float imageQuality = 0.75f;
+
+        /**
+         * 优化任务队列容量
+         */
+        private int queueCapacity = 200;
+    }
+}
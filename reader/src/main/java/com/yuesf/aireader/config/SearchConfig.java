@@ -0,0 +1,37 @@
+package com.yuesf.aireader.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 报告全文检索配置
+ * 关键词查询走进程内倒排索引，索引未就绪或未启用时回退到数据库 LIKE 查询
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.search")
+public class SearchConfig {
+
+    /**
+     * 是否启用进程内索引
+     */
+    private boolean enabled = true;
+
+    /**
+     * 重建索引时每批读取的报告数
+     */
+    private int rebuildBatchSize = 500;
+
+    /**
+     * 前缀查询（英文单词、单个汉字）最多展开的词项数
+     */
+    private int maxPrefixExpansion = 2000;
+
+    /**
+     * 已删除文档占比超过该值时在后台重建索引，回收失效的倒排记录
+     */
+    private double compactRatio = 0.3;
+}
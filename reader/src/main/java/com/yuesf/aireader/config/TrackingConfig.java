@@ -0,0 +1,182 @@
+package com.yuesf.aireader.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 埋点写入配置
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.tracking")
+public class TrackingConfig {
+
+    /**
+     * 异步写入缓冲配置
+     */
+    private IngestConfig ingest = new IngestConfig();
+
+    /**
+     * 活跃会话登记表配置
+     */
+    private SessionConfig sessions = new SessionConfig();
+
+    /**
+     * 事件汇总（rollup）配置
+     */
+    private RollupConfig rollup = new RollupConfig();
+
+    /**
+     * 实时指标配置
+     */
+    private RealtimeConfig realtime = new RealtimeConfig();
+
+    /**
+     * 缓冲区满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 丢弃新事件
+         */
+        DROP,
+        /**
+         * 写入本地溢出文件，数据库追上后补写
+         */
+        SPILL,
+        /**
+         * 由请求线程同步写入数据库
+         */
+        CALLER_RUNS
+    }
+
+    @Getter
+    @Setter
+    public static class IngestConfig {
+        /**
+         * 是否启用异步写入，关闭时每次上报同步写库
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓冲区容量（向上取整为2的幂）
+         */
+        private int capacity = 8192;
+
+        /**
+         * 每批写入的事件数上限，缓冲积累到该数量立即写入
+         */
+        private int batchSize = 200;
+
+        /**
+         * 事件在缓冲中的最长等待时间，到期即使未满一批也写入
+         */
+        private Duration maxDelay = Duration.ofSeconds(1);
+
+        /**
+         * 缓冲区满时的处理策略
+         */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.SPILL;
+
+        /**
+         * 溢出文件目录
+         */
+        private String spillDir = System.getProperty("java.io.tmpdir") + "/ai-reader/tracking-spill";
+
+        /**
+         * 单批写入失败的重试次数，仍失败时按溢出策略处理（SPILL 写入溢出文件，其余丢弃）
+         */
+        private int maxRetries = 3;
+
+        /**
+         * 重试间隔
+         */
+        private Duration retryBackoff = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class SessionConfig {
+        /**
+         * 内存中有变化的会话写回 user_sessions 的间隔（由 @Scheduled 读取）
+         */
+        private Duration flushInterval = Duration.ofSeconds(10);
+
+        /**
+         * 会话超过该时间没有新事件且已写回后移出内存
+         */
+        private Duration idleTimeout = Duration.ofMinutes(30);
+
+        /**
+         * 内存中登记的会话数上限，超出时每次写回后按最久未活跃移出
+         */
+        private int maxSessions = 100000;
+    }
+
+    @Getter
+    @Setter
+    public static class RollupConfig {
+        /**
+         * 是否启用汇总表，关闭时统计接口直接聚合原始事件
+         */
+        private boolean enabled = true;
+
+        /**
+         * 内存中的汇总增量写入汇总表的间隔（由 @Scheduled 读取），也是统计数据的最大延迟
+         */
+        private Duration flushInterval = Duration.ofSeconds(10);
+
+        /**
+         * 分钟粒度汇总的保留时间，更早的查询按小时对齐
+         */
+        private Duration minuteRetention = Duration.ofDays(2);
+
+        /**
+         * 小时粒度汇总的保留时间，更早的查询按天对齐
+         */
+        private Duration hourRetention = Duration.ofDays(90);
+
+        /**
+         * 压缩任务检查并补建最近多少天缺失的汇总
+         */
+        private int backfillDays = 30;
+
+        /**
+         * 压缩任务的执行时间（cron，由 @Scheduled 读取）
+         */
+        private String compactionCron = "0 10 * * * *";
+    }
+
+    @Getter
+    @Setter
+    public static class RealtimeConfig {
+        /**
+         * 是否启用内存实时指标，关闭时活跃用户、热门页面等查询数据库
+         */
+        private boolean enabled = true;
+
+        /**
+         * 分钟桶个数，按分钟精度可查询的时间窗口为桶数减一分钟
+         */
+        private int minuteBuckets = 60;
+
+        /**
+         * 小时桶个数，超出分钟窗口的查询按小时精度
+         */
+        private int hourBuckets = 48;
+
+        /**
+         * 每个桶内活跃用户 HyperLogLog 的精度（寄存器数为 2 的该次幂）
+         */
+        private int hllPrecision = 11;
+
+        /**
+         * 每个桶内热门页面/事件类型最多跟踪的键数
+         */
+        private int topKCapacity = 64;
+    }
+}
@@ -1,9 +1,11 @@
 package com.yuesf.aireader.controller;
 
 import com.yuesf.aireader.dto.ApiResponse;
+import com.yuesf.aireader.dto.FacetCount;
 import com.yuesf.aireader.dto.ReportListRequest;
 import com.yuesf.aireader.dto.ReportListResponse;
 import com.yuesf.aireader.service.FileUploadService;
+import com.yuesf.aireader.service.ReportCounterService;
 import com.yuesf.aireader.service.ReportService;
 import com.yuesf.aireader.vo.MiniReportInfo;
 import lombok.extern.slf4j.Slf4j;
@@ -13,8 +15,12 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * 小程序报告查询接口控制器
  * 提供简化的报告列表查询，适合移动端使用
@@ -30,6 +36,9 @@ public class MiniProgramReportController {
     @Autowired
     private FileUploadService fileUploadService;
 
+    @Autowired
+    private ReportCounterService reportCounterService;
+
     /**
      * 获取小程序报告列表（简化版）
      * POST /mini/reports
@@ -48,25 +57,40 @@ public class MiniProgramReportController {
                 request.setPageSize(10); // 小程序限制最大20条
             }
 
-            // 设置默认排序
-            if (request.getSortBy() == null || request.getSortBy().trim().isEmpty()) {
-                request.setSortBy("publishDate");
-            }
+            // 设置默认排序（排序字段的默认值由 ReportService 决定：关键词查询按相关度，否则按发布日期）
             if (request.getSortOrder() == null || request.getSortOrder().trim().isEmpty()) {
                 request.setSortOrder("desc");
             }
 
-            ReportListResponse response = reportService.getReportList(request);
+            ReportListResponse response = reportService.getCachedReportList(request);
             log.info("小程序报告列表查询成功，返回 {} 条记录", response.getTotal());
 
             return ApiResponse.success(response);
 
+        } catch (IllegalArgumentException e) {
+            log.warn("小程序报告列表查询参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
         } catch (Exception e) {
             log.error("小程序报告列表查询失败", e);
             return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
         }
     }
 
+    /**
+     * 获取标签、分类、来源的分面计数
+     * GET /mini/reports/facets?limit=20
+     * 用于筛选面板展示各取值及其报告数
+     */
+    @GetMapping("/reports/facets")
+    public ApiResponse<Map<String, List<FacetCount>>> getMiniReportFacets(@RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ApiResponse.success(reportService.getFacets(Math.max(1, Math.min(limit, 100))));
+        } catch (Exception e) {
+            log.error("小程序分面统计查询失败", e);
+            return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取小程序报告详情（简化版）
      * GET /mini/reports/{id}
@@ -81,27 +105,12 @@ public class MiniProgramReportController {
                 return ApiResponse.error(400, "报告ID不能为空");
             }
 
-            var report = reportService.getReportById(id);
-            if (report == null) {
+            // 详情从报告缓存构建，不再每次访问数据库
+            MiniReportInfo miniReport = reportService.getMiniReportInfo(id);
+            if (miniReport == null) {
                 return ApiResponse.error(404, "报告不存在");
             }
-
-            // 构建适合小程序的简化数据结构
-            var miniReport = new MiniReportInfo();
-            miniReport.setId(report.getId());
-            miniReport.setTitle(report.getTitle());
-            miniReport.setSummary(report.getSummary());
-            miniReport.setSource(report.getSource());
-            miniReport.setCategory(report.getCategory());
-            miniReport.setPages(report.getPages());
-            miniReport.setPublishDate(report.getPublishDate());
-            miniReport.setThumbnail(report.getThumbnail());
-            miniReport.setTags(report.getTags());
-            miniReport.setIsFree(report.getIsFree());
-            miniReport.setPrice(report.getPrice());
-            miniReport.setDownloadCount(report.getDownloadCount());
-            miniReport.setViewCount(report.getViewCount());
-            miniReport.setReportFileId(report.getReportFileId());
+            reportCounterService.recordView(id);
 
             log.info("小程序报告详情查询成功，ID: {}", id);
             return ApiResponse.success(miniReport);
@@ -125,7 +134,7 @@ public class MiniProgramReportController {
                 return ApiResponse.error(400, "报告ID不能为空");
             }
 
-            var report = reportService.getReportById(id);
+            var report = reportService.getCachedReportById(id);
             if (report == null) {
                 return ApiResponse.error(404, "报告不存在");
             }
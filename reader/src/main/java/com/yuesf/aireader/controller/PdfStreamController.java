@@ -2,7 +2,10 @@ package com.yuesf.aireader.controller;
 
 import com.yuesf.aireader.annotation.RequireAuth;
 import com.yuesf.aireader.dto.ApiResponse;
+import com.yuesf.aireader.exception.BusinessException;
 import com.yuesf.aireader.service.PdfStreamService;
+import com.yuesf.aireader.service.pdf.PageImageKey;
+import com.yuesf.aireader.service.pdf.PageImageVariants;
 import jakarta.servlet.ServletOutputStream;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,7 +31,8 @@ public class PdfStreamController {
     /**
      * 获取PDF文件流（支持断点续传）
      * GET /pdf/stream/{fileId}
-     * 支持Range请求头，实现断点续传
+     * 支持Range请求头（单区间、后缀区间、多区间），实现断点续传；
+     * 支持 If-None-Match / If-Modified-Since / If-Range 条件请求
      */
     @GetMapping("/stream/{fileId}")
     public void streamPdfFile(
@@ -43,7 +47,7 @@ public class PdfStreamController {
             String range = request.getHeader("Range");
             
             // 流式传输PDF文件
-            pdfStreamService.streamPdfFile(fileId, range, response);
+            pdfStreamService.streamPdfFile(fileId, range, request, response);
             
             log.info("PDF文件流传输完成，文件ID: {}", fileId);
             
@@ -62,33 +66,25 @@ public class PdfStreamController {
 
     /**
      * 获取PDF文件分片（加密）
-     * GET /pdf/chunk/{fileId}/{chunkIndex}
-     * 用于小程序端分片下载
+     * GET /pdf/chunk/{fileId}/{chunkIndex}?size=524288
+     * 用于小程序端分片下载；size 为分片清单中的分片大小，不传时按1MB分片。
+     * 响应带强ETag，携带 If-None-Match 重新验证时未变化的分片返回304
      */
     @GetMapping("/chunk/{fileId}/{chunkIndex}")
     public void getPdfChunk(
             @PathVariable String fileId,
             @PathVariable int chunkIndex,
+            @RequestParam(value = "size", required = false) Integer chunkSize,
+            HttpServletRequest request,
             HttpServletResponse response) {
         
         try {
             log.info("请求PDF文件分片，文件ID: {}, 分片索引: {}", fileId, chunkIndex);
             
-            // 获取加密的分片数据
-            byte[] chunkData = pdfStreamService.getPdfChunk(fileId, chunkIndex);
-            
-            // 设置响应头
-            response.setContentType("application/octet-stream");
-            response.setHeader("Content-Length", String.valueOf(chunkData.length));
-            response.setHeader("X-Chunk-Index", String.valueOf(chunkIndex));
-            response.setHeader("X-File-Id", fileId);
-            
-            // 写入分片数据
-            response.getOutputStream().write(chunkData);
-            response.getOutputStream().flush();
+            // 分片数据由服务直接写入响应
+            pdfStreamService.streamPdfChunk(fileId, chunkIndex, chunkSize, request, response);
             
-            log.info("PDF文件分片传输完成，文件ID: {}, 分片索引: {}, 大小: {} bytes", 
-                    fileId, chunkIndex, chunkData.length);
+            log.info("PDF文件分片传输完成，文件ID: {}, 分片索引: {}", fileId, chunkIndex);
             
         } catch (Exception e) {
             log.error("PDF文件分片传输失败，文件ID: {}, 分片索引: {}", fileId, chunkIndex, e);
@@ -103,6 +99,31 @@ public class PdfStreamController {
         }
     }
 
+    /**
+     * 获取PDF分片清单
+     * GET /v1/pdf/manifest/{fileId}?networkType=4g
+     * 返回按文件大小和网络类型选择的分片大小，以及每个分片的偏移、长度、SHA-256和ETag；
+     * 客户端再次打开时可跳过哈希未变的本地分片。清单带强ETag，未变化时返回304
+     */
+    @GetMapping("/manifest/{fileId}")
+    public ApiResponse<Map<String, Object>> getChunkManifest(
+            @PathVariable String fileId,
+            @RequestParam(value = "networkType", required = false) String networkType,
+            @RequestParam(value = "size", required = false) Integer chunkSize,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        try {
+            Map<String, Object> manifest = pdfStreamService.getChunkManifest(fileId, networkType, chunkSize, request, response);
+            // 为 null 时已写入304，不再输出响应体
+            return manifest == null ? null : ApiResponse.success(manifest);
+        } catch (BusinessException e) {
+            return ApiResponse.error(e.getCode() == null ? 500 : e.getCode(), e.getMessage());
+        } catch (Exception e) {
+            log.error("获取分片清单失败，文件ID: {}", fileId, e);
+            return ApiResponse.error(500, "获取分片清单失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取PDF文件信息（用于小程序端分片下载）
      * GET /pdf/info/{fileId}
@@ -125,31 +146,62 @@ public class PdfStreamController {
     }
 
     /**
-     * 按页返回PDF渲染图片（PNG）
-     * GET /v1/pdf/page/{fileId}/{page}
-     * 用于小程序端图片化预览
+     * 按页返回PDF渲染图片
+     * GET /v1/pdf/page/{fileId}/{page}?width=375&dpr=2&format=auto&quality=80
+     * 用于小程序端图片化预览。可选参数：
+     * width/dpr 按目标显示宽度与设备像素比渲染所需的最小分辨率；dpi 指定渲染DPI（指定width时忽略）；
+     * format 为 png（默认）/ jpeg / webp / auto（按Accept头选择WebP或JPEG）；quality 为有损格式的压缩质量
      */
     @GetMapping("/page/{fileId}/{page}")
     public void getPdfPageImage(
             @PathVariable String fileId,
             @PathVariable int page,
+            @RequestParam(value = "width", required = false) Integer width,
+            @RequestParam(value = "dpr", required = false) Double dpr,
+            @RequestParam(value = "dpi", required = false) Integer dpi,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "quality", required = false) Integer quality,
+            HttpServletRequest request,
             HttpServletResponse response) {
         ServletOutputStream outputStream = null;
         try {
-            log.info("请求PDF页图，文件ID: {}, 页码: {}", fileId, page);
+            log.info("请求PDF页图，文件ID: {}, 页码: {}, 宽度: {}, DPR: {}, 格式: {}", fileId, page, width, dpr, format);
 
-            byte[] pngBytes = pdfStreamService.renderPdfPageAsImage(fileId, page);
+            PageImageKey imageKey = PageImageVariants.resolve(fileId, page, width, dpr, dpi, format, quality,
+                    request.getHeader("Accept"));
+            byte[] imageBytes = pdfStreamService.renderPdfPageAsImage(imageKey);
 
-            response.setContentType("image/png");
+            response.setContentType(imageKey.getContentType());
             response.setHeader("Cache-Control", "public, max-age=300");
             response.setHeader("X-File-Id", fileId);
             response.setHeader("X-Page", String.valueOf(page));
-            response.setContentLength(pngBytes.length);
+            if ("auto".equalsIgnoreCase(format)) {
+                // 格式依赖Accept头，缓存需区分
+                response.setHeader("Vary", "Accept");
+            }
+            response.setContentLength(imageBytes.length);
               outputStream = response.getOutputStream();
             if (null != outputStream ) {
-                outputStream.write(pngBytes);
+                outputStream.write(imageBytes);
 
             }
+        } catch (BusinessException e) {
+            if (Integer.valueOf(503).equals(e.getCode())) {
+                // 渲染线程池繁忙，提示客户端稍后重试
+                log.warn("PDF页图渲染繁忙，文件ID: {}, 页码: {}, {}", fileId, page, e.getMessage());
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.setHeader("Retry-After", "1");
+                return;
+            }
+            log.error("PDF页图获取失败，文件ID: {}, 页码: {}", fileId, page, e);
+            try {
+                response.setStatus(Integer.valueOf(400).equals(e.getCode())
+                        ? HttpServletResponse.SC_BAD_REQUEST : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                response.setContentType("application/json;charset=UTF-8");
+                response.getWriter().write("{\"error\":\"获取页图失败: " + e.getMessage() + "\"}");
+            } catch (IOException ex) {
+                log.error("写入错误响应失败", ex);
+            }
         } catch (Exception e) {
             log.error("PDF页图获取失败，文件ID: {}, 页码: {}", fileId, page, e);
             try {
@@ -170,6 +222,198 @@ public class PdfStreamController {
         }
     }
 
+    /**
+     * 获取页面瓦片
+     * GET /v1/pdf/tile/{fileId}/{page}/{zoom}/{x}/{y}?format=jpeg&quality=80
+     * 放大查看时只渲染可见区域，级别0时整页宽度为一个瓦片，每升一级分辨率翻倍
+     */
+    @GetMapping("/tile/{fileId}/{page}/{zoom}/{x}/{y}")
+    public void getPdfPageTile(
+            @PathVariable String fileId,
+            @PathVariable int page,
+            @PathVariable int zoom,
+            @PathVariable int x,
+            @PathVariable int y,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "quality", required = false) Integer quality,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        try {
+            PageImageKey tileKey = PageImageVariants.resolveTile(fileId, page, zoom, x, y, format, quality,
+                    request.getHeader("Accept"));
+            byte[] imageBytes = pdfStreamService.renderPdfPageTile(tileKey);
+
+            response.setContentType(tileKey.getContentType());
+            response.setHeader("Cache-Control", "public, max-age=300");
+            if ("auto".equalsIgnoreCase(format)) {
+                response.setHeader("Vary", "Accept");
+            }
+            response.setContentLength(imageBytes.length);
+            ServletOutputStream outputStream = response.getOutputStream();
+            outputStream.write(imageBytes);
+            outputStream.flush();
+        } catch (BusinessException e) {
+            log.warn("PDF瓦片获取失败，文件ID: {}, 页码: {}, 瓦片: {}/{}/{}, {}", fileId, page, zoom, x, y, e.getMessage());
+            int status = e.getCode() == null ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : e.getCode();
+            response.setStatus(status);
+            if (status == HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+                response.setHeader("Retry-After", "1");
+            }
+        } catch (Exception e) {
+            log.error("PDF瓦片获取失败，文件ID: {}, 页码: {}, 瓦片: {}/{}/{}", fileId, page, zoom, x, y, e);
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * 获取页面瓦片金字塔信息
+     * GET /v1/pdf/tile-info/{fileId}/{page}
+     * 返回瓦片大小、最高缩放级别及每级的像素尺寸和瓦片行列数
+     */
+    @GetMapping("/tile-info/{fileId}/{page}")
+    public ApiResponse<Map<String, Object>> getPdfPageTileInfo(@PathVariable String fileId, @PathVariable int page) {
+        try {
+            return ApiResponse.success(pdfStreamService.getPdfPageTileInfo(fileId, page));
+        } catch (BusinessException e) {
+            return ApiResponse.error(e.getCode() == null ? 500 : e.getCode(), e.getMessage());
+        } catch (Exception e) {
+            log.error("获取瓦片信息失败，文件ID: {}, 页码: {}", fileId, page, e);
+            return ApiResponse.error(500, "获取瓦片信息失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量渲染多页
+     * POST /v1/pdf/pages/{fileId}/render?from=1&to=20
+     * 多页并行渲染进页图缓存，之后逐页请求 /page 直接命中缓存
+     * 管理员接口，批量渲染占用较多CPU
+     */
+    @PostMapping("/pages/{fileId}/render")
+    @RequireAuth(requireAdmin = true)
+    public ApiResponse<Map<String, Object>> renderPdfPages(
+            @PathVariable String fileId,
+            @RequestParam("from") int fromPage,
+            @RequestParam("to") int toPage) {
+        try {
+            log.info("批量渲染PDF页图，文件ID: {}, 页码: {}-{}", fileId, fromPage, toPage);
+            return ApiResponse.success(pdfStreamService.renderPdfPages(fileId, fromPage, toPage));
+        } catch (BusinessException e) {
+            log.warn("批量渲染PDF页图失败，文件ID: {}, {}", fileId, e.getMessage());
+            return ApiResponse.error(e.getCode() == null ? 500 : e.getCode(), e.getMessage());
+        } catch (Exception e) {
+            log.error("批量渲染PDF页图失败，文件ID: {}", fileId, e);
+            return ApiResponse.error(500, "批量渲染失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 按页返回低分辨率缩略图（PNG）
+     * GET /v1/pdf/thumbnail/{fileId}/{page}
+     * 用于目录缩略图条，上传后由后台预渲染
+     */
+    @GetMapping("/thumbnail/{fileId}/{page}")
+    public void getPdfPageThumbnail(
+            @PathVariable String fileId,
+            @PathVariable int page,
+            HttpServletResponse response) {
+        try {
+            byte[] pngBytes = pdfStreamService.renderPdfPageThumbnail(fileId, page);
+
+            response.setContentType("image/png");
+            response.setHeader("Cache-Control", "public, max-age=300");
+            response.setHeader("X-File-Id", fileId);
+            response.setHeader("X-Page", String.valueOf(page));
+            response.setContentLength(pngBytes.length);
+            ServletOutputStream outputStream = response.getOutputStream();
+            outputStream.write(pngBytes);
+            outputStream.flush();
+        } catch (BusinessException e) {
+            log.error("PDF缩略图获取失败，文件ID: {}, 页码: {}", fileId, page, e);
+            try {
+                response.setStatus(Integer.valueOf(400).equals(e.getCode())
+                        ? HttpServletResponse.SC_BAD_REQUEST : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                response.setContentType("application/json;charset=UTF-8");
+                response.getWriter().write("{\"error\":\"获取缩略图失败: " + e.getMessage() + "\"}");
+            } catch (IOException ex) {
+                log.error("写入错误响应失败", ex);
+            }
+        } catch (Exception e) {
+            log.error("PDF缩略图获取失败，文件ID: {}, 页码: {}", fileId, page, e);
+            try {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                response.setContentType("application/json;charset=UTF-8");
+                response.getWriter().write("{\"error\":\"获取缩略图失败: " + e.getMessage() + "\"}");
+            } catch (IOException ex) {
+                log.error("写入错误响应失败", ex);
+            }
+        }
+    }
+
+    /**
+     * 获取预渲染进度
+     * GET /v1/pdf/prerender/{fileId}
+     */
+    @GetMapping("/prerender/{fileId}")
+    public ApiResponse<Map<String, Object>> getPrerenderProgress(@PathVariable String fileId) {
+        try {
+            return ApiResponse.success(pdfStreamService.getPrerenderProgress(fileId));
+        } catch (Exception e) {
+            log.error("获取预渲染进度失败，文件ID: {}", fileId, e);
+            return ApiResponse.error(500, "获取预渲染进度失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 手动提交预渲染
+     * POST /v1/pdf/prerender/{fileId}
+     * 管理员接口，用于历史文件补渲染
+     */
+    @PostMapping("/prerender/{fileId}")
+    @RequireAuth(requireAdmin = true)
+    public ApiResponse<String> submitPrerender(@PathVariable String fileId) {
+        try {
+            pdfStreamService.submitPrerender(fileId);
+            return ApiResponse.success("预渲染任务已提交");
+        } catch (Exception e) {
+            log.error("提交预渲染失败，文件ID: {}", fileId, e);
+            return ApiResponse.error(500, "提交预渲染失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 手动提交线性化优化
+     * POST /v1/pdf/optimize/{fileId}
+     * 管理员接口，用于为历史文件生成快速网页查看版本
+     */
+    @PostMapping("/optimize/{fileId}")
+    @RequireAuth(requireAdmin = true)
+    public ApiResponse<String> submitOptimize(@PathVariable String fileId) {
+        try {
+            pdfStreamService.submitOptimize(fileId);
+            return ApiResponse.success("优化任务已提交");
+        } catch (Exception e) {
+            log.error("提交PDF优化失败，文件ID: {}", fileId, e);
+            return ApiResponse.error(500, "提交优化失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     * GET /pdf/cache/stats
+     * 管理员接口，返回页图缓存的条目数、磁盘占用、命中率，文档池的常驻文档数、句柄数、淘汰次数，
+     * 以及OSS镜像的对象数、已拉取字节与回源次数等
+     */
+    @GetMapping("/cache/stats")
+    @RequireAuth(requireAdmin = true)
+    public ApiResponse<Map<String, Object>> getCacheStats() {
+        try {
+            return ApiResponse.success(pdfStreamService.getCacheStats());
+        } catch (Exception e) {
+            log.error("获取页图缓存统计失败", e);
+            return ApiResponse.error(500, "获取缓存统计失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 清理过期缓存
      * POST /pdf/cache/cleanup
@@ -22,6 +22,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 /**
  * 报告查询接口控制器（后台管理使用）
  */
@@ -55,10 +57,7 @@ public class ReportController {
                 request.setPageSize(10);
             }
             
-            // 设置默认排序
-            if (request.getSortBy() == null || request.getSortBy().trim().isEmpty()) {
-                request.setSortBy("publishDate");
-            }
+            // 设置默认排序（排序字段的默认值由 ReportService 决定：关键词查询按相关度，否则按发布日期）
             if (request.getSortOrder() == null || request.getSortOrder().trim().isEmpty()) {
                 request.setSortOrder("desc");
             }
@@ -68,6 +67,9 @@ public class ReportController {
             
             return ApiResponse.success(response);
             
+        } catch (IllegalArgumentException e) {
+            log.warn("后台报告列表查询参数错误: {}", e.getMessage());
+            return ApiResponse.error(400, e.getMessage());
         } catch (Exception e) {
             log.error("后台报告列表查询失败", e);
             return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
@@ -327,4 +329,66 @@ public class ReportController {
             return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
         }
     }
+
+    /**
+     * 获取报告查询缓存统计
+     * GET /reports/cache/stats
+     * 返回小程序报告详情与列表缓存的条目数、命中率、淘汰与失效次数
+     */
+    @GetMapping("/reports/cache/stats")
+    public ApiResponse<Map<String, Object>> getReportCacheStats() {
+        try {
+            return ApiResponse.success(reportService.getCacheStats());
+        } catch (Exception e) {
+            log.error("获取报告缓存统计失败", e);
+            return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取报告检索索引统计
+     * GET /reports/search-index/stats
+     */
+    @GetMapping("/reports/search-index/stats")
+    public ApiResponse<Map<String, Object>> getSearchIndexStats() {
+        try {
+            return ApiResponse.success(reportService.getSearchIndexStats());
+        } catch (Exception e) {
+            log.error("获取检索索引统计失败", e);
+            return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 重建报告检索索引
+     * POST /reports/search-index/rebuild
+     * 构建期间旧索引继续提供查询
+     */
+    @PostMapping("/reports/search-index/rebuild")
+    public ApiResponse<Map<String, Object>> rebuildSearchIndex() {
+        try {
+            if (!reportService.rebuildSearchIndex()) {
+                return ApiResponse.error(409, "索引正在重建或未启用");
+            }
+            return ApiResponse.success(reportService.getSearchIndexStats());
+        } catch (Exception e) {
+            log.error("重建检索索引失败", e);
+            return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取报告浏览/下载计数统计
+     * GET /reports/counters/stats
+     * 返回内存中待写回的增量与写回次数
+     */
+    @GetMapping("/reports/counters/stats")
+    public ApiResponse<Map<String, Object>> getCounterStats() {
+        try {
+            return ApiResponse.success(reportService.getCounterStats());
+        } catch (Exception e) {
+            log.error("获取报告计数统计失败", e);
+            return ApiResponse.error(500, "服务器内部错误: " + e.getMessage());
+        }
+    }
 }
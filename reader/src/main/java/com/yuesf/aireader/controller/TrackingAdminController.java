@@ -279,4 +279,69 @@ public class TrackingAdminController {
             return ApiResponse.error("系统异常，请稍后重试");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 从原始事件重建事件汇总
+     *
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param force 是否重建已有汇总的日期
+     * @return 重建的日期数
+     */
+    @PostMapping("/rollups/backfill")
+    public ApiResponse<Map<String, Object>> backfillRollups(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(defaultValue = "false") boolean force) {
+
+        log.info("重建事件汇总: startDate={}, endDate={}, force={}", startDate, endDate, force);
+
+        try {
+            Map<String, Object> result = trackingService.backfillRollups(startDate, endDate, force);
+            return ApiResponse.success(result);
+        } catch (BusinessException e) {
+            log.error("重建事件汇总业务异常: error={}", e.getMessage());
+            return ApiResponse.error("重建事件汇总失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("重建事件汇总系统异常: error={}", e.getMessage(), e);
+            return ApiResponse.error("系统异常，请稍后重试");
+        }
+    }
+
+    /**
+     * 获取实时概况（内存统计，近似值）
+     *
+     * @param minutes 时间窗口（分钟）
+     * @param limit 热门项数量
+     * @return 事件数、活跃用户数、热门页面和事件类型、每分钟事件数
+     */
+    @GetMapping("/realtime")
+    public ApiResponse<Map<String, Object>> getRealtimeMetrics(
+            @RequestParam(defaultValue = "30") Integer minutes,
+            @RequestParam(defaultValue = "10") Integer limit) {
+        try {
+            return ApiResponse.success(trackingService.getRealtimeMetrics(minutes, limit));
+        } catch (BusinessException e) {
+            log.error("获取实时概况业务异常: minutes={}, error={}", minutes, e.getMessage());
+            return ApiResponse.error("获取实时概况失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("获取实时概况系统异常: minutes={}, error={}", minutes, e.getMessage(), e);
+            return ApiResponse.error("系统异常，请稍后重试");
+        }
+    }
+
+    /**
+     * 获取埋点异步写入统计
+     *
+     * @return 写入缓冲容量、排队数、已写入、丢弃、溢出文件等统计
+     */
+    @GetMapping("/ingest/stats")
+    public ApiResponse<Map<String, Object>> getIngestStats() {
+        try {
+            return ApiResponse.success(trackingService.getIngestStats());
+        } catch (Exception e) {
+            log.error("获取埋点写入统计系统异常: error={}", e.getMessage(), e);
+            return ApiResponse.error("系统异常，请稍后重试");
+        }
+    }
+}
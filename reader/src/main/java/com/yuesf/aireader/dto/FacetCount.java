@@ -0,0 +1,32 @@
+package com.yuesf.aireader.dto;
+
+/**
+ * 分面统计项：取值及其报告数
+ */
+public class FacetCount {
+    private String name;
+    private Long count;
+
+    public FacetCount() {}
+
+    public FacetCount(String name, Long count) {
+        this.name = name;
+        this.count = count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+}
@@ -19,6 +19,9 @@ public class ReportListRequest {
     private String sortBy;
     private String sortOrder;
 
+    // 游标分页：传入上一页响应的 nextCursor 获取下一页，此时忽略 page
+    private String cursor;
+
     public static class SearchFilters {
         private List<String> category;
         private List<String> source;
@@ -153,4 +156,12 @@ public class ReportListRequest {
     public void setSortOrder(String sortOrder) {
         this.sortOrder = sortOrder;
     }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
 }
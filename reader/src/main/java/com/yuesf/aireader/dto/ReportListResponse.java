@@ -11,6 +11,9 @@ public class ReportListResponse {
     private Integer page;
     private Integer pageSize;
     private List<Report> list;
+    // 下一页游标，没有更多数据时为 null
+    private String nextCursor;
+    private Boolean hasMore;
 
     // 构造函数
     public ReportListResponse() {}
@@ -54,4 +57,20 @@ public class ReportListResponse {
     public void setList(List<Report> list) {
         this.list = list;
     }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
 }
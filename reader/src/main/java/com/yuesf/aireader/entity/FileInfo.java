@@ -50,6 +50,15 @@ public class FileInfo {
 
 //    @Column(name = "page_nums")
     private Integer pageNums;
+
+//    @Column(name = "optimized_file_name", length = 500)
+    private String optimizedFileName;
+
+//    @Column(name = "optimized_file_size")
+    private Long optimizedFileSize;
+
+//    @Column(name = "optimized_linearized")
+    private Boolean optimizedLinearized;
     // 构造函数
     public FileInfo() {}
 
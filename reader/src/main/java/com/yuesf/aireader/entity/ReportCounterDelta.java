@@ -0,0 +1,19 @@
+package com.yuesf.aireader.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 报告浏览/下载计数增量，批量累加到 reports 表
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportCounterDelta {
+    private String reportId;
+
+    private long views;
+
+    private long downloads;
+}
@@ -0,0 +1,17 @@
+package com.yuesf.aireader.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 报告标签（report_tags 表的一行）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportTag {
+    private String reportId;
+
+    private String tag;
+}
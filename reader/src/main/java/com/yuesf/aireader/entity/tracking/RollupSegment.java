@@ -0,0 +1,30 @@
+package com.yuesf.aireader.entity.tracking;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 汇总查询区间
+ * 按某个粒度读取时间桶起点落在 [startTime, endTime) 内的汇总
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupSegment {
+
+    /**
+     * 汇总粒度：minute、hour、day
+     */
+    private String granularity;
+
+    /**
+     * 开始时间（毫秒，含）
+     */
+    private long startTime;
+
+    /**
+     * 结束时间（毫秒，不含）
+     */
+    private long endTime;
+}
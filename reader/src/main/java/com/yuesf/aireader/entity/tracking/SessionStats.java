@@ -0,0 +1,55 @@
+package com.yuesf.aireader.entity.tracking;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 会话统计快照
+ * 从 tracking_events 汇总会话的初始统计，或把内存中的会话统计和元信息批量写回 user_sessions
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionStats {
+
+    /**
+     * 会话ID
+     */
+    private String sessionId;
+
+    /**
+     * 事件触发数量
+     */
+    private int eventCount;
+
+    /**
+     * 页面访问数量（去重）
+     */
+    private int pageCount;
+
+    /**
+     * 会话时长，单位：秒
+     */
+    private int duration;
+
+    /**
+     * 最早事件时间戳（毫秒）
+     */
+    private Long firstTimestamp;
+
+    /**
+     * 最晚事件时间戳（毫秒）
+     */
+    private Long lastTimestamp;
+
+    /**
+     * 设备信息JSON
+     */
+    private String deviceInfo;
+
+    /**
+     * 网络类型
+     */
+    private String networkType;
+}
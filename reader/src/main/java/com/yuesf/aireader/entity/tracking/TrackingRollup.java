@@ -0,0 +1,45 @@
+package com.yuesf.aireader.entity.tracking;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 埋点事件汇总
+ * 某个时间桶内按事件类型、页面路径、元素ID汇总的事件数
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrackingRollup {
+
+    /**
+     * 汇总粒度：minute、hour、day
+     */
+    private String granularity;
+
+    /**
+     * 时间桶起点（毫秒时间戳）
+     */
+    private Long bucketStart;
+
+    /**
+     * 事件类型
+     */
+    private String eventType;
+
+    /**
+     * 页面路径，无页面路径时为空串
+     */
+    private String pagePath;
+
+    /**
+     * 元素ID，无元素ID时为空串
+     */
+    private String elementId;
+
+    /**
+     * 事件数（写入时为增量）
+     */
+    private Long eventCount;
+}
@@ -0,0 +1,22 @@
+package com.yuesf.aireader.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 文件信息变更事件
+ * 文件信息被更新、状态变更或删除时发布，用于失效依赖该文件的各类缓存
+ */
+@Getter
+public class FileInfoChangedEvent extends ApplicationEvent {
+
+    /**
+     * 文件ID
+     */
+    private final String fileId;
+
+    public FileInfoChangedEvent(Object source, String fileId) {
+        super(source);
+        this.fileId = fileId;
+    }
+}
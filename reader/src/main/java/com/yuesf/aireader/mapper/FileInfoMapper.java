@@ -56,4 +56,16 @@ public interface FileInfoMapper {
     int deleteById(@Param("id") String id);
 
     int updateFileInfo(FileInfo fileInfo);
+
+    /**
+     * 更新优化后对象信息
+     * @param id 文件ID
+     * @param optimizedFileName 优化后的OSS对象键，为空表示清除
+     * @param optimizedFileSize 优化后对象大小
+     * @param optimizedLinearized 优化后对象是否已线性化
+     * @return 影响行数
+     */
+    int updateOptimizedFile(@Param("id") String id, @Param("optimizedFileName") String optimizedFileName,
+                            @Param("optimizedFileSize") Long optimizedFileSize,
+                            @Param("optimizedLinearized") boolean optimizedLinearized);
 }
@@ -1,6 +1,9 @@
 package com.yuesf.aireader.mapper;
 
+import com.yuesf.aireader.dto.FacetCount;
 import com.yuesf.aireader.entity.Report;
+import com.yuesf.aireader.entity.ReportCounterDelta;
+import com.yuesf.aireader.entity.ReportTag;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
@@ -24,6 +27,21 @@ public interface ReportMapper {
             @Param("limit") int limit
     );
 
+    List<Report> selectReportsAfter(
+            @Param("keyword") String keyword,
+            @Param("category") String category,
+            @Param("source") String source,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate,
+            @Param("categories") List<String> categories,
+            @Param("sources") List<String> sources,
+            @Param("sortBy") String sortBy,
+            @Param("sortOrder") String sortOrder,
+            @Param("cursorValue") Object cursorValue,
+            @Param("cursorId") String cursorId,
+            @Param("limit") int limit
+    );
+
     long countReports(
             @Param("keyword") String keyword,
             @Param("category") String category,
@@ -36,12 +54,28 @@ public interface ReportMapper {
 
     Report selectById(@Param("id") String id);
 
+    List<Report> selectByIds(@Param("ids") List<String> ids);
+
+    List<Report> selectIndexBatch(@Param("afterId") String afterId, @Param("limit") int limit);
+
+    List<ReportTag> selectTagsByReportIds(@Param("ids") List<String> ids);
+
+    List<FacetCount> countTagFacets(@Param("limit") int limit);
+
+    List<FacetCount> countCategoryFacets(@Param("limit") int limit);
+
+    List<FacetCount> countSourceFacets(@Param("limit") int limit);
+
     int insertReport(Report report);
 
     int insertReportTags(@Param("reportId") String reportId, @Param("tags") java.util.List<String> tags);
 
     int updateReport(Report report);
 
+    String selectIdByReportFileId(@Param("fileId") String fileId);
+
+    int incrementCounters(@Param("deltas") List<ReportCounterDelta> deltas);
+
     int deleteById(@Param("id") String id);
 
     int deleteTagsByReportId(@Param("id") String id);
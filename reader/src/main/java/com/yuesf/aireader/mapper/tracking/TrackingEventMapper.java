@@ -1,5 +1,6 @@
 package com.yuesf.aireader.mapper.tracking;
 
+import com.yuesf.aireader.entity.tracking.SessionStats;
 import com.yuesf.aireader.entity.tracking.TrackingEvent;
 import org.apache.ibatis.annotations.Param;
 
@@ -59,6 +60,22 @@ public interface TrackingEventMapper {
      */
     List<TrackingEvent> selectBySessionId(@Param("sessionId") String sessionId);
 
+    /**
+     * 汇总会话的事件数和首末事件时间戳
+     *
+     * @param sessionId 会话ID
+     * @return 会话统计（不含页面数）
+     */
+    SessionStats selectSessionSummary(@Param("sessionId") String sessionId);
+
+    /**
+     * 查询会话访问过的页面路径（去重）
+     *
+     * @param sessionId 会话ID
+     * @return 页面路径列表
+     */
+    List<String> selectDistinctPagePaths(@Param("sessionId") String sessionId);
+
     /**
      * 根据页面路径查询埋点事件列表
      *
@@ -99,6 +116,26 @@ public interface TrackingEventMapper {
      */
     Long countEvents(@Param("params") Map<String, Object> params);
 
+    /**
+     * 时间范围内是否有埋点事件
+     *
+     * @param startTime 开始时间（含）
+     * @param endTime 结束时间（不含）
+     * @return 是否有事件
+     */
+    boolean hasEventsBetween(@Param("startTime") long startTime, @Param("endTime") long endTime);
+
+    /**
+     * 按事件时间分桶统计时间范围内的事件数
+     *
+     * @param startTime 开始时间（含），时间桶从这里开始对齐
+     * @param endTime 结束时间（不含）
+     * @param bucketSize 时间桶长度（毫秒）
+     * @return 统计结果，包含 bucket（时间桶起点）和 count
+     */
+    List<Map<String, Object>> countByBucket(@Param("startTime") long startTime, @Param("endTime") long endTime,
+                                            @Param("bucketSize") long bucketSize);
+
     /**
      * 按维度统计埋点事件
      *
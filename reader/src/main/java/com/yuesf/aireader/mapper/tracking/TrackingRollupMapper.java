@@ -0,0 +1,91 @@
+package com.yuesf.aireader.mapper.tracking;
+
+import com.yuesf.aireader.entity.tracking.RollupSegment;
+import com.yuesf.aireader.entity.tracking.TrackingRollup;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 埋点事件汇总Mapper接口
+ * 维护和查询按分钟/小时/天汇总的事件数
+ */
+public interface TrackingRollupMapper {
+
+    /**
+     * 批量累加汇总，时间桶和维度相同的行合并事件数
+     *
+     * @param rollups 汇总增量
+     * @return 影响行数
+     */
+    int upsertCounts(@Param("rollups") List<TrackingRollup> rollups);
+
+    /**
+     * 按维度合计多个查询区间内的事件数
+     *
+     * @param segments 查询区间
+     * @param groupBy 分组字段 (page_path, event_type, element_id, bucket)
+     * @param eventType 事件类型，可为空
+     * @param limit 限制数量，可为空
+     * @return 统计结果，包含 dimension 和 count
+     */
+    List<Map<String, Object>> sumByDimension(@Param("segments") List<RollupSegment> segments,
+                                             @Param("groupBy") String groupBy,
+                                             @Param("eventType") String eventType,
+                                             @Param("limit") Integer limit);
+
+    /**
+     * 合计多个查询区间内的事件数
+     *
+     * @param segments 查询区间
+     * @param eventType 事件类型，可为空
+     * @return 事件数
+     */
+    Long sumCounts(@Param("segments") List<RollupSegment> segments,
+                   @Param("eventType") String eventType);
+
+    /**
+     * 查询时间范围内已有的天粒度时间桶
+     *
+     * @param startTime 开始时间（含）
+     * @param endTime 结束时间（不含）
+     * @return 时间桶起点列表
+     */
+    List<Long> selectDayBuckets(@Param("startTime") long startTime, @Param("endTime") long endTime);
+
+    /**
+     * 删除时间范围内所有粒度的汇总
+     *
+     * @param startTime 开始时间（含）
+     * @param endTime 结束时间（不含）
+     * @return 删除行数
+     */
+    int deleteRange(@Param("startTime") long startTime, @Param("endTime") long endTime);
+
+    /**
+     * 从原始事件重建时间范围内某个粒度的汇总
+     *
+     * @param granularity 汇总粒度
+     * @param startTime 开始时间（含），时间桶从这里开始对齐
+     * @param endTime 结束时间（不含）
+     * @param bucketSize 时间桶长度（毫秒）
+     * @return 写入行数
+     */
+    int rebuildFromEvents(@Param("granularity") String granularity,
+                          @Param("startTime") long startTime,
+                          @Param("endTime") long endTime,
+                          @Param("bucketSize") long bucketSize);
+
+    /**
+     * 删除某个粒度早于指定时间的汇总
+     *
+     * @param granularity 汇总粒度
+     * @param before 时间桶起点上限（不含）
+     * @param limit 单次删除行数上限
+     * @return 删除行数
+     */
+    int deleteBefore(@Param("granularity") String granularity,
+                     @Param("before") long before,
+                     @Param("limit") int limit);
+}
@@ -1,5 +1,6 @@
 package com.yuesf.aireader.mapper.tracking;
 
+import com.yuesf.aireader.entity.tracking.SessionStats;
 import com.yuesf.aireader.entity.tracking.UserSession;
 import org.apache.ibatis.annotations.Param;
 
@@ -30,6 +31,22 @@ public interface UserSessionMapper {
      */
     int update(UserSession userSession);
 
+    /**
+     * 插入用户会话，会话已存在时只更新设备信息和网络类型
+     *
+     * @param userSession 用户会话
+     * @return 影响行数：1 表示新插入，已存在的会话返回 2（有字段变化）或 0/1（无变化，取决于驱动是否按找到的行计数）
+     */
+    int upsert(UserSession userSession);
+
+    /**
+     * 批量写回会话统计（事件数、页面数，未结束会话的时长）和元信息（设备信息、网络类型）
+     *
+     * @param stats 会话统计列表
+     * @return 影响行数
+     */
+    int updateSessionStats(@Param("stats") List<SessionStats> stats);
+
     /**
      * 根据会话ID查询用户会话
      *
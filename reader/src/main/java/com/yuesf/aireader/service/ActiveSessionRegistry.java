@@ -0,0 +1,362 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.TrackingConfig;
+import com.yuesf.aireader.entity.tracking.SessionStats;
+import com.yuesf.aireader.entity.tracking.TrackingEvent;
+import com.yuesf.aireader.entity.tracking.UserSession;
+import com.yuesf.aireader.mapper.tracking.TrackingEventMapper;
+import com.yuesf.aireader.mapper.tracking.UserSessionMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 活跃会话登记表
+ * 内存中保存每个活跃会话的元信息（设备信息、网络类型）和统计（事件数、访问过的页面集合、首末事件时间）。
+ * 已登记的会话写入事件时不再访问 user_sessions：元信息变化只标记待写回，统计原地累加（每个事件 O(1)）；
+ * 未登记的会话由调用方用一条幂等 upsert 写入会话行后登记，并从数据库汇总一次已有事件作为统计初始值（如应用重启后）。
+ * 有变化的会话定时合并为批量 UPDATE 写回 user_sessions；长时间无新事件的会话写回后移出内存，
+ * 登记数超过上限时再按最久未活跃依次移出。
+ */
+@Slf4j
+@Service
+public class ActiveSessionRegistry {
+
+    // 每条 UPDATE 语句包含的会话数上限
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private static final String PAGE_VIEW = "page_view";
+
+    @Autowired
+    private TrackingEventMapper trackingEventMapper;
+
+    @Autowired
+    private UserSessionMapper userSessionMapper;
+
+    @Autowired
+    private TrackingConfig trackingConfig;
+
+    private final ConcurrentHashMap<String, SessionEntry> sessions = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder recordedEvents = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedSessions = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * 已登记的会话更新元信息（仅在内存中，变化时标记待写回）
+     * @param sessionId 会话ID
+     * @param deviceInfo 设备信息JSON
+     * @param networkType 网络类型
+     * @return 会话是否已登记；未登记时调用方需写入会话行并调用 {@link #register}
+     */
+    public boolean touch(String sessionId, String deviceInfo, String networkType) {
+        SessionEntry entry = sessions.get(sessionId);
+        if (entry == null) {
+            misses.increment();
+            return false;
+        }
+        synchronized (entry) {
+            if (!Objects.equals(entry.deviceInfo, deviceInfo) || !Objects.equals(entry.networkType, networkType)) {
+                entry.deviceInfo = deviceInfo;
+                entry.networkType = networkType;
+                entry.version++;
+            }
+            entry.lastTouched = System.currentTimeMillis();
+        }
+        hits.increment();
+        return true;
+    }
+
+    /**
+     * 登记已写入数据库的会话；在事务中调用时等事务提交后再登记，避免回滚后误认为会话行已存在
+     * 需在插入本批事件之前调用，否则汇总的初始统计会包含本批事件，提交后再累加会重复计数
+     * @param sessionId 会话ID
+     * @param deviceInfo 设备信息JSON
+     * @param networkType 网络类型
+     * @param existing 会话行是否可能已有事件；新创建的会话统计从零开始，无需查询数据库
+     */
+    public void register(String sessionId, String deviceInfo, String networkType, boolean existing) {
+        SessionEntry entry = existing ? load(sessionId) : new SessionEntry();
+        entry.deviceInfo = deviceInfo;
+        entry.networkType = networkType;
+        afterCommit(() -> sessions.putIfAbsent(sessionId, entry));
+    }
+
+    /**
+     * 累加一批已写入的事件；在事务中调用时等事务提交后再累加，回滚的事件不计入
+     * @param events 埋点事件
+     */
+    public void record(List<TrackingEvent> events) {
+        if (!events.isEmpty()) {
+            afterCommit(() -> apply(events));
+        }
+    }
+
+    /**
+     * 用内存中的最新统计覆盖会话实体的统计字段，避免整行更新会话时写回数据库中的旧值
+     * @param session 用户会话
+     */
+    public void fillStats(UserSession session) {
+        SessionEntry entry = sessions.get(session.getSessionId());
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            session.setEventCount(entry.eventCount);
+            session.setPageCount(entry.pages.size());
+            if (session.getEndTime() == null) {
+                session.setDuration(entry.duration());
+            }
+        }
+    }
+
+    /**
+     * 移出会话（如会话已结束），之后的事件按未登记会话处理
+     * @param sessionId 会话ID
+     */
+    public void remove(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * 写回全部变化后清空登记表，用于会话行被批量删除之后
+     */
+    public void invalidateAll() {
+        synchronized (flushLock) {
+            flush();
+            sessions.clear();
+        }
+    }
+
+    /**
+     * 定时把有变化的会话写回数据库，并移出长时间无新事件或超出登记上限的会话
+     */
+    @Scheduled(fixedDelayString = "${app.tracking.sessions.flush-interval:PT10S}")
+    public void flush() {
+        synchronized (flushLock) {
+            TrackingConfig.SessionConfig config = trackingConfig.getSessions();
+            long idleBefore = System.currentTimeMillis() - config.getIdleTimeout().toMillis();
+            List<PendingWrite> pending = new ArrayList<>();
+            Iterator<Map.Entry<String, SessionEntry>> it = sessions.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, SessionEntry> e = it.next();
+                SessionEntry entry = e.getValue();
+                synchronized (entry) {
+                    if (entry.version != entry.flushedVersion) {
+                        pending.add(new PendingWrite(entry, entry.snapshot(e.getKey()), entry.version));
+                    } else if (entry.lastTouched < idleBefore) {
+                        it.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+            for (int i = 0; i < pending.size(); i += FLUSH_BATCH_SIZE) {
+                writeBatch(pending.subList(i, Math.min(i + FLUSH_BATCH_SIZE, pending.size())));
+            }
+            if (!pending.isEmpty()) {
+                flushes.increment();
+                log.debug("会话写回完成，会话数: {}", pending.size());
+            }
+            evictOverflow(config.getMaxSessions());
+        }
+    }
+
+    /**
+     * 应用关闭前写回剩余变化
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 登记表统计信息
+     */
+    public Map<String, Object> getStats() {
+        long dirty = sessions.values().stream().filter(entry -> entry.version != entry.flushedVersion).count();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeSessions", sessions.size());
+        stats.put("maxSessions", trackingConfig.getSessions().getMaxSessions());
+        stats.put("dirtySessions", dirty);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("recordedEvents", recordedEvents.sum());
+        stats.put("loads", loads.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("flushedSessions", flushedSessions.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void apply(List<TrackingEvent> events) {
+        // 本批中重新汇总过的会话，汇总结果已包含其在本批中的全部事件
+        Set<String> loaded = new HashSet<>();
+        for (TrackingEvent event : events) {
+            if (loaded.contains(event.getSessionId())) {
+                continue;
+            }
+            SessionEntry entry = sessions.get(event.getSessionId());
+            if (entry == null) {
+                // 已被移出内存（极少见）：重新汇总，本批中该会话的后续事件不再累加
+                SessionEntry summary = load(event.getSessionId());
+                summary.deviceInfo = event.getDeviceInfo();
+                summary.networkType = event.getNetworkType();
+                sessions.putIfAbsent(event.getSessionId(), summary);
+                loaded.add(event.getSessionId());
+                continue;
+            }
+            synchronized (entry) {
+                entry.add(event);
+            }
+            recordedEvents.increment();
+        }
+    }
+
+    private SessionEntry load(String sessionId) {
+        loads.increment();
+        SessionEntry entry = new SessionEntry();
+        SessionStats summary = trackingEventMapper.selectSessionSummary(sessionId);
+        if (summary != null && summary.getEventCount() > 0) {
+            entry.eventCount = summary.getEventCount();
+            entry.firstTimestamp = summary.getFirstTimestamp();
+            entry.lastTimestamp = summary.getLastTimestamp();
+            entry.pages.addAll(trackingEventMapper.selectDistinctPagePaths(sessionId));
+        }
+        return entry;
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        try {
+            userSessionMapper.updateSessionStats(batch.stream().map(p -> p.stats).toList());
+        } catch (Exception e) {
+            // 保持未写回状态，下次重试
+            flushFailures.increment();
+            log.error("会话写回失败，{} 个会话将在下次重试", batch.size(), e);
+            return;
+        }
+        for (PendingWrite p : batch) {
+            synchronized (p.entry) {
+                // 写回期间又有变化时 version 已变化，仍保持未写回状态
+                if (p.entry.flushedVersion < p.version) {
+                    p.entry.flushedVersion = p.version;
+                }
+            }
+        }
+        flushedSessions.add(batch.size());
+    }
+
+    /**
+     * 登记数超过上限时按最久未活跃移出已写回的会话
+     */
+    private void evictOverflow(int maxSessions) {
+        int overflow = sessions.size() - maxSessions;
+        if (overflow <= 0) {
+            return;
+        }
+        List<Map.Entry<String, SessionEntry>> candidates = sessions.entrySet().stream()
+                .filter(e -> e.getValue().version == e.getValue().flushedVersion)
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastTouched))
+                .limit(overflow)
+                .toList();
+        for (Map.Entry<String, SessionEntry> e : candidates) {
+            if (sessions.remove(e.getKey(), e.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 单个会话的内存状态，除 lastTouched 外的字段在对象锁内访问
+     */
+    private static class SessionEntry {
+        private String deviceInfo;
+        private String networkType;
+        private final Set<String> pages = new HashSet<>();
+        private int eventCount = 0;
+        private long firstTimestamp = Long.MAX_VALUE;
+        private long lastTimestamp = Long.MIN_VALUE;
+        // 每次变化加一，与已写回的版本比较判断是否需要写回
+        private long version = 0;
+        private long flushedVersion = 0;
+        private volatile long lastTouched = System.currentTimeMillis();
+
+        private void add(TrackingEvent event) {
+            eventCount++;
+            if (PAGE_VIEW.equals(event.getEventType()) && event.getPagePath() != null) {
+                pages.add(event.getPagePath());
+            }
+            if (event.getTimestamp() != null) {
+                firstTimestamp = Math.min(firstTimestamp, event.getTimestamp());
+                lastTimestamp = Math.max(lastTimestamp, event.getTimestamp());
+            }
+            version++;
+            lastTouched = System.currentTimeMillis();
+        }
+
+        /**
+         * 会话时长（秒）：首末事件的时间差
+         */
+        private int duration() {
+            if (lastTimestamp < firstTimestamp) {
+                return 0;
+            }
+            return (int) ((lastTimestamp - firstTimestamp) / 1000);
+        }
+
+        private SessionStats snapshot(String sessionId) {
+            return new SessionStats(sessionId, eventCount, pages.size(), duration(),
+                    firstTimestamp == Long.MAX_VALUE ? null : firstTimestamp,
+                    lastTimestamp == Long.MIN_VALUE ? null : lastTimestamp,
+                    deviceInfo, networkType);
+        }
+    }
+
+    private static class PendingWrite {
+        private final SessionEntry entry;
+        private final SessionStats stats;
+        private final long version;
+
+        private PendingWrite(SessionEntry entry, SessionStats stats, long version) {
+            this.entry = entry;
+            this.stats = stats;
+            this.version = version;
+        }
+    }
+}
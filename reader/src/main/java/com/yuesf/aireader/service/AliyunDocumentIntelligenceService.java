@@ -1,13 +1,17 @@
 package com.yuesf.aireader.service;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.UUID;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.yuesf.aireader.service.pdf.PdfDocumentLoader;
+
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -20,6 +24,9 @@ public class AliyunDocumentIntelligenceService {
 
     private final HttpClient httpClient = HttpClient.newHttpClient();
 
+    @Autowired
+    private PdfDocumentLoader pdfDocumentLoader;
+
     /**
      * 同步解析PDF文档（简化版实现）
      * 
@@ -62,14 +69,14 @@ public class AliyunDocumentIntelligenceService {
                     .GET()
                     .build();
             
-            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            // 以流方式接收，由文档加载器写入临时文件后解析，避免整份PDF进入堆内存
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
             
-            if (response.statusCode() == 200) {
-                byte[] pdfBytes = response.body();
-                
-                // 使用PDFBox解析PDF内容
-                return extractTextFromPDF(pdfBytes);
-            } else {
+            try (InputStream pdfStream = response.body()) {
+                if (response.statusCode() == 200) {
+                    // 使用PDFBox解析PDF内容
+                    return extractTextFromPDF(pdfStream);
+                }
                 log.error("下载PDF文件失败，状态码: {}", response.statusCode());
                 return null;
             }
@@ -81,14 +88,10 @@ public class AliyunDocumentIntelligenceService {
     }
 
     /**
-     * 从PDF字节数组中提取文本
+     * 从PDF输入流中提取文本
      */
-    private String extractTextFromPDF(byte[] pdfBytes) {
-        try {
-            // 这里需要使用PDFBox库
-            // 由于当前项目已经有PDFBox依赖，我们可以直接使用
-            
-            org.apache.pdfbox.pdmodel.PDDocument document = org.apache.pdfbox.pdmodel.PDDocument.load(pdfBytes);
+    private String extractTextFromPDF(InputStream pdfStream) {
+        try (org.apache.pdfbox.pdmodel.PDDocument document = pdfDocumentLoader.open(pdfStream)) {
             org.apache.pdfbox.text.PDFTextStripper stripper = new org.apache.pdfbox.text.PDFTextStripper();
             
             // 设置提取参数
@@ -97,7 +100,6 @@ public class AliyunDocumentIntelligenceService {
             stripper.setEndPage(Math.min(document.getNumberOfPages(), 100)); // 限制最多100页，避免内容过长
             
             String text = stripper.getText(document);
-            document.close();
             
             // 清理和格式化文本
             return cleanExtractedText(text);
@@ -1,16 +1,26 @@
 package com.yuesf.aireader.service;
 
+import com.yuesf.aireader.config.CacheConfig;
 import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.event.FileInfoChangedEvent;
 import com.yuesf.aireader.mapper.FileInfoMapper;
+import com.yuesf.aireader.util.TtlLruCache;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * 文件信息服务类
+ * 按ID查询走进程内缓存（含不存在ID的负缓存），分片下载、页图等高频请求不再每次访问数据库
+ * 写操作立即失效缓存，处于事务中时在事务结束后再失效一次，避免提交前的并发读取把旧数据写回缓存
  */
 @Service
 public class FileInfoService {
@@ -18,6 +28,21 @@ public class FileInfoService {
     @Autowired
     private FileInfoMapper fileInfoMapper;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CacheConfig cacheConfig;
+
+    // 文件ID -> 文件信息，缓存的对象为共享实例，调用方不得修改
+    private TtlLruCache<String, FileInfo> fileInfoCache;
+
+    @PostConstruct
+    public void init() {
+        CacheConfig.CacheSpec spec = cacheConfig.getFileInfo();
+        fileInfoCache = new TtlLruCache<>(spec.getMaxSize(), spec.getTtl(), spec.getNegativeTtl());
+    }
+
     /**
      * 保存文件信息
      * @param fileInfo 文件信息
@@ -35,6 +60,8 @@ public class FileInfoService {
         }
         
         fileInfoMapper.insert(fileInfo);
+        // 清除可能存在的负缓存
+        invalidateCached(fileInfo.getId());
         return fileInfo;
     }
 
@@ -44,7 +71,17 @@ public class FileInfoService {
      * @return 文件信息
      */
     public FileInfo getFileInfoById(String id) {
-        return fileInfoMapper.selectById(id);
+        if (id == null || !cacheConfig.getFileInfo().isEnabled()) {
+            return fileInfoMapper.selectById(id);
+        }
+        return fileInfoCache.get(id, fileInfoMapper::selectById);
+    }
+
+    /**
+     * 文件信息缓存统计
+     */
+    public Map<String, Object> getCacheStats() {
+        return fileInfoCache.getStats();
     }
 
     /**
@@ -72,7 +109,9 @@ public class FileInfoService {
      * @return 是否成功
      */
     public boolean updateFileStatus(String id, String status) {
-        return fileInfoMapper.updateStatus(id, status) > 0;
+        boolean updated = fileInfoMapper.updateStatus(id, status) > 0;
+        publishChanged(id);
+        return updated;
     }
 
     /**
@@ -81,7 +120,9 @@ public class FileInfoService {
      * @return 是否成功
      */
     public boolean deleteFileInfo(String id) {
-        return fileInfoMapper.deleteById(id) > 0;
+        boolean deleted = fileInfoMapper.deleteById(id) > 0;
+        publishChanged(id);
+        return deleted;
     }
 
     /**
@@ -107,5 +148,61 @@ public class FileInfoService {
 
     public void updateFileInfo(FileInfo fileInfo) {
         fileInfoMapper.updateFileInfo(fileInfo);
+        publishChanged(fileInfo.getId());
+    }
+
+    /**
+     * 更新文件页数
+     * 不修改缓存中的共享实例，写库后失效缓存，下次查询重新加载
+     * @param id 文件ID
+     * @param pageNums 页数
+     */
+    public void updatePageNums(String id, Integer pageNums) {
+        FileInfo update = new FileInfo();
+        update.setId(id);
+        update.setPageNums(pageNums);
+        // 文件内容未变，上传时排队的预渲染任务、页图缓存与已解析文档仍然有效，因此不发布变更事件
+        fileInfoMapper.updateFileInfo(update);
+        invalidateCached(id);
+    }
+
+    /**
+     * 记录优化后对象（线性化或压缩图片后的PDF），之后的流式下载与分片优先使用该对象
+     * @param id 文件ID
+     * @param optimizedFileName 优化后的OSS对象键
+     * @param optimizedFileSize 优化后对象大小
+     * @param linearized 优化后对象是否已线性化
+     */
+    public void updateOptimizedFile(String id, String optimizedFileName, Long optimizedFileSize, boolean linearized) {
+        // 原文件未变，页图缓存与已解析文档仍然有效，因此不发布变更事件
+        fileInfoMapper.updateOptimizedFile(id, optimizedFileName, optimizedFileSize, linearized);
+        invalidateCached(id);
+    }
+
+    /**
+     * 失效文件信息缓存并发布变更事件，通知页图缓存等失效
+     * @param id 文件ID
+     */
+    private void publishChanged(String id) {
+        if (id != null) {
+            invalidateCached(id);
+            eventPublisher.publishEvent(new FileInfoChangedEvent(this, id));
+        }
+    }
+
+    /**
+     * 失效文件信息缓存；处于事务中时在事务结束后再失效一次
+     * @param id 文件ID
+     */
+    private void invalidateCached(String id) {
+        fileInfoCache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    fileInfoCache.invalidate(id);
+                }
+            });
+        }
     }
 }
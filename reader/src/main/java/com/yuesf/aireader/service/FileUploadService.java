@@ -6,6 +6,10 @@ import com.aliyun.oss.model.PutObjectRequest;
 import com.aliyun.oss.model.PutObjectResult;
 import com.yuesf.aireader.config.OssConfig;
 import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.service.pdf.PagePrerenderer;
+import com.yuesf.aireader.service.pdf.PdfDocumentLoader;
+import com.yuesf.aireader.service.pdf.PdfOptimizer;
+import com.yuesf.aireader.util.StreamTransferUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -33,6 +37,15 @@ public class FileUploadService {
     @Autowired
     private FileInfoService fileInfoService;
 
+    @Autowired
+    private PagePrerenderer pagePrerenderer;
+
+    @Autowired
+    private PdfDocumentLoader pdfDocumentLoader;
+
+    @Autowired
+    private PdfOptimizer pdfOptimizer;
+
     private static final Logger logger = LoggerFactory.getLogger(FileUploadService.class);
 
     /**
@@ -82,7 +95,12 @@ public class FileUploadService {
             fileInfo.setRequestId(result.getRequestId()); // 存储请求ID
             fileInfo.setPageNums(getPdfPageCount(file));
             // 保存文件信息到数据库
-            return fileInfoService.saveFileInfo(fileInfo);
+            FileInfo saved = fileInfoService.saveFileInfo(fileInfo);
+            if ("pdf".equalsIgnoreCase(extension)) {
+                // 后台生成线性化版本，供流式下载与分片接口优先使用
+                pdfOptimizer.submit(saved.getId());
+            }
+            return saved;
         } else {
             throw new RuntimeException("文件上传失败");
         }
@@ -90,7 +108,7 @@ public class FileUploadService {
 
     public int getPdfPageCount(MultipartFile file) throws IOException {
         try (InputStream inputStream = file.getInputStream();
-             PDDocument document = PDDocument.load(inputStream)) {
+             PDDocument document = pdfDocumentLoader.open(inputStream)) {
             return document.getNumberOfPages();
         }
     }
@@ -103,7 +121,10 @@ public class FileUploadService {
      * @return 文件信息对象
      */
     public FileInfo uploadReportFile(MultipartFile file, String uploadUserId) throws IOException {
-        return uploadFile(file, ossProperties.getFolder().getReports(), uploadUserId);
+        FileInfo fileInfo = uploadFile(file, ossProperties.getFolder().getReports(), uploadUserId);
+        // 后台预渲染前几页及缩略图，首个读者无需等待下载、解析和渲染
+        pagePrerenderer.submitUpload(fileInfo.getId());
+        return fileInfo;
     }
 
     /**
@@ -138,6 +159,9 @@ public class FileUploadService {
         if (fileInfo != null && StringUtils.isNotBlank(fileInfo.getFileName())) {
             String objectKey = fileInfo.getFileName();
             ossClient.deleteObject(ossProperties.getBucketName(), objectKey);
+            if (StringUtils.isNotBlank(fileInfo.getOptimizedFileName())) {
+                ossClient.deleteObject(ossProperties.getBucketName(), fileInfo.getOptimizedFileName());
+            }
             fileInfoService.deleteFileInfo(fileId);
         }
     }
@@ -172,12 +196,14 @@ public class FileUploadService {
             // 可选缓存控制（根据业务需要设置）
             response.setHeader("Cache-Control", "public, max-age=31536000");
 
-            java.io.OutputStream out = response.getOutputStream();
-            byte[] buffer = new byte[8192];
-            int len;
-            while ((len = inputStream.read(buffer)) != -1) {
-                out.write(buffer, 0, len);
+            long contentLength = ossObject.getObjectMetadata().getContentLength();
+            if (contentLength >= 0) {
+                response.setContentLengthLong(contentLength);
             }
+
+            // 复用池化缓冲区写出，不为每次读取分配新数组
+            java.io.OutputStream out = response.getOutputStream();
+            StreamTransferUtils.copy(inputStream, out);
             out.flush();
         } finally {
             if (inputStream != null) try {
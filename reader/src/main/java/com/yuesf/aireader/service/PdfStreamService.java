@@ -1,10 +1,19 @@
 package com.yuesf.aireader.service;
 
-import com.aliyun.oss.OSS;
-import com.aliyun.oss.model.OSSObject;
-import com.yuesf.aireader.config.OssConfig.OssProperties;
+import com.yuesf.aireader.config.PdfConfig;
 import com.yuesf.aireader.entity.FileInfo;
 import com.yuesf.aireader.exception.BusinessException;
+import com.yuesf.aireader.service.pdf.OssObjectMirror;
+import com.yuesf.aireader.service.pdf.PageImageCache;
+import com.yuesf.aireader.service.pdf.PageImageKey;
+import com.yuesf.aireader.service.pdf.PageImageVariants;
+import com.yuesf.aireader.service.pdf.PdfChunkManifests;
+import com.yuesf.aireader.service.pdf.PagePrerenderer;
+import com.yuesf.aireader.service.pdf.PdfDocumentPool;
+import com.yuesf.aireader.service.pdf.PdfOptimizer;
+import com.yuesf.aireader.service.pdf.PdfPageRenderer;
+import com.yuesf.aireader.util.HttpRangeUtils;
+import com.yuesf.aireader.util.StreamTransferUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -19,8 +28,12 @@ import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -32,87 +45,174 @@ import java.util.concurrent.ConcurrentHashMap;
 public class PdfStreamService {
 
     @Autowired
-    private OSS ossClient;
+    private FileInfoService fileInfoService;
 
     @Autowired
-    private OssProperties ossProperties;
+    private PageImageCache pageImageCache;
 
     @Autowired
-    private FileInfoService fileInfoService;
+    private PdfDocumentPool pdfDocumentPool;
+
+    @Autowired
+    private PdfPageRenderer pdfPageRenderer;
+
+    @Autowired
+    private PagePrerenderer pagePrerenderer;
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    @Autowired
+    private OssObjectMirror ossObjectMirror;
+
+    @Autowired
+    private PdfOptimizer pdfOptimizer;
+
+    @Autowired
+    private PdfChunkManifests pdfChunkManifests;
+
+    @Autowired
+    private ReportCounterService reportCounterService;
 
-    // 临时缓存：文件ID -> 缓存信息
-    private final Map<String, FileCacheInfo> fileCache = new ConcurrentHashMap<>();
-    
     // 加密密钥缓存：文件ID -> 加密密钥
     private final Map<String, String> encryptionKeys = new ConcurrentHashMap<>();
     
     // 分片大小：1MB
     private static final int CHUNK_SIZE = 1024 * 1024;
     
-    // 缓存过期时间：30分钟
-    private static final long CACHE_EXPIRE_TIME = 30 * 60 * 1000;
-
     /**
-     * 生成指定页的图片（PNG）并返回字节数组
-     * 注意：该实现依赖后端能读取到PDF二进制（通过 OSS），用临时文件渲染，避免内存占用过高。
+     * 生成指定页的图片（PNG，150DPI）并返回字节数组
      */
     public byte[] renderPdfPageAsImage(String fileId, int pageNumber) throws IOException {
-        FileInfo fileInfo = fileInfoService.getFileInfoById(fileId);
-        if (fileInfo == null) {
-            throw new BusinessException("文件不存在");
+        return renderPdfPageAsImage(PageImageKey.png(fileId, pageNumber, PageImageVariants.DEFAULT_DPI));
+    }
+
+    /**
+     * 按指定规格（分辨率、格式、质量）生成页图并返回字节数组
+     * 注意：该实现依赖后端能读取到PDF二进制（通过 OSS），文档由文档池镜像到本地并保持解析结果常驻。
+     * 每种规格的渲染结果分别写入页图磁盘缓存，命中时直接读取本地文件返回；返回后在后台按相同规格预取后续页。
+     */
+    public byte[] renderPdfPageAsImage(PageImageKey imageKey) throws IOException {
+        FileInfo fileInfo = getPdfFileInfoForRender(imageKey.getFileId());
+        // 页码小于1时拒绝，避免每个非法页码各渲染并缓存一份首页
+        if (imageKey.getPage() < 1) {
+            throw new BusinessException(400, "页码超出范围");
         }
         // 校验请求页数大于文件页数时不返回数据
-        if (pageNumber > fileInfo.getPageNums()) {
+        if (imageKey.getPage() > fileInfo.getPageNums()) {
             return new byte[0];
         }
 
-        if (!"pdf".equalsIgnoreCase(fileInfo.getFileType())) {
-            throw new BusinessException("文件类型不支持");
+        byte[] imageBytes = pdfPageRenderer.render(fileInfo, imageKey);
+        pagePrerenderer.onPageRequested(fileInfo, imageKey);
+        return imageBytes;
+    }
+
+    /**
+     * 渲染页面的一个瓦片，用于放大查看时按需加载
+     * @param tileKey 瓦片规格
+     * @return 瓦片图片字节
+     */
+    public byte[] renderPdfPageTile(PageImageKey tileKey) throws IOException {
+        FileInfo fileInfo = getPdfFileInfoForRender(tileKey.getFileId());
+        if (tileKey.getPage() < 1 || tileKey.getPage() > fileInfo.getPageNums()) {
+            throw new BusinessException(400, "页码超出范围");
         }
+        return pdfPageRenderer.render(fileInfo, tileKey);
+    }
 
-        // 从 OSS 读取整个文件到临时文件（若文件较大可考虑分段或缓存）
-        File tempPdf = File.createTempFile("pdfsrc_", ".pdf");
-        try (OutputStream fos = new FileOutputStream(tempPdf)) {
-            long start = 0;
-            long end = fileInfo.getFileSize() - 1;
-            byte[] data = readChunkFromOss(fileInfo.getFileName(), start, end);
-            fos.write(data);
+    /**
+     * 获取页面的瓦片金字塔信息
+     */
+    public Map<String, Object> getPdfPageTileInfo(String fileId, int pageNumber) throws IOException {
+        FileInfo fileInfo = getPdfFileInfoForRender(fileId);
+        if (pageNumber < 1 || pageNumber > fileInfo.getPageNums()) {
+            throw new BusinessException(400, "页码超出范围");
         }
+        return pdfPageRenderer.describeTiles(fileInfo, pageNumber);
+    }
 
-        // 使用 PDFBox 渲染指定页为 PNG
-        try (org.apache.pdfbox.pdmodel.PDDocument document = org.apache.pdfbox.pdmodel.PDDocument.load(tempPdf)) {
-            int total = document.getNumberOfPages();
-            int pageIndex = Math.max(1, Math.min(pageNumber, total)) - 1;
-            org.apache.pdfbox.rendering.PDFRenderer renderer = new org.apache.pdfbox.rendering.PDFRenderer(document);
-            
-            try {
-                // 以 150DPI 渲染，平衡清晰度与体积
-                java.awt.image.BufferedImage bim = renderer.renderImageWithDPI(pageIndex, 150);
+    /**
+     * 批量渲染连续多页并写入页图缓存，客户端随后逐页获取时直接命中缓存
+     * @param fileId 文件ID
+     * @param fromPage 起始页（含）
+     * @param toPage 结束页（含）
+     * @return 每页的渲染结果
+     */
+    public Map<String, Object> renderPdfPages(String fileId, int fromPage, int toPage) throws IOException {
+        FileInfo fileInfo = getPdfFileInfoForRender(fileId);
+        int lastPage = Math.min(toPage, fileInfo.getPageNums());
+        if (fromPage < 1 || fromPage > lastPage) {
+            throw new BusinessException(400, "页码范围无效");
+        }
+        int maxBatchPages = pdfConfig.getRender().getMaxBatchPages();
+        if (lastPage - fromPage + 1 > maxBatchPages) {
+            throw new BusinessException(400, "单次最多渲染" + maxBatchPages + "页");
+        }
+        long start = System.currentTimeMillis();
+        List<Map<String, Object>> pages = pdfPageRenderer.renderBatch(fileInfo, fromPage, lastPage,
+                PageImageKey.png(fileId, fromPage, PageImageVariants.DEFAULT_DPI));
+        Map<String, Object> result = new java.util.LinkedHashMap<>();
+        result.put("fileId", fileId);
+        result.put("fromPage", fromPage);
+        result.put("toPage", lastPage);
+        result.put("totalMs", System.currentTimeMillis() - start);
+        result.put("pages", pages);
+        return result;
+    }
 
-                // 可选缩放（保持原尺寸），使用 Thumbnailator 以确保高质量输出
-                java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
-                javax.imageio.ImageIO.write(bim, "png", baos);
-                return baos.toByteArray();
-            } catch (Exception e) {
-                log.error("PDF页面渲染失败，文件ID: {}, 页码: {}, 错误: {}", fileId, pageNumber, e.getMessage());
-                if (e.getMessage() != null && e.getMessage().contains("JPEG2000")) {
-                    log.error("JPEG2000图像处理错误，请确保已安装JAI Image I/O Tools依赖");
-                    throw new BusinessException("PDF包含JPEG2000图像，需要额外的图像处理组件支持");
-                }
-                throw new BusinessException("PDF页面渲染失败: " + e.getMessage());
-            }
-        } finally {
-            // 清理临时文件
-            if (tempPdf.exists()) {
-                try { if (!tempPdf.delete()) tempPdf.deleteOnExit(); } catch (Exception ignored) {}
-            }
+    /**
+     * 生成指定页的低分辨率缩略图（PNG）
+     * 上传后由后台预渲染写入缓存，未命中时同步渲染
+     */
+    public byte[] renderPdfPageThumbnail(String fileId, int pageNumber) throws IOException {
+        FileInfo fileInfo = getPdfFileInfoForRender(fileId);
+        if (pageNumber < 1) {
+            throw new BusinessException(400, "页码超出范围");
+        }
+        if (pageNumber > fileInfo.getPageNums()) {
+            return new byte[0];
+        }
+        return pdfPageRenderer.render(fileInfo, PageImageKey.png(fileId, pageNumber, pdfConfig.getPrerender().getThumbnailDpi()));
+    }
+
+    /**
+     * 提交文件的后台预渲染任务
+     */
+    public void submitPrerender(String fileId) {
+        getPdfFileInfoForRender(fileId);
+        pagePrerenderer.submitUpload(fileId);
+    }
+
+    /**
+     * 获取文件的预渲染进度
+     */
+    public Map<String, Object> getPrerenderProgress(String fileId) {
+        Map<String, Object> progress = pagePrerenderer.getProgress(fileId);
+        if (progress == null) {
+            throw new BusinessException("该文件没有预渲染任务");
+        }
+        return progress;
+    }
+
+    private FileInfo getPdfFileInfoForRender(String fileId) {
+        FileInfo fileInfo = fileInfoService.getFileInfoById(fileId);
+        if (fileInfo == null) {
+            throw new BusinessException("文件不存在");
+        }
+        if (!"pdf".equalsIgnoreCase(fileInfo.getFileType())) {
+            throw new BusinessException("文件类型不支持");
         }
+        return fileInfo;
     }
 
     /**
      * 获取PDF文件流（支持断点续传）
+     * 按 RFC 7233 处理单区间、后缀区间与多区间（multipart/byteranges），
+     * 并基于OSS对象ETag支持 If-None-Match / If-Modified-Since（304）与 If-Range
      */
-    public void streamPdfFile(String fileId, String range, jakarta.servlet.http.HttpServletResponse response) throws IOException {
+    public void streamPdfFile(String fileId, String range, jakarta.servlet.http.HttpServletRequest request,
+                              jakarta.servlet.http.HttpServletResponse response) throws IOException {
         FileInfo fileInfo = fileInfoService.getFileInfoById(fileId);
         if (fileInfo == null) {
             throw new BusinessException("文件不存在");
@@ -123,39 +223,98 @@ public class PdfStreamService {
             throw new BusinessException("文件类型不支持");
         }
 
-        // 获取或生成加密密钥
-        String encryptionKey = getOrGenerateEncryptionKey(fileId);
-        
-        // 处理断点续传
-        long startByte = 0;
-        long endByte = fileInfo.getFileSize() - 1;
-        
-        if (StringUtils.hasText(range)) {
-            String[] rangeParts = range.replace("bytes=", "").split("-");
-            startByte = Long.parseLong(rangeParts[0]);
-            if (rangeParts.length > 1 && StringUtils.hasText(rangeParts[1])) {
-                endByte = Long.parseLong(rangeParts[1]);
-            }
-        }
+        long fileSize = servedObjectSize(fileInfo);
+        OssObjectMirror.ObjectVersion version = ossObjectMirror.getObjectVersion(servedObjectKey(fileInfo), fileSize);
+        String etag = version.getETag();
+        long lastModified = version.getLastModified();
 
-        // 设置响应头
-        response.setContentType("application/pdf");
+        // 校验头在所有响应（含304/416）中都要返回
         response.setHeader("Accept-Ranges", "bytes");
-        response.setHeader("Content-Length", String.valueOf(endByte - startByte + 1));
-        
-        if (StringUtils.hasText(range)) {
-            response.setStatus(jakarta.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT);
-            response.setHeader("Content-Range", "bytes " + startByte + "-" + endByte + "/" + fileInfo.getFileSize());
+        response.setHeader("ETag", etag);
+        if (lastModified >= 0) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+
+        if (HttpRangeUtils.isNotModified(request, etag, lastModified)) {
+            response.setStatus(jakarta.servlet.http.HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // If-Range 不匹配时忽略 Range 头，返回完整内容
+        List<long[]> ranges = HttpRangeUtils.isIfRangeSatisfied(request, etag, lastModified)
+                ? HttpRangeUtils.resolveRanges(range, fileSize) : null;
+
+        // 从文件开头读取视为一次下载，续传和按需读取的后续区间不重复计数
+        if (ranges == null || (ranges.size() == 1 && ranges.get(0)[0] == 0)) {
+            reportCounterService.recordFileDownload(fileId);
+        }
+
+        if (ranges == null) {
+            response.setContentType("application/pdf");
+            response.setContentLengthLong(fileSize);
+            writeMirroredRange(fileInfo, 0, fileSize - 1, response);
+            return;
+        }
+        if (ranges.isEmpty()) {
+            response.setStatus(jakarta.servlet.http.HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + fileSize);
+            return;
+        }
+
+        response.setStatus(jakarta.servlet.http.HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long startByte = ranges.get(0)[0];
+            long endByte = ranges.get(0)[1];
+            response.setContentType("application/pdf");
+            response.setContentLengthLong(endByte - startByte + 1);
+            response.setHeader("Content-Range", "bytes " + startByte + "-" + endByte + "/" + fileSize);
+            writeMirroredRange(fileInfo, startByte, endByte, response);
+            return;
+        }
+        writeMultipartRanges(fileInfo, ranges, response);
+    }
+
+    /**
+     * 以 multipart/byteranges 写出多个区间，Content-Length 预先精确计算
+     */
+    private void writeMultipartRanges(FileInfo fileInfo, List<long[]> ranges,
+                                      jakarta.servlet.http.HttpServletResponse response) throws IOException {
+        long fileSize = servedObjectSize(fileInfo);
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] r : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: application/pdf\r\n"
+                    + "Content-Range: bytes " + r[0] + "-" + r[1] + "/" + fileSize + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + (r[1] - r[0] + 1);
         }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
 
-        // 流式传输PDF文件
-        streamPdfFromOss(fileInfo.getFileName(), startByte, endByte, encryptionKey, response);
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            out.write(partHeaders.get(i));
+            ossObjectMirror.transferTo(servedObjectKey(fileInfo), fileSize, ranges.get(i)[0], ranges.get(i)[1], out);
+        }
+        out.write(closing);
+        out.flush();
     }
 
     /**
-     * 获取PDF文件分片（不加密）
+     * 传输PDF文件分片（不加密）
+     * 分片数据从本地镜像直接写入响应，缺失区间才回源OSS；
+     * 响应带由对象版本、分片大小和序号组成的强ETag，客户端或代理重新验证时未变化的分片返回304
+     * @param chunkSize 分片大小，为空时使用默认的1MB（与 /info 一致），否则须为清单中使用的档位
      */
-    public byte[] getPdfChunk(String fileId, int chunkIndex) throws IOException {
+    public void streamPdfChunk(String fileId, int chunkIndex, Integer chunkSize,
+                               jakarta.servlet.http.HttpServletRequest request,
+                               jakarta.servlet.http.HttpServletResponse response) throws IOException {
         FileInfo fileInfo = fileInfoService.getFileInfoById(fileId);
         if (fileInfo == null) {
             throw new BusinessException("文件不存在");
@@ -166,14 +325,147 @@ public class PdfStreamService {
             throw new BusinessException("文件类型不支持");
         }
 
+        int size = chunkSize == null ? CHUNK_SIZE : chunkSize;
+        if (chunkSize != null && !PdfChunkManifests.isValidChunkSize(chunkSize)) {
+            throw new BusinessException(400, "不支持的分片大小: " + chunkSize);
+        }
+
         // 计算分片范围
-        long startByte = (long) chunkIndex * CHUNK_SIZE;
-        long endByte = Math.min(startByte + CHUNK_SIZE - 1, fileInfo.getFileSize() - 1);
-        
-        // 从OSS读取分片数据（不加密）
-        byte[] chunkData = readChunkFromOss(fileInfo.getFileName(), startByte, endByte);
-        
-        return chunkData;
+        long fileSize = servedObjectSize(fileInfo);
+        long startByte = (long) chunkIndex * size;
+        if (chunkIndex < 0 || startByte >= fileSize) {
+            throw new BusinessException("分片索引超出范围");
+        }
+        long endByte = Math.min(startByte + size - 1, fileSize - 1);
+
+        OssObjectMirror.ObjectVersion version = ossObjectMirror.getObjectVersion(servedObjectKey(fileInfo), fileSize);
+        String etag = chunkETag(version, size, chunkIndex);
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "public, no-cache");
+        response.setHeader("X-Chunk-Index", String.valueOf(chunkIndex));
+        response.setHeader("X-File-Id", fileId);
+        if (version.getLastModified() >= 0) {
+            response.setDateHeader("Last-Modified", version.getLastModified());
+        }
+        if (HttpRangeUtils.isNotModified(request, etag, version.getLastModified())) {
+            response.setStatus(jakarta.servlet.http.HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // 首个分片视为一次下载
+        if (chunkIndex == 0) {
+            reportCounterService.recordFileDownload(fileId);
+        }
+
+        response.setContentType("application/octet-stream");
+        response.setHeader("Content-Length", String.valueOf(endByte - startByte + 1));
+
+        writeMirroredRange(fileInfo, startByte, endByte, response);
+    }
+
+    /**
+     * 获取分片清单（用于小程序端分片下载）
+     * 分片大小按文件大小与网络类型选择，每个分片附带偏移、长度和SHA-256；
+     * 清单带强ETag，对象未变化时返回304（返回 null）
+     * @param fileId 文件ID
+     * @param networkType 客户端网络类型，可为空
+     * @param chunkSize 指定分片大小，可为空
+     */
+    public Map<String, Object> getChunkManifest(String fileId, String networkType, Integer chunkSize,
+                                                jakarta.servlet.http.HttpServletRequest request,
+                                                jakarta.servlet.http.HttpServletResponse response) throws IOException {
+        FileInfo fileInfo = getPdfFileInfoForRender(fileId);
+        String objectKey = servedObjectKey(fileInfo);
+        long fileSize = servedObjectSize(fileInfo);
+
+        int size;
+        if (chunkSize != null) {
+            if (!PdfChunkManifests.isValidChunkSize(chunkSize)) {
+                throw new BusinessException(400, "不支持的分片大小: " + chunkSize);
+            }
+            size = chunkSize;
+        } else {
+            size = PdfChunkManifests.chooseChunkSize(fileSize, networkType);
+        }
+
+        OssObjectMirror.ObjectVersion version = ossObjectMirror.getObjectVersion(objectKey, fileSize);
+        String etag = "\"" + stripQuotes(version.getETag()) + "-m" + size + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "private, no-cache");
+        if (HttpRangeUtils.isNotModified(request, etag, version.getLastModified())) {
+            response.setStatus(jakarta.servlet.http.HttpServletResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+
+        PdfChunkManifests.ChunkManifest manifest = pdfChunkManifests.getManifest(objectKey, fileSize, version.getETag(), size);
+        List<Map<String, Object>> chunks = new ArrayList<>(manifest.getChunks().size());
+        for (PdfChunkManifests.ChunkInfo chunk : manifest.getChunks()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("index", chunk.getIndex());
+            item.put("offset", chunk.getOffset());
+            item.put("length", chunk.getLength());
+            item.put("sha256", chunk.getSha256());
+            item.put("etag", chunkETag(version, size, chunk.getIndex()));
+            chunks.add(item);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("fileId", fileId);
+        result.put("version", stripQuotes(version.getETag()));
+        result.put("fileSize", fileSize);
+        result.put("sha256", manifest.getSha256());
+        result.put("chunkSize", size);
+        result.put("totalChunks", chunks.size());
+        result.put("totalPages", fileInfo.getPageNums());
+        result.put("linearized", isLinearized(fileInfo));
+        result.put("chunks", chunks);
+        return result;
+    }
+
+    /**
+     * 分片强ETag：对象内容由OSS ETag唯一确定，分片内容再由分片大小和序号确定
+     */
+    private String chunkETag(OssObjectMirror.ObjectVersion version, int chunkSize, int chunkIndex) {
+        return "\"" + stripQuotes(version.getETag()) + "-" + chunkSize + "-" + chunkIndex + "\"";
+    }
+
+    private String stripQuotes(String etag) {
+        return etag.replace("\"", "");
+    }
+
+    /**
+     * 将镜像文件的 [startByte, endByte] 写入响应
+     * 写出期间持有镜像条目，文件不会被淘汰；数据经堆缓冲区复制写出，不是零拷贝，
+     * 详见 {@link OssObjectMirror#transferTo}
+     */
+    private void writeMirroredRange(FileInfo fileInfo, long startByte, long endByte,
+                                    jakarta.servlet.http.HttpServletResponse response) throws IOException {
+        ossObjectMirror.transferTo(servedObjectKey(fileInfo), servedObjectSize(fileInfo), startByte, endByte, response.getOutputStream());
+        response.getOutputStream().flush();
+    }
+
+    /**
+     * 下载时实际使用的OSS对象：存在线性化优化版本时优先使用
+     */
+    private String servedObjectKey(FileInfo fileInfo) {
+        return StringUtils.hasText(fileInfo.getOptimizedFileName()) && fileInfo.getOptimizedFileSize() != null
+                ? fileInfo.getOptimizedFileName() : fileInfo.getFileName();
+    }
+
+    /**
+     * 下载时实际使用的OSS对象大小
+     */
+    private long servedObjectSize(FileInfo fileInfo) {
+        return StringUtils.hasText(fileInfo.getOptimizedFileName()) && fileInfo.getOptimizedFileSize() != null
+                ? fileInfo.getOptimizedFileSize() : fileInfo.getFileSize();
+    }
+
+    /**
+     * 下载的对象是否已线性化：优化后对象可能只压缩了图片（qpdf 不可用时），此时仍未线性化
+     */
+    private boolean isLinearized(FileInfo fileInfo) {
+        return StringUtils.hasText(fileInfo.getOptimizedFileName()) && fileInfo.getOptimizedFileSize() != null
+                && Boolean.TRUE.equals(fileInfo.getOptimizedLinearized());
     }
 
     /**
@@ -186,8 +478,9 @@ public class PdfStreamService {
         }
         log.info("获取PDF文件信息，fileInfo={} ", fileInfo);
 
-        // 计算分片数量
-        int totalChunks = (int) Math.ceil((double) fileInfo.getFileSize() / CHUNK_SIZE);
+        // 计算分片数量（按实际下载的对象计算）
+        long fileSize = servedObjectSize(fileInfo);
+        int totalChunks = (int) Math.ceil((double) fileSize / CHUNK_SIZE);
         
         // 获取或生成加密密钥
         String encryptionKey = getOrGenerateEncryptionKey(fileId);
@@ -195,7 +488,8 @@ public class PdfStreamService {
         return Map.of(
             "fileId", fileId,
             "filename", fileInfo.getOriginalName(),
-            "fileSize", fileInfo.getFileSize(),
+            "fileSize", fileSize,
+            "linearized", isLinearized(fileInfo),
             "totalChunks", totalChunks,
             "chunkSize", CHUNK_SIZE,
             "encryptionKey", encryptionKey,
@@ -204,92 +498,6 @@ public class PdfStreamService {
         );
     }
 
-    /**
-     * 从OSS流式传输PDF文件
-     */
-    private void streamPdfFromOss(String objectKey, long startByte, long endByte, String encryptionKey, jakarta.servlet.http.HttpServletResponse response) throws IOException {
-        OSSObject ossObject = null;
-        InputStream inputStream = null;
-        OutputStream outputStream = null;
-        
-        try {
-            // 设置OSS请求范围
-            com.aliyun.oss.model.GetObjectRequest getObjectRequest = new com.aliyun.oss.model.GetObjectRequest(
-                ossProperties.getBucketName(), objectKey);
-            getObjectRequest.setRange(startByte, endByte);
-            
-            ossObject = ossClient.getObject(getObjectRequest);
-            inputStream = ossObject.getObjectContent();
-            outputStream = response.getOutputStream();
-
-            // 分片读取和传输（不加密）
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            long totalBytesRead = 0;
-            
-            while ((bytesRead = inputStream.read(buffer)) != -1 && totalBytesRead < (endByte - startByte + 1)) {
-                // 截取实际读取的数据
-                byte[] actualData = new byte[bytesRead];
-                System.arraycopy(buffer, 0, actualData, 0, bytesRead);
-                
-                // 直接写入响应流（不加密）
-                outputStream.write(actualData);
-                totalBytesRead += bytesRead;
-                
-                // 刷新缓冲区
-                if (totalBytesRead % (64 * 1024) == 0) { // 每64KB刷新一次
-                    outputStream.flush();
-                }
-            }
-            
-            outputStream.flush();
-            
-        } finally {
-            if (inputStream != null) try { inputStream.close(); } catch (Exception ignored) {}
-            if (ossObject != null) try { ossObject.close(); } catch (Exception ignored) {}
-        }
-    }
-
-    /**
-     * 从OSS读取分片数据
-     */
-    private byte[] readChunkFromOss(String objectKey, long startByte, long endByte) throws IOException {
-        OSSObject ossObject = null;
-        InputStream inputStream = null;
-        
-        try {
-            // 设置OSS请求范围
-            com.aliyun.oss.model.GetObjectRequest getObjectRequest = new com.aliyun.oss.model.GetObjectRequest(
-                ossProperties.getBucketName(), objectKey);
-            getObjectRequest.setRange(startByte, endByte);
-            
-            ossObject = ossClient.getObject(getObjectRequest);
-            inputStream = ossObject.getObjectContent();
-            
-            // 计算期望读取的字节数
-            long expectedBytes = endByte - startByte + 1;
-            
-            // 使用ByteArrayOutputStream来动态读取数据
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            byte[] data = new byte[8192];
-            long totalBytesRead = 0;
-            
-            int bytesRead;
-            while (totalBytesRead < expectedBytes && (bytesRead = inputStream.read(data, 0, 
-                    (int) Math.min(data.length, expectedBytes - totalBytesRead))) != -1) {
-                buffer.write(data, 0, bytesRead);
-                totalBytesRead += bytesRead;
-            }
-            
-            // 返回读取的数据
-            return buffer.toByteArray();
-            
-        } finally {
-            if (inputStream != null) try { inputStream.close(); } catch (Exception ignored) {}
-            if (ossObject != null) try { ossObject.close(); } catch (Exception ignored) {}
-        }
-    }
-
     /**
      * 加密分片数据 (保留方法但不使用)
      */
@@ -370,33 +578,38 @@ public class PdfStreamService {
     }
 
     /**
-     * 清理过期缓存
+     * 获取页图缓存、文档池与OSS镜像统计信息
      */
-    public void cleanupExpiredCache() {
-        long currentTime = System.currentTimeMillis();
-        fileCache.entrySet().removeIf(entry -> 
-            currentTime - entry.getValue().getCacheTime() > CACHE_EXPIRE_TIME);
-        
-        // 清理过期的加密密钥（可选，根据安全策略决定）
-        // encryptionKeys.clear();
+    public Map<String, Object> getCacheStats() {
+        return Map.of(
+            "pageCache", pageImageCache.getStats(),
+            "documentPool", pdfDocumentPool.getStats(),
+            "ossMirror", ossObjectMirror.getStats(),
+            "prerender", pagePrerenderer.getStats(),
+            "render", pdfPageRenderer.getStats(),
+            "optimize", pdfOptimizer.getStats(),
+            "chunkManifest", pdfChunkManifests.getStats(),
+            "fileInfo", fileInfoService.getCacheStats()
+        );
     }
 
     /**
-     * 文件缓存信息
+     * 手动提交线性化优化（用于历史文件）
+     * @param fileId 文件ID
      */
-    private static class FileCacheInfo {
-        private final long cacheTime;
-        private final String filePath;
-        private final long fileSize;
-
-        public FileCacheInfo(String filePath, long fileSize) {
-            this.cacheTime = System.currentTimeMillis();
-            this.filePath = filePath;
-            this.fileSize = fileSize;
-        }
+    public void submitOptimize(String fileId) {
+        getPdfFileInfoForRender(fileId);
+        pdfOptimizer.submit(fileId);
+    }
 
-        public long getCacheTime() { return cacheTime; }
-        public String getFilePath() { return filePath; }
-        public long getFileSize() { return fileSize; }
+    /**
+     * 清理过期缓存
+     */
+    public void cleanupExpiredCache() {
+        // 淘汰长时间未访问的OSS对象镜像
+        ossObjectMirror.cleanupExpired();
+        
+        // 清理过期的加密密钥（可选，根据安全策略决定）
+        // encryptionKeys.clear();
     }
-}
\ No newline at end of file
+}
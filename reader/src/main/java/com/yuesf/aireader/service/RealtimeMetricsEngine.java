@@ -0,0 +1,305 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.TrackingConfig;
+import com.yuesf.aireader.entity.tracking.TrackingEvent;
+import com.yuesf.aireader.util.HyperLogLog;
+import com.yuesf.aireader.util.SpaceSavingTopK;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存实时指标
+ * 写入事件提交后按事件时间落入分钟桶和小时桶两组环形滑动窗口，每个桶记录事件数、
+ * 活跃用户 HyperLogLog、热门页面和事件类型的 Space-Saving 统计；查询时合并时间范围内的桶，
+ * 活跃用户数和热门项直接从内存得到，不查询数据库。桶数、HyperLogLog 精度和热门项容量固定，内存占用与流量无关。
+ * 统计是近似值：活跃用户误差约 1.04 / sqrt(2^精度)，热门项计数可能略有高估。
+ * 查询起点早于服务启动或超出窗口时调用方应回退到数据库。
+ */
+@Slf4j
+@Service
+public class RealtimeMetricsEngine {
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 3_600_000L;
+
+    @Autowired
+    private TrackingConfig trackingConfig;
+
+    private Ring minutes;
+
+    private Ring hours;
+
+    // 服务启动时间，之前的事件不在内存中
+    private long startedAt;
+
+    @PostConstruct
+    public void init() {
+        TrackingConfig.RealtimeConfig config = trackingConfig.getRealtime();
+        minutes = new Ring(config.getMinuteBuckets(), MINUTE_MS, config);
+        hours = new Ring(config.getHourBuckets(), HOUR_MS, config);
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 是否启用内存实时指标
+     */
+    public boolean isEnabled() {
+        return trackingConfig.getRealtime().isEnabled();
+    }
+
+    /**
+     * 累加一批已写入的事件；在事务中调用时等事务提交后再累加，回滚的事件不计入
+     * @param events 埋点事件
+     */
+    public void record(List<TrackingEvent> events) {
+        if (!isEnabled() || events.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accumulate(events);
+                }
+            });
+        } else {
+            accumulate(events);
+        }
+    }
+
+    /**
+     * 内存中的数据能否回答从 since 到现在的查询
+     * @param since 开始时间戳（毫秒）
+     */
+    public boolean covers(long since) {
+        long now = System.currentTimeMillis();
+        return isEnabled() && since >= startedAt && since <= now && hours.covers(since, now);
+    }
+
+    /**
+     * 从 since 到现在的活跃用户数（去重）
+     */
+    public long activeUsers(long since) {
+        return merge(since).users.estimate();
+    }
+
+    /**
+     * 从 since 到现在的热门页面
+     * @return 统计结果，包含 dimension 和 count，按 count 倒序
+     */
+    public List<Map<String, Object>> topPages(long since, int limit) {
+        return top(merge(since).pages, limit);
+    }
+
+    /**
+     * 从 since 到现在的热门事件类型
+     * @return 统计结果，包含 dimension 和 count，按 count 倒序
+     */
+    public List<Map<String, Object>> topEventTypes(long since, int limit) {
+        return top(merge(since).eventTypes, limit);
+    }
+
+    /**
+     * 最近若干分钟的实时概况
+     * @param windowMinutes 时间窗口（分钟），小于分钟桶个数，否则按小时桶合并
+     * @param limit 热门项数量
+     */
+    public Map<String, Object> getRealtime(int windowMinutes, int limit) {
+        long now = System.currentTimeMillis();
+        long since = Math.max(now - windowMinutes * MINUTE_MS, startedAt);
+        Window window = merge(since);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("since", since);
+        result.put("events", window.events);
+        result.put("activeUsers", window.users.estimate());
+        result.put("topPages", top(window.pages, limit));
+        result.put("topEvents", top(window.eventTypes, limit));
+        result.put("perMinute", minutes.series(since, now));
+        return result;
+    }
+
+    /**
+     * 实时指标的配置和内存占用
+     */
+    public Map<String, Object> getStats() {
+        TrackingConfig.RealtimeConfig config = trackingConfig.getRealtime();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("startedAt", startedAt);
+        stats.put("minuteBuckets", config.getMinuteBuckets());
+        stats.put("hourBuckets", config.getHourBuckets());
+        stats.put("hllBytes", (long) (config.getMinuteBuckets() + config.getHourBuckets()) * (1L << config.getHllPrecision()));
+        stats.put("topKCapacity", config.getTopKCapacity());
+        return stats;
+    }
+
+    private void accumulate(List<TrackingEvent> events) {
+        for (TrackingEvent event : events) {
+            if (event.getTimestamp() == null) {
+                continue;
+            }
+            minutes.add(event);
+            hours.add(event);
+        }
+    }
+
+    /**
+     * 合并从 since 到现在的桶：分钟窗口内用分钟桶，更早的起点用小时桶（起点向下取整到整点）
+     */
+    private Window merge(long since) {
+        long now = System.currentTimeMillis();
+        Ring ring = minutes.covers(since, now) ? minutes : hours;
+        return ring.merge(since, now);
+    }
+
+    private static List<Map<String, Object>> top(Map<String, Long> counts, int limit) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .forEach(e -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("dimension", e.getKey());
+                    row.put("count", e.getValue());
+                    result.add(row);
+                });
+        return result;
+    }
+
+    /**
+     * 固定个数的时间桶环，桶按 时间 / 桶长 取模定位，落到过期桶时先清空再复用
+     */
+    private static final class Ring {
+        private final Bucket[] buckets;
+        private final long span;
+        private final int precision;
+
+        private Ring(int size, long span, TrackingConfig.RealtimeConfig config) {
+            this.buckets = new Bucket[Math.max(1, size)];
+            this.span = span;
+            this.precision = config.getHllPrecision();
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new Bucket(config.getHllPrecision(), config.getTopKCapacity());
+            }
+        }
+
+        private boolean covers(long since, long now) {
+            return Math.floorDiv(since, span) > Math.floorDiv(now, span) - buckets.length;
+        }
+
+        private void add(TrackingEvent event) {
+            long slot = Math.floorDiv(event.getTimestamp(), span);
+            long current = Math.floorDiv(System.currentTimeMillis(), span);
+            // 超出窗口的旧事件和明显超前的事件不计入
+            if (slot <= current - buckets.length || slot > current + 1) {
+                return;
+            }
+            Bucket bucket = buckets[(int) Math.floorMod(slot, (long) buckets.length)];
+            synchronized (bucket) {
+                if (bucket.slot != slot) {
+                    if (slot < bucket.slot) {
+                        return;
+                    }
+                    bucket.reset(slot);
+                }
+                bucket.add(event);
+            }
+        }
+
+        private Window merge(long since, long now) {
+            Window window = new Window(precision);
+            long from = Math.floorDiv(since, span);
+            long to = Math.floorDiv(now, span) + 1;
+            for (long slot = from; slot <= to; slot++) {
+                Bucket bucket = buckets[(int) Math.floorMod(slot, (long) buckets.length)];
+                synchronized (bucket) {
+                    if (bucket.slot == slot) {
+                        window.events += bucket.events;
+                        window.users.merge(bucket.users);
+                        bucket.pages.addTo(window.pages);
+                        bucket.eventTypes.addTo(window.eventTypes);
+                    }
+                }
+            }
+            return window;
+        }
+
+        private List<Map<String, Object>> series(long since, long now) {
+            List<Map<String, Object>> series = new ArrayList<>();
+            for (long slot = Math.floorDiv(since, span); slot <= Math.floorDiv(now, span); slot++) {
+                Bucket bucket = buckets[(int) Math.floorMod(slot, (long) buckets.length)];
+                long events;
+                synchronized (bucket) {
+                    events = bucket.slot == slot ? bucket.events : 0;
+                }
+                Map<String, Object> point = new LinkedHashMap<>();
+                point.put("time", slot * span);
+                point.put("events", events);
+                series.add(point);
+            }
+            return series;
+        }
+    }
+
+    /**
+     * 单个时间桶，字段在对象锁内访问
+     */
+    private static final class Bucket {
+        private long slot = Long.MIN_VALUE;
+        private long events;
+        private final HyperLogLog users;
+        private final SpaceSavingTopK pages;
+        private final SpaceSavingTopK eventTypes;
+
+        private Bucket(int precision, int topKCapacity) {
+            this.users = new HyperLogLog(precision);
+            this.pages = new SpaceSavingTopK(topKCapacity);
+            this.eventTypes = new SpaceSavingTopK(topKCapacity);
+        }
+
+        private void reset(long newSlot) {
+            slot = newSlot;
+            events = 0;
+            users.clear();
+            pages.clear();
+            eventTypes.clear();
+        }
+
+        private void add(TrackingEvent event) {
+            events++;
+            if (event.getUserId() != null) {
+                users.add(event.getUserId());
+            }
+            if (event.getPagePath() != null) {
+                pages.add(event.getPagePath(), 1);
+            }
+            if (event.getEventType() != null) {
+                eventTypes.add(event.getEventType(), 1);
+            }
+        }
+    }
+
+    /**
+     * 合并后的时间窗口
+     */
+    private static final class Window {
+        private long events;
+        private final HyperLogLog users;
+        private final Map<String, Long> pages = new HashMap<>();
+        private final Map<String, Long> eventTypes = new HashMap<>();
+
+        private Window(int precision) {
+            this.users = new HyperLogLog(precision);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.entity.ReportCounterDelta;
+import com.yuesf.aireader.mapper.ReportMapper;
+import com.yuesf.aireader.util.TtlLruCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 报告浏览/下载计数（写回缓冲）
+ * 访问时只在内存中累加（每个报告一组 LongAdder，高并发下无锁竞争），
+ * 定时把增量合并为批量 UPDATE 写入数据库，避免热门报告每次访问都争用同一行锁；应用关闭前再写回一次。
+ * 写库失败的增量放回内存，下次重试。
+ */
+@Slf4j
+@Service
+public class ReportCounterService {
+
+    // 每条 UPDATE 语句包含的报告数上限
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    // 连续多少次写回没有增量的报告从内存中移除
+    private static final int IDLE_FLUSHES_BEFORE_REMOVE = 2;
+
+    @Autowired
+    private ReportMapper reportMapper;
+
+    @Autowired
+    private ReportQueryCache reportQueryCache;
+
+    @Autowired
+    private ReportSearchIndex reportSearchIndex;
+
+    @Value("${app.report-counter.enabled:true}")
+    private boolean enabled;
+
+    private final ConcurrentHashMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    // 文件ID -> 报告ID，PDF下载接口按文件ID访问
+    private final TtlLruCache<String, String> fileToReport = new TtlLruCache<>(10000, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+    private final Object flushLock = new Object();
+
+    // 上次写回时移出内存的计数器，仍持有引用的请求线程可能在移除后才累加，下次写回时再收集一次，仅在 flushLock 内访问
+    private List<Map.Entry<String, Counters>> retired = new ArrayList<>();
+
+    private final LongAdder recordedViews = new LongAdder();
+    private final LongAdder recordedDownloads = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedReports = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    /**
+     * 记录一次浏览
+     */
+    public void recordView(String reportId) {
+        if (!enabled || reportId == null) {
+            return;
+        }
+        counters.computeIfAbsent(reportId, k -> new Counters()).views.increment();
+        recordedViews.increment();
+    }
+
+    /**
+     * 记录一次下载
+     */
+    public void recordDownload(String reportId) {
+        if (!enabled || reportId == null) {
+            return;
+        }
+        counters.computeIfAbsent(reportId, k -> new Counters()).downloads.increment();
+        recordedDownloads.increment();
+    }
+
+    /**
+     * 按报告文件ID记录一次下载，文件不属于任何报告时忽略
+     * @param fileId 文件ID
+     */
+    public void recordFileDownload(String fileId) {
+        if (!enabled || fileId == null) {
+            return;
+        }
+        try {
+            recordDownload(fileToReport.get(fileId, reportMapper::selectIdByReportFileId));
+        } catch (Exception e) {
+            // 计数失败不影响下载
+            log.warn("记录报告下载失败，文件ID: {}, {}", fileId, e.getMessage());
+        }
+    }
+
+    /**
+     * 尚未写入数据库的浏览数
+     */
+    public long pendingViews(String reportId) {
+        Counters c = counters.get(reportId);
+        return c == null ? 0 : c.views.sum();
+    }
+
+    /**
+     * 尚未写入数据库的下载数
+     */
+    public long pendingDownloads(String reportId) {
+        Counters c = counters.get(reportId);
+        return c == null ? 0 : c.downloads.sum();
+    }
+
+    /**
+     * 定时把增量写入数据库
+     */
+    @Scheduled(fixedDelayString = "${app.report-counter.flush-interval:PT30S}")
+    public void flush() {
+        synchronized (flushLock) {
+            // 报告ID -> 增量，同一报告的旧计数器与新计数器合并为一条，批量 UPDATE 中每个ID只能出现一次
+            Map<String, ReportCounterDelta> pending = new LinkedHashMap<>();
+            for (Map.Entry<String, Counters> entry : retired) {
+                addDelta(pending, entry.getKey(), entry.getValue());
+            }
+            retired = new ArrayList<>();
+            for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+                Counters c = entry.getValue();
+                if (addDelta(pending, entry.getKey(), c)) {
+                    c.idleFlushes = 0;
+                } else if (++c.idleFlushes >= IDLE_FLUSHES_BEFORE_REMOVE && counters.remove(entry.getKey(), c)) {
+                    // 长期无访问的报告移出内存；读取与移除之间的累加在移除后收集，移除后才落到旧计数器上的留到下次写回
+                    addDelta(pending, entry.getKey(), c);
+                    retired.add(Map.entry(entry.getKey(), c));
+                }
+            }
+            List<ReportCounterDelta> deltas = new ArrayList<>(pending.values());
+            for (int i = 0; i < deltas.size(); i += FLUSH_BATCH_SIZE) {
+                writeBatch(deltas.subList(i, Math.min(i + FLUSH_BATCH_SIZE, deltas.size())));
+            }
+            if (!deltas.isEmpty()) {
+                flushes.increment();
+                log.debug("报告计数写回完成，报告数: {}", deltas.size());
+            }
+        }
+    }
+
+    /**
+     * 应用关闭前写回剩余增量
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 计数统计信息
+     */
+    public Map<String, Object> getStats() {
+        long pendingViews = 0;
+        long pendingDownloads = 0;
+        for (Counters c : counters.values()) {
+            pendingViews += c.views.sum();
+            pendingDownloads += c.downloads.sum();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedReports", counters.size());
+        stats.put("pendingViews", pendingViews);
+        stats.put("pendingDownloads", pendingDownloads);
+        stats.put("recordedViews", recordedViews.sum());
+        stats.put("recordedDownloads", recordedDownloads.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("flushedReports", flushedReports.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+
+    /**
+     * 取出计数器中的增量加入待写回列表
+     * @return 是否有增量
+     */
+    private boolean addDelta(Map<String, ReportCounterDelta> pending, String reportId, Counters c) {
+        long views = c.views.sumThenReset();
+        long downloads = c.downloads.sumThenReset();
+        if (views == 0 && downloads == 0) {
+            return false;
+        }
+        ReportCounterDelta delta = pending.computeIfAbsent(reportId, k -> new ReportCounterDelta(k, 0, 0));
+        delta.setViews(delta.getViews() + views);
+        delta.setDownloads(delta.getDownloads() + downloads);
+        return true;
+    }
+
+    private void writeBatch(List<ReportCounterDelta> batch) {
+        try {
+            // 写库与检索索引累加互斥于索引的单篇刷新，避免刷新读到已含增量的行后再累加一次
+            reportSearchIndex.applyCounterDeltas(batch, () -> reportMapper.incrementCounters(batch));
+        } catch (Exception e) {
+            flushFailures.increment();
+            log.error("报告计数写回失败，{} 个报告的增量将在下次重试", batch.size(), e);
+            for (ReportCounterDelta delta : batch) {
+                Counters c = counters.computeIfAbsent(delta.getReportId(), k -> new Counters());
+                c.views.add(delta.getViews());
+                c.downloads.add(delta.getDownloads());
+            }
+            return;
+        }
+        flushedReports.add(batch.size());
+        // 缓存的报告实体携带旧计数，失效后下次读取取到新值
+        reportQueryCache.invalidateReports(batch.stream().map(ReportCounterDelta::getReportId).toList());
+    }
+
+    private static class Counters {
+        private final LongAdder views = new LongAdder();
+        private final LongAdder downloads = new LongAdder();
+        // 仅在 flushLock 内访问
+        private int idleFlushes = 0;
+    }
+}
@@ -0,0 +1,115 @@
+package com.yuesf.aireader.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yuesf.aireader.entity.Report;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * 报告列表分页游标
+ * 记录上一页最后一行的排序值和ID，下一页按 (排序值, ID) 定位起点，查询代价与翻页深度无关；
+ * 同时携带首页统计的总数，后续页不再执行 COUNT。
+ * 对客户端不透明，序列化为 Base64URL 编码的 JSON。
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReportListCursor {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 查询条件指纹，游标只能用于生成它的查询
+     */
+    private String filter;
+
+    /**
+     * 上一页最后一行的排序值（字符串形式），为 null 表示该行排序字段为空
+     */
+    private String value;
+
+    /**
+     * 上一页最后一行的报告ID
+     */
+    private String id;
+
+    /**
+     * 首页统计的总数
+     */
+    private long total;
+
+    /**
+     * 下一页的偏移量，仅用于检索索引查询（内存分页，无需定位排序值）
+     */
+    private Integer offset;
+
+    /**
+     * 编码为字符串
+     */
+    public String encode() {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(OBJECT_MAPPER.writeValueAsBytes(this));
+        } catch (Exception e) {
+            throw new IllegalStateException("分页游标编码失败", e);
+        }
+    }
+
+    /**
+     * 解析游标字符串
+     * @return 游标，字符串为空时返回 null
+     * @throws IllegalArgumentException 游标格式无效
+     */
+    public static ReportListCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor.trim());
+            return OBJECT_MAPPER.readValue(new String(json, StandardCharsets.UTF_8), ReportListCursor.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+
+    /**
+     * 取报告在排序字段上的值，字段映射与 ReportMapper.xml 的 SortColumn 一致
+     */
+    public static String sortValueOf(Report report, String sortBy) {
+        Object value = switch (sortBy == null ? "" : sortBy) {
+            case "updateDate" -> report.getUpdateDate();
+            case "title" -> report.getTitle();
+            case "downloadCount" -> report.getDownloadCount();
+            case "viewCount" -> report.getViewCount();
+            case "price" -> report.getPrice();
+            case "pages" -> report.getPages();
+            case "fileSize" -> report.getFileSize();
+            default -> report.getPublishDate();
+        };
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * 将游标中的排序值还原为列对应的类型，作为查询参数
+     * @throws IllegalArgumentException 值与排序字段类型不符
+     */
+    public Object typedValue(String sortBy) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return switch (sortBy == null ? "" : sortBy) {
+                case "title" -> value;
+                case "downloadCount", "viewCount", "price", "pages" -> Integer.valueOf(value);
+                case "fileSize" -> Long.valueOf(value);
+                default -> LocalDate.parse(value);
+            };
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.aliyun.oss.model.ObjectMetadata;
 import com.aliyun.oss.model.PutObjectResult;
 import com.yuesf.aireader.config.OssConfig.OssProperties;
 import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.service.pdf.PdfDocumentLoader;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
 import org.apache.commons.io.FilenameUtils;
@@ -41,16 +42,30 @@ public class ReportProcessingService {
     @Autowired
     private FileInfoService fileInfoService;
 
+    @Autowired
+    private PdfDocumentLoader pdfDocumentLoader;
+
     // 目前不直接复用上传服务
 
+    /**
+     * 打开PDF文档：已知文件大小时走本地镜像，否则直接读取OSS对象流（落盘后解析）
+     */
+    private PDDocument openPdf(FileInfo pdfFileInfo) throws IOException {
+        if (pdfFileInfo.getFileSize() != null) {
+            return pdfDocumentLoader.open(pdfFileInfo);
+        }
+        var ossObject = ossClient.getObject(ossProperties.getBucketName(), pdfFileInfo.getFileName());
+        try (var input = ossObject.getObjectContent()) {
+            return pdfDocumentLoader.open(input);
+        }
+    }
+
     /**
      * 生成缩略图并上传，返回缩略图对象在OSS中的路径（objectKey）
      */
     public FileInfo generateAndUploadThumbnailFromPdf(FileInfo pdfFileInfo) throws IOException {
-        String objectKey = pdfFileInfo.getFileName();
-        // 从OSS读取PDF
-        var ossObject = ossClient.getObject(ossProperties.getBucketName(), objectKey);
-        try (var input = ossObject.getObjectContent(); var document = PDDocument.load(input)) {
+        // 通过本地镜像打开PDF，解析时堆内存占用受加载器上限约束
+        try (PDDocument document = openPdf(pdfFileInfo)) {
             PDFRenderer renderer = new PDFRenderer(document);
 
             BufferedImage pageImage;
@@ -0,0 +1,218 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.CacheConfig;
+import com.yuesf.aireader.dto.ReportListRequest;
+import com.yuesf.aireader.entity.Report;
+import com.yuesf.aireader.util.TtlLruCache;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * 报告查询缓存
+ * 缓存两类数据：报告ID -> 报告实体（详情及列表行），规范化后的列表查询条件 -> 当页报告ID、总数与下一页游标。
+ * 列表命中时按ID从实体缓存组装，缺失的行再批量回库；报告的任何写操作都会失效该报告及全部列表缓存，
+ * 处于事务中时在提交后再失效一次，避免提交前的并发读取把旧数据写回缓存。
+ */
+@Component
+public class ReportQueryCache {
+
+    @Autowired
+    private CacheConfig cacheConfig;
+
+    private TtlLruCache<String, Report> reports;
+
+    private TtlLruCache<String, ReportIdPage> lists;
+
+    @PostConstruct
+    public void init() {
+        CacheConfig.CacheSpec detail = cacheConfig.getReportDetail();
+        CacheConfig.CacheSpec list = cacheConfig.getReportList();
+        reports = new TtlLruCache<>(detail.getMaxSize(), detail.getTtl(), detail.getNegativeTtl());
+        lists = new TtlLruCache<>(list.getMaxSize(), list.getTtl(), list.getNegativeTtl());
+    }
+
+    /**
+     * 详情缓存是否启用
+     */
+    public boolean isDetailEnabled() {
+        return cacheConfig.getReportDetail().isEnabled();
+    }
+
+    /**
+     * 列表缓存是否启用
+     */
+    public boolean isListEnabled() {
+        return cacheConfig.getReportList().isEnabled();
+    }
+
+    /**
+     * 获取报告，未命中时调用 loader 加载
+     * 返回的对象为共享实例，调用方不得修改
+     */
+    public Report getReport(String id, Function<String, Report> loader) {
+        return reports.get(id, loader);
+    }
+
+    /**
+     * 批量获取报告，保持 ids 顺序；未命中的报告通过 batchLoader 一次加载并写入缓存
+     * 已被删除的报告不出现在结果中
+     */
+    public List<Report> getReports(List<String> ids, Function<List<String>, List<Report>> batchLoader) {
+        Map<String, Report> found = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Report report = reports.getIfPresent(id);
+            if (report != null) {
+                found.put(id, report);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long version = reports.version();
+            for (Report report : batchLoader.apply(missing)) {
+                reports.putIfVersion(report.getId(), report, version);
+                found.put(report.getId(), report);
+            }
+        }
+        List<Report> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Report report = found.get(id);
+            if (report != null) {
+                result.add(report);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 报告实体缓存的当前版本号，查询列表前获取，写入时交给 {@link #putReports}
+     */
+    public long reportsVersion() {
+        return reports.version();
+    }
+
+    /**
+     * 缓存列表查询得到的报告行；查询期间发生过失效时不写入
+     * @param version 查询前通过 {@link #reportsVersion()} 获取的版本号
+     */
+    public void putReports(Collection<Report> rows, long version) {
+        for (Report report : rows) {
+            reports.putIfVersion(report.getId(), report, version);
+        }
+    }
+
+    /**
+     * 获取列表页缓存，未命中时调用 loader 加载
+     */
+    public ReportIdPage getListPage(String queryKey, Function<String, ReportIdPage> loader) {
+        return lists.get(queryKey, loader);
+    }
+
+    /**
+     * 报告发生变更：失效该报告及全部列表缓存（列表的成员与排序都可能改变）
+     * @param reportId 报告ID，为空时只失效列表
+     */
+    public void evict(String reportId) {
+        doEvict(reportId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    doEvict(reportId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 只失效报告实体（如计数变化），列表的成员与排序不受影响
+     */
+    public void invalidateReports(Collection<String> reportIds) {
+        for (String reportId : reportIds) {
+            reports.invalidate(reportId);
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reportDetail", reports.getStats());
+        stats.put("reportList", lists.getStats());
+        return stats;
+    }
+
+    /**
+     * 生成规范化的列表查询键：分页与排序使用与 {@link ReportService#getReportList} 相同的默认值和边界，
+     * 多选条件（IN 查询）去重排序，等价的请求得到同一个键
+     */
+    public static String listKey(ReportListRequest request, int page, int pageSize, String sortBy, String sortOrder) {
+        StringBuilder key = new StringBuilder();
+        key.append(page).append('|').append(pageSize)
+                .append('|').append(sortBy).append('|').append(sortOrder)
+                .append('|').append(normalize(request.getKeyword()))
+                .append('|').append(normalize(request.getCategory()))
+                .append('|').append(normalize(request.getSource()))
+                .append('|').append(normalize(request.getStartDate()))
+                .append('|').append(normalize(request.getEndDate()));
+        if (request.getFilters() != null) {
+            key.append('|').append(normalizeList(request.getFilters().getCategory()))
+                    .append('|').append(normalizeList(request.getFilters().getSource()));
+        }
+        return key.toString();
+    }
+
+    private void doEvict(String reportId) {
+        if (reportId != null) {
+            reports.invalidate(reportId);
+        }
+        lists.invalidateAll();
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String normalizeList(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return "";
+        }
+        TreeSet<String> sorted = new TreeSet<>();
+        for (String value : values) {
+            if (value != null) {
+                sorted.add(value);
+            }
+        }
+        return String.join(",", sorted);
+    }
+
+    /**
+     * 列表页缓存值：当页报告ID（按查询排序）、总数及下一页游标
+     */
+    @Getter
+    public static class ReportIdPage {
+        private final List<String> ids;
+        private final long total;
+        private final String nextCursor;
+
+        public ReportIdPage(List<String> ids, long total, String nextCursor) {
+            this.ids = ids;
+            this.total = total;
+            this.nextCursor = nextCursor;
+        }
+    }
+}
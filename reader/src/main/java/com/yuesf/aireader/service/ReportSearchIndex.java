@@ -0,0 +1,731 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.SearchConfig;
+import com.yuesf.aireader.dto.FacetCount;
+import com.yuesf.aireader.entity.Report;
+import com.yuesf.aireader.entity.ReportCounterDelta;
+import com.yuesf.aireader.entity.ReportTag;
+import com.yuesf.aireader.mapper.ReportMapper;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 报告全文检索索引
+ * 在内存中为标题、摘要、标签、来源和分类建立倒排索引，替代数据库中无法使用索引的 LIKE '%kw%' 扫描。
+ * 中文等表意文字按二元组（bigram）切分，英文和数字按整词切分；单个汉字和英文单词按前缀匹配。
+ * 查询要求命中全部词项，按 BM25 计算相关度，各字段按权重计入词频。
+ * 应用启动后在后台全量构建，报告写操作提交后增量更新；索引就绪前调用方回退到数据库查询。
+ * 同时维护标签、分类、来源的分面计数，随文档增删增量更新，查询时无需扫描。
+ */
+@Slf4j
+@Component
+public class ReportSearchIndex {
+
+    /**
+     * 按相关度排序
+     */
+    public static final String SORT_RELEVANCE = "relevance";
+
+    private static final int TITLE_WEIGHT = 4;
+    private static final int TAG_WEIGHT = 3;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int SOURCE_WEIGHT = 2;
+    private static final int SUMMARY_WEIGHT = 1;
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    // 删除文档数低于该值时不触发重建
+    private static final int MIN_COMPACT_DELETED = 1000;
+
+    @Autowired
+    private ReportMapper reportMapper;
+
+    @Autowired
+    private SearchConfig searchConfig;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 单篇报告从数据库重新读取并写入索引的过程与计数写回互斥，避免读到已含增量的行后再累加一次
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // 受 lock 保护
+    private IndexData data = new IndexData();
+
+    private volatile boolean ready = false;
+
+    private final AtomicBoolean building = new AtomicBoolean(false);
+
+    // 重建期间发生变更的报告，重建完成后重新索引
+    private final Set<String> pendingRefresh = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile long lastRebuildMillis = 0;
+
+    /**
+     * 索引是否可用于查询
+     */
+    public boolean isReady() {
+        return ready && searchConfig.isEnabled();
+    }
+
+    /**
+     * 应用启动完成后在后台构建索引
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * 全量重建索引，构建期间旧索引继续提供查询
+     * @return 是否执行了重建（已有重建在进行或未启用时返回 false）
+     */
+    public boolean rebuild() {
+        if (!searchConfig.isEnabled()) {
+            return false;
+        }
+        // 与计数写回互斥地进入构建状态：此后写回的报告都记入 pendingRefresh，构建完成后重新读取
+        refreshLock.lock();
+        try {
+            if (!building.compareAndSet(false, true)) {
+                return false;
+            }
+            pendingRefresh.clear();
+        } finally {
+            refreshLock.unlock();
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            IndexData fresh = new IndexData();
+            int batchSize = Math.max(1, searchConfig.getRebuildBatchSize());
+            String afterId = null;
+            while (true) {
+                List<Report> batch = reportMapper.selectIndexBatch(afterId, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                Map<String, List<String>> tags = loadTags(batch.stream().map(Report::getId).toList());
+                for (Report report : batch) {
+                    fresh.add(report, tags.get(report.getId()));
+                }
+                afterId = batch.get(batch.size() - 1).getId();
+                if (batch.size() < batchSize) {
+                    break;
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                data = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            rebuilds.increment();
+            lastRebuildMillis = System.currentTimeMillis() - startTime;
+            log.info("报告检索索引构建完成，报告数: {}, 词项数: {}, 耗时: {}ms", fresh.liveDocs, fresh.terms.size(), lastRebuildMillis);
+        } catch (Exception e) {
+            log.error("报告检索索引构建失败", e);
+            return false;
+        } finally {
+            refreshLock.lock();
+            try {
+                building.set(false);
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+        // 构建期间提交的变更可能未被批量读取看到，补做一次增量更新
+        for (String reportId : new ArrayList<>(pendingRefresh)) {
+            pendingRefresh.remove(reportId);
+            refresh(reportId);
+        }
+        return true;
+    }
+
+    /**
+     * 已删除文档过多时后台重建，回收倒排表中失效的记录
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void compactIfNeeded() {
+        if (!isReady()) {
+            return;
+        }
+        int deleted;
+        int live;
+        lock.readLock().lock();
+        try {
+            deleted = data.deletedDocs;
+            live = data.liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (deleted >= MIN_COMPACT_DELETED && deleted > (deleted + live) * searchConfig.getCompactRatio()) {
+            log.info("报告检索索引已删除文档: {}, 有效文档: {}，开始重建", deleted, live);
+            rebuild();
+        }
+    }
+
+    /**
+     * 报告发生变更：处于事务中时在提交后重新索引，否则立即重新索引
+     * @param reportId 报告ID
+     */
+    public void scheduleRefresh(String reportId) {
+        if (reportId == null || !searchConfig.isEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh(reportId);
+                }
+            });
+        } else {
+            refresh(reportId);
+        }
+    }
+
+    /**
+     * 从数据库重新读取报告并更新索引，报告已删除时从索引移除
+     * @param reportId 报告ID
+     */
+    public void refresh(String reportId) {
+        refreshLock.lock();
+        try {
+            if (building.get()) {
+                pendingRefresh.add(reportId);
+            }
+            Report report = reportMapper.selectById(reportId);
+            List<String> tags = report == null ? null : loadTags(List.of(reportId)).get(reportId);
+            lock.writeLock().lock();
+            try {
+                data.remove(reportId);
+                if (report != null) {
+                    data.add(report, tags);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            refreshes.increment();
+        } catch (Exception e) {
+            log.error("更新报告检索索引失败，报告ID: {}", reportId, e);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 关键词检索，过滤条件与 {@link ReportMapper#selectReports} 一致
+     * @param sortBy 排序字段，{@link #SORT_RELEVANCE} 按相关度排序
+     * @return 当页报告ID（已排序）与命中总数；关键词中没有可检索的词项时返回 null，由调用方回退到数据库查询
+     */
+    public SearchResult search(String keyword, String category, String source, LocalDate startDate, LocalDate endDate,
+                               List<String> categories, List<String> sources, String sortBy, String sortOrder,
+                               int offset, int limit) {
+        List<QueryTerm> queryTerms = parseQuery(keyword);
+        if (queryTerms.isEmpty()) {
+            return null;
+        }
+        searches.increment();
+        lock.readLock().lock();
+        try {
+            IndexData index = data;
+            int docCount = index.docs.size();
+            double[] scores = new double[docCount];
+            int[] matchedTerms = new int[docCount];
+            int[] termFrequencies = new int[docCount];
+            double averageLength = index.liveDocs == 0 ? 1 : (double) index.totalLength / index.liveDocs;
+            int maxExpansion = searchConfig.getMaxPrefixExpansion();
+
+            for (QueryTerm queryTerm : queryTerms) {
+                List<Postings> postingsList = index.lookup(queryTerm, maxExpansion);
+                // 前缀展开后同一文档可能出现在多个倒排表中，词频合并后再计分
+                List<Integer> touched = new ArrayList<>();
+                for (Postings postings : postingsList) {
+                    for (int i = 0; i < postings.size; i++) {
+                        int doc = postings.docs[i];
+                        if (index.docs.get(doc) == null) {
+                            continue;
+                        }
+                        if (termFrequencies[doc] == 0) {
+                            touched.add(doc);
+                        }
+                        termFrequencies[doc] += postings.frequencies[i];
+                    }
+                }
+                if (touched.isEmpty()) {
+                    return new SearchResult(List.of(), 0);
+                }
+                int docFrequency = touched.size();
+                double idf = Math.log(1 + (index.liveDocs - docFrequency + 0.5) / (docFrequency + 0.5));
+                for (int doc : touched) {
+                    int tf = termFrequencies[doc];
+                    double norm = BM25_K1 * (1 - BM25_B + BM25_B * index.docs.get(doc).length / averageLength);
+                    scores[doc] += idf * tf * (BM25_K1 + 1) / (tf + norm);
+                    matchedTerms[doc]++;
+                    termFrequencies[doc] = 0;
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>();
+            for (int doc = 0; doc < docCount; doc++) {
+                if (matchedTerms[doc] != queryTerms.size()) {
+                    continue;
+                }
+                IndexedReport report = index.docs.get(doc);
+                if (report.matches(category, source, startDate, endDate, categories, sources)) {
+                    hits.add(new Hit(report, scores[doc]));
+                }
+            }
+            hits.sort(comparator(sortBy, sortOrder));
+
+            int from = Math.min(Math.max(0, offset), hits.size());
+            int to = Math.min(from + Math.max(0, limit), hits.size());
+            List<String> ids = new ArrayList<>(to - from);
+            for (Hit hit : hits.subList(from, to)) {
+                ids.add(hit.report.id);
+            }
+            return new SearchResult(ids, hits.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把浏览/下载计数增量写入数据库并累加到索引，使按热度排序与数据库一致，无需重新索引整篇报告
+     * 写库与累加在 refreshLock 内完成：并发的 refresh 要么在写库前读完（增量累加到其结果上），
+     * 要么在累加后才读取（读到的行已含增量，整篇替换）；全量构建期间写回的报告在构建完成后重新读取
+     * @param deltas 计数增量
+     * @param persist 写库操作，抛出异常时不累加
+     */
+    public void applyCounterDeltas(List<ReportCounterDelta> deltas, Runnable persist) {
+        refreshLock.lock();
+        try {
+            persist.run();
+            if (building.get()) {
+                for (ReportCounterDelta delta : deltas) {
+                    pendingRefresh.add(delta.getReportId());
+                }
+            }
+            addCounterDeltas(deltas);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void addCounterDeltas(List<ReportCounterDelta> deltas) {
+        lock.writeLock().lock();
+        try {
+            for (ReportCounterDelta delta : deltas) {
+                Integer ordinal = data.ordinals.get(delta.getReportId());
+                if (ordinal == null) {
+                    continue;
+                }
+                IndexedReport report = data.docs.get(ordinal);
+                report.viewCount = (int) ((report.viewCount == null ? 0 : report.viewCount) + delta.getViews());
+                report.downloadCount = (int) ((report.downloadCount == null ? 0 : report.downloadCount) + delta.getDownloads());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 标签、分类、来源的分面计数，按报告数降序
+     * @param limit 每类最多返回的取值数
+     * @return tags / categories / sources -> 分面统计项
+     */
+    public Map<String, List<FacetCount>> getFacets(int limit) {
+        Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            facets.put("tags", topFacets(data.tagCounts, limit));
+            facets.put("categories", topFacets(data.categoryCounts, limit));
+            facets.put("sources", topFacets(data.sourceCounts, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return facets;
+    }
+
+    /**
+     * 索引统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", searchConfig.isEnabled());
+        stats.put("ready", ready);
+        stats.put("building", building.get());
+        lock.readLock().lock();
+        try {
+            stats.put("documents", data.liveDocs);
+            stats.put("deletedDocuments", data.deletedDocs);
+            stats.put("terms", data.terms.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("searches", searches.sum());
+        stats.put("refreshes", refreshes.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("lastRebuildMillis", lastRebuildMillis);
+        return stats;
+    }
+
+    /**
+     * 文本切分为索引词项：表意文字连续片段输出相邻二元组，并单独输出片段末字，
+     * 使每个汉字都是某个词项的首字，单字查询可按前缀匹配；字母数字连续片段输出整词；其余字符作为分隔
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String lower = text.toLowerCase();
+        int length = lower.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = lower.codePointAt(i);
+            if (isIdeographic(codePoint)) {
+                int start = i;
+                while (i < length && isIdeographic(lower.codePointAt(i))) {
+                    i += Character.charCount(lower.codePointAt(i));
+                }
+                int[] run = lower.substring(start, i).codePoints().toArray();
+                for (int j = 0; j + 1 < run.length; j++) {
+                    tokens.add(new String(run, j, 2));
+                }
+                tokens.add(new String(run, run.length - 1, 1));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < length && !isIdeographic(lower.codePointAt(i)) && Character.isLetterOrDigit(lower.codePointAt(i))) {
+                    i += Character.charCount(lower.codePointAt(i));
+                }
+                tokens.add(lower.substring(start, i));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 关键词切分为查询词项：多字表意片段按二元组精确匹配，单字和字母数字整词按前缀匹配
+     */
+    static List<QueryTerm> parseQuery(String keyword) {
+        List<QueryTerm> terms = new ArrayList<>();
+        if (keyword == null || keyword.isBlank()) {
+            return terms;
+        }
+        String lower = keyword.toLowerCase();
+        int length = lower.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = lower.codePointAt(i);
+            if (isIdeographic(codePoint)) {
+                int start = i;
+                while (i < length && isIdeographic(lower.codePointAt(i))) {
+                    i += Character.charCount(lower.codePointAt(i));
+                }
+                int[] run = lower.substring(start, i).codePoints().toArray();
+                if (run.length == 1) {
+                    addTerm(terms, new QueryTerm(new String(run, 0, 1), true));
+                } else {
+                    for (int j = 0; j + 1 < run.length; j++) {
+                        addTerm(terms, new QueryTerm(new String(run, j, 2), false));
+                    }
+                }
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < length && !isIdeographic(lower.codePointAt(i)) && Character.isLetterOrDigit(lower.codePointAt(i))) {
+                    i += Character.charCount(lower.codePointAt(i));
+                }
+                addTerm(terms, new QueryTerm(lower.substring(start, i), true));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return terms;
+    }
+
+    private static List<FacetCount> topFacets(Map<String, Integer> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(Math.max(0, limit))
+                .map(entry -> new FacetCount(entry.getKey(), (long) entry.getValue()))
+                .toList();
+    }
+
+    private static void addTerm(List<QueryTerm> terms, QueryTerm term) {
+        if (!terms.contains(term)) {
+            terms.add(term);
+        }
+    }
+
+    private static boolean isIdeographic(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private Map<String, List<String>> loadTags(List<String> reportIds) {
+        Map<String, List<String>> tags = new HashMap<>();
+        if (reportIds.isEmpty()) {
+            return tags;
+        }
+        for (ReportTag tag : reportMapper.selectTagsByReportIds(reportIds)) {
+            tags.computeIfAbsent(tag.getReportId(), k -> new ArrayList<>()).add(tag.getTag());
+        }
+        return tags;
+    }
+
+    /**
+     * 排序规则与 ReportMapper.xml 中的 ORDER BY 一致：未知字段按发布日期，降序时空值在后；相同值按ID稳定排序
+     */
+    private static Comparator<Hit> comparator(String sortBy, String sortOrder) {
+        boolean ascending = "asc".equalsIgnoreCase(sortOrder);
+        Comparator<Hit> byId = Comparator.comparing(hit -> hit.report.id);
+        if (sortBy == null || SORT_RELEVANCE.equals(sortBy)) {
+            Comparator<Hit> byScore = Comparator.comparingDouble(hit -> hit.score);
+            return byScore.reversed()
+                    .thenComparing(hit -> hit.report.publishDate, Comparator.nullsLast(Comparator.<LocalDate>reverseOrder()))
+                    .thenComparing(byId);
+        }
+        Comparator<Hit> byField = switch (sortBy) {
+            case "updateDate" -> Comparator.comparing(hit -> hit.report.updateDate, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()));
+            case "title" -> Comparator.comparing(hit -> hit.report.title, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+            case "downloadCount" -> Comparator.comparing(hit -> hit.report.downloadCount, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()));
+            case "viewCount" -> Comparator.comparing(hit -> hit.report.viewCount, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()));
+            case "price" -> Comparator.comparing(hit -> hit.report.price, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()));
+            case "pages" -> Comparator.comparing(hit -> hit.report.pages, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()));
+            case "fileSize" -> Comparator.comparing(hit -> hit.report.fileSize, Comparator.nullsFirst(Comparator.<Long>naturalOrder()));
+            default -> Comparator.comparing(hit -> hit.report.publishDate, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()));
+        };
+        return (ascending ? byField : byField.reversed()).thenComparing(byId);
+    }
+
+    /**
+     * 检索结果：当页报告ID与命中总数
+     */
+    @Value
+    public static class SearchResult {
+        List<String> ids;
+        long total;
+    }
+
+    /**
+     * 查询词项，prefix 为 true 时匹配所有以该词开头的索引词项
+     */
+    @Value
+    static class QueryTerm {
+        String text;
+        boolean prefix;
+    }
+
+    private static class Hit {
+        private final IndexedReport report;
+        private final double score;
+
+        Hit(IndexedReport report, double score) {
+            this.report = report;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 索引数据：文档按序号存放，更新时旧序号置空、分配新序号，倒排表因此始终按序号递增追加
+     */
+    private static class IndexData {
+        private final List<IndexedReport> docs = new ArrayList<>();
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        // 有序存放以支持前缀查询
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+        private final Map<String, Integer> tagCounts = new HashMap<>();
+        private final Map<String, Integer> categoryCounts = new HashMap<>();
+        private final Map<String, Integer> sourceCounts = new HashMap<>();
+        private long totalLength = 0;
+        private int liveDocs = 0;
+        private int deletedDocs = 0;
+
+        void add(Report report, List<String> tags) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            int length = 0;
+            length += addField(frequencies, report.getTitle(), TITLE_WEIGHT);
+            if (tags != null) {
+                for (String tag : tags) {
+                    length += addField(frequencies, tag, TAG_WEIGHT);
+                }
+            }
+            length += addField(frequencies, report.getCategory(), CATEGORY_WEIGHT);
+            length += addField(frequencies, report.getSource(), SOURCE_WEIGHT);
+            length += addField(frequencies, report.getSummary(), SUMMARY_WEIGHT);
+
+            int ordinal = docs.size();
+            IndexedReport indexed = new IndexedReport(report, tags, Math.max(1, length));
+            docs.add(indexed);
+            updateFacets(indexed, 1);
+            ordinals.put(report.getId(), ordinal);
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), k -> new Postings()).add(ordinal, entry.getValue());
+            }
+            totalLength += Math.max(1, length);
+            liveDocs++;
+        }
+
+        void remove(String reportId) {
+            Integer ordinal = ordinals.remove(reportId);
+            if (ordinal == null) {
+                return;
+            }
+            IndexedReport indexed = docs.get(ordinal);
+            totalLength -= indexed.length;
+            updateFacets(indexed, -1);
+            docs.set(ordinal, null);
+            liveDocs--;
+            deletedDocs++;
+        }
+
+        List<Postings> lookup(QueryTerm term, int maxExpansion) {
+            if (!term.isPrefix()) {
+                Postings postings = terms.get(term.getText());
+                return postings == null ? List.of() : List.of(postings);
+            }
+            List<Postings> result = new ArrayList<>();
+            for (Postings postings : terms.subMap(term.getText(), true, term.getText() + Character.MAX_VALUE, false).values()) {
+                if (result.size() >= maxExpansion) {
+                    break;
+                }
+                result.add(postings);
+            }
+            return result;
+        }
+
+        private void updateFacets(IndexedReport report, int delta) {
+            adjust(categoryCounts, report.category, delta);
+            adjust(sourceCounts, report.source, delta);
+            for (String tag : report.tags) {
+                adjust(tagCounts, tag, delta);
+            }
+        }
+
+        private static void adjust(Map<String, Integer> counts, String key, int delta) {
+            if (key == null || key.isEmpty()) {
+                return;
+            }
+            // 计数归零时移除，避免已删除的取值残留
+            counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+
+        private static int addField(Map<String, Integer> frequencies, String text, int weight) {
+            List<String> tokens = tokenize(text);
+            for (String token : tokens) {
+                frequencies.merge(token, weight, Integer::sum);
+            }
+            return tokens.size() * weight;
+        }
+    }
+
+    /**
+     * 倒排表：文档序号（递增）与加权词频
+     */
+    private static class Postings {
+        private int[] docs = new int[2];
+        private int[] frequencies = new int[2];
+        private int size = 0;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+
+    /**
+     * 文档的过滤与排序字段
+     */
+    private static class IndexedReport {
+        private final String id;
+        private final String title;
+        private final String category;
+        private final String source;
+        private final LocalDate publishDate;
+        private final LocalDate updateDate;
+        // 计数由 addCounterDeltas 原地累加
+        private Integer downloadCount;
+        private Integer viewCount;
+        private final Integer price;
+        private final Integer pages;
+        private final Long fileSize;
+        private final List<String> tags;
+        private final int length;
+
+        IndexedReport(Report report, List<String> tags, int length) {
+            this.id = report.getId();
+            this.title = report.getTitle();
+            this.category = report.getCategory();
+            this.source = report.getSource();
+            this.publishDate = report.getPublishDate();
+            this.updateDate = report.getUpdateDate();
+            this.downloadCount = report.getDownloadCount();
+            this.viewCount = report.getViewCount();
+            this.price = report.getPrice();
+            this.pages = report.getPages();
+            this.fileSize = report.getFileSize();
+            this.tags = tags == null ? List.of() : tags.stream().distinct().toList();
+            this.length = length;
+        }
+
+        boolean matches(String category, String source, LocalDate startDate, LocalDate endDate,
+                        List<String> categories, List<String> sources) {
+            if (category != null && !category.isEmpty() && !category.equals(this.category)) {
+                return false;
+            }
+            if (source != null && !source.isEmpty() && !source.equals(this.source)) {
+                return false;
+            }
+            if (startDate != null && (publishDate == null || publishDate.isBefore(startDate))) {
+                return false;
+            }
+            if (endDate != null && (publishDate == null || publishDate.isAfter(endDate))) {
+                return false;
+            }
+            if (categories != null && !categories.isEmpty() && !categories.contains(this.category)) {
+                return false;
+            }
+            return sources == null || sources.isEmpty() || sources.contains(this.source);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.yuesf.aireader.service;
 
+import com.yuesf.aireader.dto.FacetCount;
 import com.yuesf.aireader.dto.ReportBatchDeleteRequest;
 import com.yuesf.aireader.dto.ReportCreateRequest;
 import com.yuesf.aireader.dto.ReportListRequest;
@@ -7,7 +8,9 @@ import com.yuesf.aireader.dto.ReportListResponse;
 import com.yuesf.aireader.dto.ReportUpdateRequest;
 import com.yuesf.aireader.entity.FileInfo;
 import com.yuesf.aireader.entity.Report;
+import com.yuesf.aireader.entity.ReportTag;
 import com.yuesf.aireader.mapper.ReportMapper;
+import com.yuesf.aireader.vo.MiniReportInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +19,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -45,15 +52,31 @@ public class ReportService {
     @Autowired
     private AliyunDocumentIntelligenceService documentIntelligenceService;
 
+    @Autowired
+    private ReportQueryCache reportQueryCache;
+
+    @Autowired
+    private ReportSearchIndex reportSearchIndex;
+
+    @Autowired
+    private ReportCounterService reportCounterService;
+
 
     public ReportListResponse getReportList(ReportListRequest request) {
         int page = (request.getPage() == null || request.getPage() < 1) ? 1 : request.getPage();
         int pageSize = (request.getPageSize() == null || request.getPageSize() < 1 || request.getPageSize() > 50) ? 10 : request.getPageSize();
         int offset = (page - 1) * pageSize;
 
-        String sortBy = (request.getSortBy() == null || request.getSortBy().isBlank()) ? "publishDate" : request.getSortBy();
+        String sortBy = resolveSortBy(request);
         String sortOrder = (request.getSortOrder() == null || request.getSortOrder().isBlank()) ? "desc" : request.getSortOrder();
 
+        // 游标只能用于生成它的查询（条件与排序一致）
+        String filter = Integer.toHexString(ReportQueryCache.listKey(request, 0, 0, sortBy, sortOrder).hashCode());
+        ReportListCursor cursor = ReportListCursor.decode(request.getCursor());
+        if (cursor != null && !filter.equals(cursor.getFilter())) {
+            throw new IllegalArgumentException("分页游标与查询条件不匹配");
+        }
+
         // 必须有条件：若无keyword，默认近30天
         String keyword = request.getKeyword();
         LocalDate defaultStart = null;
@@ -62,32 +85,235 @@ public class ReportService {
 //            defaultEnd = LocalDate.now();
 //            defaultStart = defaultEnd.minusDays(30);
 //        }
+        LocalDate startDate = request.getStartDate() != null ? LocalDate.parse(request.getStartDate()) : defaultStart;
+        LocalDate endDate = request.getEndDate() != null ? LocalDate.parse(request.getEndDate()) : defaultEnd;
+        List<String> categories = request.getFilters() != null ? request.getFilters().getCategory() : null;
+        List<String> sources = request.getFilters() != null ? request.getFilters().getSource() : null;
+
+        // 关键词查询优先走检索索引，索引在内存中分页，游标只需记录偏移量
+        if (keyword != null && !keyword.isEmpty() && reportSearchIndex.isReady()) {
+            int searchOffset = cursor != null && cursor.getOffset() != null ? cursor.getOffset() : offset;
+            ReportSearchIndex.SearchResult result = reportSearchIndex.search(keyword, request.getCategory(), request.getSource(),
+                    startDate, endDate, categories, sources, sortBy, sortOrder, searchOffset, pageSize);
+            if (result != null) {
+                ReportListResponse response = new ReportListResponse(result.getTotal(), page, pageSize,
+                        attachTags(selectByIdsInOrder(result.getIds())));
+                int nextOffset = searchOffset + result.getIds().size();
+                if (nextOffset < result.getTotal()) {
+                    ReportListCursor next = new ReportListCursor();
+                    next.setFilter(filter);
+                    next.setTotal(result.getTotal());
+                    next.setOffset(nextOffset);
+                    response.setNextCursor(next.encode());
+                }
+                response.setHasMore(response.getNextCursor() != null);
+                return response;
+            }
+        }
+        if (cursor != null && cursor.getId() == null) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
 
-        List<Report> list = reportMapper.selectReports(
-                keyword,
-                request.getCategory(),
-                request.getSource(),
-                request.getStartDate() != null ? LocalDate.parse(request.getStartDate()) : defaultStart,
-                request.getEndDate() != null ? LocalDate.parse(request.getEndDate()) : defaultEnd,
-                request.getFilters() != null ? request.getFilters().getCategory() : null,
-                request.getFilters() != null ? request.getFilters().getSource() : null,
-                sortBy,
-                sortOrder,
-                offset,
-                pageSize
-        );
-
-        long total = reportMapper.countReports(
-                keyword,
-                request.getCategory(),
-                request.getSource(),
-                request.getStartDate() != null ? LocalDate.parse(request.getStartDate()) : defaultStart,
-                request.getEndDate() != null ? LocalDate.parse(request.getEndDate()) : defaultEnd,
-                request.getFilters() != null ? request.getFilters().getCategory() : null,
-                request.getFilters() != null ? request.getFilters().getSource() : null
-        );
-
-        return new ReportListResponse(total, page, pageSize, list);
+        List<Report> list;
+        long total;
+        boolean hasMore;
+        if (cursor == null) {
+            // 首页（或按页码访问）：OFFSET 分页并统计总数
+            list = reportMapper.selectReports(keyword, request.getCategory(), request.getSource(),
+                    startDate, endDate, categories, sources, sortBy, sortOrder, offset, pageSize);
+            total = reportMapper.countReports(keyword, request.getCategory(), request.getSource(),
+                    startDate, endDate, categories, sources);
+            hasMore = offset + list.size() < total;
+        } else {
+            // 后续页：从上一页最后一行之后定位，多取一行判断是否还有下一页；总数沿用首页统计值
+            list = reportMapper.selectReportsAfter(keyword, request.getCategory(), request.getSource(),
+                    startDate, endDate, categories, sources, sortBy, sortOrder,
+                    cursor.typedValue(sortBy), cursor.getId(), pageSize + 1);
+            total = cursor.getTotal();
+            hasMore = list.size() > pageSize;
+            if (hasMore) {
+                list = new ArrayList<>(list.subList(0, pageSize));
+            }
+        }
+
+        ReportListResponse response = new ReportListResponse(total, page, pageSize, attachTags(list));
+        if (hasMore && !list.isEmpty()) {
+            Report last = list.get(list.size() - 1);
+            ReportListCursor next = new ReportListCursor();
+            next.setFilter(filter);
+            next.setTotal(total);
+            next.setId(last.getId());
+            next.setValue(ReportListCursor.sortValueOf(last, sortBy));
+            response.setNextCursor(next.encode());
+        }
+        response.setHasMore(response.getNextCursor() != null);
+        return response;
+    }
+
+    /**
+     * 解析排序字段：未指定时，关键词查询在检索索引可用时按相关度排序，否则按发布日期
+     */
+    private String resolveSortBy(ReportListRequest request) {
+        if (request.getSortBy() != null && !request.getSortBy().isBlank()) {
+            return request.getSortBy();
+        }
+        if (request.getKeyword() != null && !request.getKeyword().isEmpty() && reportSearchIndex.isReady()) {
+            return ReportSearchIndex.SORT_RELEVANCE;
+        }
+        return "publishDate";
+    }
+
+    /**
+     * 按ID批量查询报告，结果保持 ids 的顺序
+     */
+    private List<Report> selectByIdsInOrder(List<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Report> byId = new HashMap<>();
+        for (Report report : reportMapper.selectByIds(ids)) {
+            byId.put(report.getId(), report);
+        }
+        List<Report> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Report report = byId.get(id);
+            if (report != null) {
+                list.add(report);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 为一页报告批量加载标签：一条 IN 查询取回整页的标签，避免逐条查询
+     * @return 传入的列表
+     */
+    private List<Report> attachTags(List<Report> reports) {
+        if (reports == null || reports.isEmpty()) {
+            return reports;
+        }
+        Map<String, List<String>> tags = new HashMap<>();
+        for (ReportTag tag : reportMapper.selectTagsByReportIds(reports.stream().map(Report::getId).toList())) {
+            tags.computeIfAbsent(tag.getReportId(), k -> new ArrayList<>()).add(tag.getTag());
+        }
+        for (Report report : reports) {
+            report.setTags(tags.getOrDefault(report.getId(), new ArrayList<>()));
+        }
+        return reports;
+    }
+
+    private Report attachTags(Report report) {
+        if (report != null) {
+            attachTags(List.of(report));
+        }
+        return report;
+    }
+
+    /**
+     * 报告发生变更：失效查询缓存并更新检索索引
+     */
+    private void reportChanged(String reportId) {
+        reportQueryCache.evict(reportId);
+        reportSearchIndex.scheduleRefresh(reportId);
+    }
+
+    /**
+     * 获取报告列表（小程序，走缓存）
+     * 查询条件规范化后缓存当页ID与总数，行数据从报告缓存组装，缺失的行批量回库
+     */
+    public ReportListResponse getCachedReportList(ReportListRequest request) {
+        if (!reportQueryCache.isListEnabled()) {
+            return getReportList(request);
+        }
+        int page = (request.getPage() == null || request.getPage() < 1) ? 1 : request.getPage();
+        int pageSize = (request.getPageSize() == null || request.getPageSize() < 1 || request.getPageSize() > 50) ? 10 : request.getPageSize();
+        String sortBy = resolveSortBy(request);
+        String sortOrder = (request.getSortOrder() == null || request.getSortOrder().isBlank()) ? "desc" : request.getSortOrder();
+
+        String queryKey = ReportQueryCache.listKey(request, page, pageSize, sortBy, sortOrder)
+                + "|" + (request.getCursor() == null ? "" : request.getCursor());
+        ReportQueryCache.ReportIdPage idPage = reportQueryCache.getListPage(queryKey, key -> {
+            long version = reportQueryCache.reportsVersion();
+            ReportListResponse response = getReportList(request);
+            reportQueryCache.putReports(response.getList(), version);
+            List<String> ids = response.getList().stream().map(Report::getId).toList();
+            return new ReportQueryCache.ReportIdPage(ids, response.getTotal(), response.getNextCursor());
+        });
+        List<Report> rows = reportQueryCache.getReports(idPage.getIds(), ids -> attachTags(reportMapper.selectByIds(ids)));
+        ReportListResponse response = new ReportListResponse(idPage.getTotal(), page, pageSize, rows);
+        response.setNextCursor(idPage.getNextCursor());
+        response.setHasMore(idPage.getNextCursor() != null);
+        return response;
+    }
+
+    /**
+     * 获取报告（走缓存），返回的对象为共享实例，调用方不得修改
+     */
+    public Report getCachedReportById(String id) {
+        if (!reportQueryCache.isDetailEnabled()) {
+            return attachTags(reportMapper.selectById(id));
+        }
+        return reportQueryCache.getReport(id, key -> attachTags(reportMapper.selectById(key)));
+    }
+
+    /**
+     * 获取小程序报告详情
+     * @param id 报告ID
+     * @return 适合移动端显示的报告信息，报告不存在时返回 null
+     */
+    public MiniReportInfo getMiniReportInfo(String id) {
+        Report report = getCachedReportById(id);
+        if (report == null) {
+            return null;
+        }
+        MiniReportInfo miniReport = new MiniReportInfo();
+        miniReport.setId(report.getId());
+        miniReport.setTitle(report.getTitle());
+        miniReport.setSummary(report.getSummary());
+        miniReport.setSource(report.getSource());
+        miniReport.setCategory(report.getCategory());
+        miniReport.setPages(report.getPages());
+        miniReport.setPublishDate(report.getPublishDate());
+        miniReport.setThumbnail(report.getThumbnail());
+        miniReport.setTags(report.getTags());
+        miniReport.setIsFree(report.getIsFree());
+        miniReport.setPrice(report.getPrice());
+        // 加上尚未写回数据库的计数
+        miniReport.setDownloadCount((int) ((report.getDownloadCount() == null ? 0 : report.getDownloadCount())
+                + reportCounterService.pendingDownloads(id)));
+        miniReport.setViewCount((int) ((report.getViewCount() == null ? 0 : report.getViewCount())
+                + reportCounterService.pendingViews(id)));
+        miniReport.setReportFileId(report.getReportFileId());
+        return miniReport;
+    }
+
+    /**
+     * 报告缓存统计
+     */
+    public Map<String, Object> getCacheStats() {
+        return reportQueryCache.getStats();
+    }
+
+    /**
+     * 浏览/下载计数统计
+     */
+    public Map<String, Object> getCounterStats() {
+        return reportCounterService.getStats();
+    }
+
+    /**
+     * 检索索引统计
+     */
+    public Map<String, Object> getSearchIndexStats() {
+        return reportSearchIndex.getStats();
+    }
+
+    /**
+     * 重建检索索引
+     * @return 是否已开始重建（已有重建在进行时返回 false）
+     */
+    public boolean rebuildSearchIndex() {
+        return reportSearchIndex.rebuild();
     }
 
     public FileInfo getFileById(String id) {
@@ -95,7 +321,23 @@ public class ReportService {
     }
 
     public Report getReportById(String id) {
-        return reportMapper.selectById(id);
+        return attachTags(reportMapper.selectById(id));
+    }
+
+    /**
+     * 标签、分类、来源的分面计数
+     * 检索索引就绪时直接读取增量维护的计数，否则回退到数据库分组统计
+     * @param limit 每类最多返回的取值数
+     */
+    public Map<String, List<FacetCount>> getFacets(int limit) {
+        if (reportSearchIndex.isReady()) {
+            return reportSearchIndex.getFacets(limit);
+        }
+        Map<String, List<FacetCount>> facets = new LinkedHashMap<>();
+        facets.put("tags", reportMapper.countTagFacets(limit));
+        facets.put("categories", reportMapper.countCategoryFacets(limit));
+        facets.put("sources", reportMapper.countSourceFacets(limit));
+        return facets;
     }
 
 
@@ -146,8 +388,7 @@ public class ReportService {
                 String newThumbnailKey = "/v1/images/" + newFileInfo.getId();
                 report.setThumbnail(newThumbnailKey);
                 report.setPages(newFileInfo.getPageNums());
-                fileInfo.setPageNums(newFileInfo.getPageNums());
-                fileInfoService.updateFileInfo(fileInfo);
+                fileInfoService.updatePageNums(fileInfo.getId(), newFileInfo.getPageNums());
             }
         } catch (Exception e) {
             // 不中断创建流程，但记录错误
@@ -176,6 +417,7 @@ public class ReportService {
         if (request.getTags() != null && !request.getTags().isEmpty()) {
             reportMapper.insertReportTags(report.getId(), request.getTags());
         }
+        reportChanged(report.getId());
         return reportMapper.selectById(report.getId());
     }
 
@@ -235,8 +477,7 @@ public class ReportService {
                     String newThumbnailKey = "/v1/images/" + newFileInfo.getId();
                     existingReport.setThumbnail(newThumbnailKey);
                     existingReport.setPages(newFileInfo.getPageNums());
-                    fileInfo.setPageNums(newFileInfo.getPageNums());
-                    fileInfoService.updateFileInfo(fileInfo);
+                    fileInfoService.updatePageNums(fileInfo.getId(), newFileInfo.getPageNums());
                     log.info("重新生成封面成功，报告ID: {}, 封面: {}", existingReport.getId(), newThumbnailKey);
                 } catch (Exception e) {
                     log.error("重新生成缩略图失败: " + e.getMessage());
@@ -258,6 +499,7 @@ public class ReportService {
 
         // 更新报告
         reportMapper.updateReport(existingReport);
+        reportChanged(existingReport.getId());
 
         return reportMapper.selectById(existingReport.getId());
     }
@@ -271,6 +513,7 @@ public class ReportService {
         if (report != null) {
             report.setSummary(summary);
             reportMapper.updateReport(report);
+            reportChanged(reportId);
         }
     }
 
@@ -332,6 +575,7 @@ public class ReportService {
                 report.setSummary(summary);
                 report.setSummaryStatus("COMPLETED");
                 reportMapper.updateReport(report);
+                reportChanged(reportId);
                 log.info("报告摘要生成并更新成功，摘要长度: {}, 报告ID: {}", summary.length(), reportId);
             } else {
                 log.error("AI摘要生成失败，报告ID: {}", reportId);
@@ -353,6 +597,7 @@ public class ReportService {
         if (report != null) {
             report.setSummaryStatus(status);
             reportMapper.updateReport(report);
+            reportChanged(reportId);
             log.info("更新报告摘要状态: {}, 报告ID: {}", status, reportId);
         }
     }
@@ -415,6 +660,7 @@ public class ReportService {
                 reportProcessingService.deleteThumbnail(report.getThumbnail());
                 report.setThumbnail(null);
                 reportMapper.updateReport(report);
+                reportChanged(reportId);
             } catch (Exception e) {
                 log.error("删除报告缩略图失败: " + e.getMessage());
             }
@@ -435,6 +681,7 @@ public class ReportService {
                     String newThumbnailKey = "/v1/images/" + newFileInfo.getId();
                     report.setThumbnail(newThumbnailKey);
                     reportMapper.updateReport(report);
+                    reportChanged(reportId);
                     return newThumbnailKey;
                 }
             } catch (Exception e) {
@@ -507,6 +754,7 @@ public class ReportService {
         reportMapper.deleteTagsByReportId(id);
         // 再删除报告（主表）
         int deleted = reportMapper.deleteById(id);
+        reportChanged(id);
         
         if (deleted > 0) {
             log.info("报告删除成功，ID: {}", id);
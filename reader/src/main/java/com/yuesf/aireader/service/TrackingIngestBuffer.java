@@ -0,0 +1,378 @@
+package com.yuesf.aireader.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yuesf.aireader.config.TrackingConfig;
+import com.yuesf.aireader.dto.tracking.TrackingReportRequest;
+import com.yuesf.aireader.util.MpscRingBuffer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * 埋点异步写入缓冲
+ * 上报请求校验通过后放入无锁环形缓冲即返回，由单个写入线程按数量或等待时间阈值成批提交到数据库，
+ * 一批事件只需一次事务（会话维护 + 批量插入），替代每个事件一次事务、多次往返的同步写入。
+ * 数据库跟不上时缓冲被填满，按配置的溢出策略处理：丢弃、写入本地溢出文件（数据库恢复后补写）或由请求线程同步写入。
+ * 应用关闭时在 Web 服务器停止接收请求之后才停止写入线程，再把缓冲中剩余的事件写完；
+ * 停止后仍放入的少量事件由放入的线程直接写入。
+ */
+@Slf4j
+@Component
+public class TrackingIngestBuffer implements SmartLifecycle {
+
+    private static final String SPILL_SUFFIX = ".jsonl";
+
+    // Web 服务器优雅停机和停止分别在 DEFAULT_PHASE - 1024、DEFAULT_PHASE - 2048 阶段；阶段越小启动越早、停止越晚
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    @Autowired
+    private TrackingConfig trackingConfig;
+
+    // 与 TrackingService 互相引用，延迟注入
+    @Lazy
+    @Autowired
+    private TrackingService trackingService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MpscRingBuffer<TrackingReportRequest> buffer;
+
+    private volatile Thread writer;
+
+    private volatile boolean running = false;
+
+    private final Object spillLock = new Object();
+
+    // 写入线程退出后缓冲可能被多个线程消费，剩余事件的写入在此锁内进行
+    private final Object drainLock = new Object();
+
+    // 受 spillLock 保护
+    private BufferedWriter spillWriter;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        buffer = new MpscRingBuffer<>(trackingConfig.getIngest().getCapacity());
+    }
+
+    /**
+     * 是否启用异步写入
+     */
+    public boolean isEnabled() {
+        return trackingConfig.getIngest().isEnabled() && running;
+    }
+
+    /**
+     * 放入一个已校验的事件
+     * @return 事件是否被接收（写入缓冲、溢出文件或同步写入）；DROP 策略下缓冲已满时返回 false
+     */
+    public boolean offer(TrackingReportRequest event) {
+        if (buffer.offer(event)) {
+            accepted.increment();
+            if (!running && !isWriterAlive()) {
+                // 通过启用检查后写入线程已停止，不再有线程消费缓冲
+                drainRemaining();
+            } else if (buffer.size() >= trackingConfig.getIngest().getBatchSize()) {
+                LockSupport.unpark(writer);
+            }
+            return true;
+        }
+        switch (trackingConfig.getIngest().getOverflowPolicy()) {
+            case SPILL -> {
+                if (spill(List.of(event))) {
+                    accepted.increment();
+                    return true;
+                }
+                dropped.increment();
+                return false;
+            }
+            case CALLER_RUNS -> {
+                // 请求线程直接写库，上报变慢即是对客户端的反压
+                trackingService.writeEvents(List.of(event));
+                callerRuns.increment();
+                accepted.increment();
+                written.increment();
+                return true;
+            }
+            default -> {
+                dropped.increment();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 缓冲统计信息
+     */
+    public Map<String, Object> getStats() {
+        TrackingConfig.IngestConfig config = trackingConfig.getIngest();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("overflowPolicy", config.getOverflowPolicy());
+        stats.put("capacity", buffer.capacity());
+        stats.put("queued", buffer.size());
+        stats.put("accepted", accepted.sum());
+        stats.put("written", written.sum());
+        stats.put("batches", batches.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("spilled", spilled.sum());
+        stats.put("recovered", recovered.sum());
+        stats.put("callerRuns", callerRuns.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("spillFiles", listSpillFiles().size());
+        return stats;
+    }
+
+    @Override
+    public void start() {
+        if (!trackingConfig.getIngest().isEnabled()) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::runWriter, "tracking-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+        log.info("埋点异步写入已启动，缓冲容量: {}, 批量: {}, 溢出策略: {}", buffer.capacity(),
+                trackingConfig.getIngest().getBatchSize(), trackingConfig.getIngest().getOverflowPolicy());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 写入线程最后一次取出之后才放入的事件
+        if (!isWriterAlive()) {
+            drainRemaining();
+        }
+        closeSpillWriter();
+        log.info("埋点异步写入已停止，剩余未写入: {}", buffer.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * 写入线程：积累到一批或最早的事件等待超过 maxDelay 时提交；空闲时补写溢出文件
+     */
+    private void runWriter() {
+        TrackingConfig.IngestConfig config = trackingConfig.getIngest();
+        int batchSize = Math.max(1, config.getBatchSize());
+        long maxDelayNanos = config.getMaxDelay().toNanos();
+        List<TrackingReportRequest> pending = new ArrayList<>(batchSize);
+        long firstPendingAt = 0;
+        while (running) {
+            int drained = buffer.drainTo(pending, batchSize - pending.size());
+            if (drained > 0 && firstPendingAt == 0) {
+                firstPendingAt = System.nanoTime();
+            }
+            if (pending.size() >= batchSize
+                    || (!pending.isEmpty() && System.nanoTime() - firstPendingAt >= maxDelayNanos)) {
+                writeWithRetry(pending);
+                pending.clear();
+                firstPendingAt = 0;
+                continue;
+            }
+            if (pending.isEmpty() && buffer.size() == 0) {
+                recoverSpill();
+                LockSupport.parkNanos(maxDelayNanos);
+            } else if (drained == 0) {
+                LockSupport.parkNanos(Math.max(1, maxDelayNanos - (System.nanoTime() - firstPendingAt)));
+            }
+        }
+        // 关闭时写完已取出和剩余的事件
+        if (!pending.isEmpty()) {
+            writeWithRetry(pending);
+        }
+        drainRemaining();
+    }
+
+    /**
+     * 把缓冲中剩余的事件分批写完
+     */
+    private void drainRemaining() {
+        synchronized (drainLock) {
+            int batchSize = Math.max(1, trackingConfig.getIngest().getBatchSize());
+            List<TrackingReportRequest> remaining = new ArrayList<>();
+            buffer.drainTo(remaining, Integer.MAX_VALUE);
+            for (int i = 0; i < remaining.size(); i += batchSize) {
+                writeWithRetry(remaining.subList(i, Math.min(i + batchSize, remaining.size())));
+            }
+        }
+    }
+
+    private boolean isWriterAlive() {
+        Thread thread = writer;
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * 写入一批事件，失败时按间隔重试；仍失败则按溢出策略写入溢出文件或丢弃
+     */
+    private void writeWithRetry(List<TrackingReportRequest> batch) {
+        TrackingConfig.IngestConfig config = trackingConfig.getIngest();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                trackingService.writeEvents(batch);
+                written.add(batch.size());
+                batches.increment();
+                return;
+            } catch (Exception e) {
+                writeFailures.increment();
+                if (attempt >= config.getMaxRetries() || !running) {
+                    log.error("埋点批量写入失败，事件数: {}", batch.size(), e);
+                    break;
+                }
+                log.warn("埋点批量写入失败，{}ms 后重试: {}", config.getRetryBackoff().toMillis(), e.getMessage());
+                LockSupport.parkNanos(config.getRetryBackoff().toNanos());
+            }
+        }
+        if (config.getOverflowPolicy() == TrackingConfig.OverflowPolicy.SPILL && spill(batch)) {
+            return;
+        }
+        dropped.add(batch.size());
+    }
+
+    /**
+     * 追加写入溢出文件（每行一个事件的JSON）
+     * @return 是否写入成功
+     */
+    private boolean spill(List<TrackingReportRequest> events) {
+        synchronized (spillLock) {
+            try {
+                if (spillWriter == null) {
+                    Path dir = Paths.get(trackingConfig.getIngest().getSpillDir());
+                    Files.createDirectories(dir);
+                    Path file = dir.resolve("spill-" + System.currentTimeMillis() + "-" + System.nanoTime() + SPILL_SUFFIX);
+                    spillWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                for (TrackingReportRequest event : events) {
+                    spillWriter.write(objectMapper.writeValueAsString(event));
+                    spillWriter.newLine();
+                }
+                spillWriter.flush();
+                spilled.add(events.size());
+                return true;
+            } catch (IOException e) {
+                log.error("写入埋点溢出文件失败", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 缓冲空闲时把溢出文件中的事件补写到数据库，写完删除文件；写入失败时保留文件，下次空闲再试
+     */
+    private void recoverSpill() {
+        // 关闭当前溢出文件，之后的溢出写入新文件
+        closeSpillWriter();
+        int batchSize = Math.max(1, trackingConfig.getIngest().getBatchSize());
+        for (Path file : listSpillFiles()) {
+            if (!running || buffer.size() > 0) {
+                return;
+            }
+            try {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                int done = 0;
+                try {
+                    while (done < lines.size()) {
+                        List<TrackingReportRequest> batch = new ArrayList<>(batchSize);
+                        for (String line : lines.subList(done, Math.min(done + batchSize, lines.size()))) {
+                            if (!line.isBlank()) {
+                                batch.add(objectMapper.readValue(line, TrackingReportRequest.class));
+                            }
+                        }
+                        if (!batch.isEmpty()) {
+                            trackingService.writeEvents(batch);
+                        }
+                        done = Math.min(done + batchSize, lines.size());
+                        recovered.add(batch.size());
+                        written.add(batch.size());
+                    }
+                    Files.delete(file);
+                } catch (Exception e) {
+                    writeFailures.increment();
+                    // 已补写的部分从文件中去掉，避免重复写入
+                    Files.write(file, lines.subList(done, lines.size()), StandardCharsets.UTF_8);
+                    log.warn("补写埋点溢出文件失败，稍后重试: {}, {}", file, e.getMessage());
+                    return;
+                }
+            } catch (IOException e) {
+                log.error("读取埋点溢出文件失败: {}", file, e);
+                return;
+            }
+        }
+    }
+
+    private List<Path> listSpillFiles() {
+        Path dir = Paths.get(trackingConfig.getIngest().getSpillDir());
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SPILL_SUFFIX)).sorted().toList();
+        } catch (IOException e) {
+            log.warn("列出埋点溢出文件失败: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void closeSpillWriter() {
+        synchronized (spillLock) {
+            if (spillWriter != null) {
+                try {
+                    spillWriter.close();
+                } catch (IOException e) {
+                    log.warn("关闭埋点溢出文件失败: {}", e.getMessage());
+                }
+                spillWriter = null;
+            }
+        }
+    }
+}
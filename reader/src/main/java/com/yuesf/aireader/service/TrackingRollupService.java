@@ -0,0 +1,513 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.TrackingConfig;
+import com.yuesf.aireader.entity.tracking.RollupSegment;
+import com.yuesf.aireader.entity.tracking.TrackingEvent;
+import com.yuesf.aireader.entity.tracking.TrackingRollup;
+import com.yuesf.aireader.mapper.tracking.TrackingEventMapper;
+import com.yuesf.aireader.mapper.tracking.TrackingRollupMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 埋点事件汇总（rollup）
+ * 按分钟/小时/天三种粒度、事件类型 + 页面路径 + 元素ID 维度预先汇总事件数，统计接口读取汇总表，
+ * 查询耗时只与时间范围和维度数有关，与原始事件量无关。
+ * 写入事件提交后在内存中按分钟累加，定时合并为批量 upsert 同时累加到三种粒度；
+ * 压缩任务删除超过保留期的细粒度汇总，补建缺失日期的汇总，并核对前一天的汇总与原始事件数，不一致时重建。
+ * 查询时把时间范围拆成整天、整小时和剩余分钟三段分别读取对应粒度。
+ */
+@Slf4j
+@Service
+public class TrackingRollupService {
+
+    public static final String MINUTE = "minute";
+    public static final String HOUR = "hour";
+    public static final String DAY = "day";
+
+    // 每条 upsert 语句包含的汇总行数上限
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    // 压缩时单条 DELETE 删除的行数上限
+    private static final int DELETE_BATCH_SIZE = 10000;
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long HOUR_MS = 3_600_000L;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00:00");
+
+    @Autowired
+    private TrackingRollupMapper trackingRollupMapper;
+
+    @Autowired
+    private TrackingEventMapper trackingEventMapper;
+
+    @Autowired
+    private TrackingConfig trackingConfig;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // 分钟粒度的汇总增量，写回时同时累加到小时和天
+    private final ConcurrentHashMap<RollupKey, Long> pending = new ConcurrentHashMap<>();
+
+    // 写入失败的汇总行，下次写回时重试；仅在 flushLock 内访问
+    private final List<TrackingRollup> retryRows = new ArrayList<>();
+
+    private final Object flushLock = new Object();
+
+    private final LongAdder recordedEvents = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder rebuiltDays = new LongAdder();
+    private final LongAdder compactedRows = new LongAdder();
+
+    /**
+     * 是否启用汇总表
+     */
+    public boolean isEnabled() {
+        return trackingConfig.getRollup().isEnabled();
+    }
+
+    /**
+     * 累加一批已写入的事件；在事务中调用时等事务提交后再累加，回滚的事件不计入
+     * @param events 埋点事件
+     */
+    public void record(List<TrackingEvent> events) {
+        if (!isEnabled() || events.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accumulate(events);
+                }
+            });
+        } else {
+            accumulate(events);
+        }
+    }
+
+    /**
+     * 定时把内存中的增量写入汇总表
+     */
+    @Scheduled(fixedDelayString = "${app.tracking.rollup.flush-interval:PT10S}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<RollupKey, Long> minutes = new HashMap<>();
+            for (RollupKey key : pending.keySet()) {
+                Long count = pending.remove(key);
+                if (count != null) {
+                    minutes.merge(key, count, Long::sum);
+                }
+            }
+            if (minutes.isEmpty() && retryRows.isEmpty()) {
+                return;
+            }
+            List<TrackingRollup> rows = new ArrayList<>(retryRows);
+            retryRows.clear();
+            Map<RollupKey, Long> hours = new HashMap<>();
+            Map<RollupKey, Long> days = new HashMap<>();
+            for (Map.Entry<RollupKey, Long> entry : minutes.entrySet()) {
+                RollupKey key = entry.getKey();
+                rows.add(key.toRollup(MINUTE, entry.getValue()));
+                hours.merge(key.withBucket(floorHour(key.getBucket())), entry.getValue(), Long::sum);
+                days.merge(key.withBucket(floorDay(key.getBucket())), entry.getValue(), Long::sum);
+            }
+            hours.forEach((key, count) -> rows.add(key.toRollup(HOUR, count)));
+            days.forEach((key, count) -> rows.add(key.toRollup(DAY, count)));
+
+            for (int i = 0; i < rows.size(); i += FLUSH_BATCH_SIZE) {
+                List<TrackingRollup> batch = rows.subList(i, Math.min(i + FLUSH_BATCH_SIZE, rows.size()));
+                try {
+                    trackingRollupMapper.upsertCounts(batch);
+                    flushedRows.add(batch.size());
+                } catch (Exception e) {
+                    flushFailures.increment();
+                    log.error("埋点汇总写入失败，{} 行将在下次重试", batch.size(), e);
+                    retryRows.addAll(batch);
+                }
+            }
+            flushes.increment();
+        }
+    }
+
+    /**
+     * 应用关闭前写回剩余增量
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 按维度统计时间范围内的事件数
+     * 按小时分组时，早于小时汇总保留期的部分已被清理，改为从原始事件按小时统计
+     * @param groupBy 分组字段 (page_path, event_type, element_id, date, hour)
+     * @param startTime 开始时间戳（毫秒，含），可为空
+     * @param endTime 结束时间戳（毫秒，含），可为空
+     * @param limit 限制数量，可为空
+     * @return 统计结果，包含 dimension 和 count，按 count 倒序
+     */
+    public List<Map<String, Object>> getStatistics(String groupBy, Long startTime, Long endTime, Integer limit) {
+        boolean byHour = HOUR.equals(groupBy);
+        // 按小时分组时，已过小时汇总保留期的部分从原始事件按小时统计，时间桶起点 -> 事件数
+        Map<Long, Long> expiredHours = new HashMap<>();
+        if (byHour) {
+            long hourHorizon = floorDay(System.currentTimeMillis() - trackingConfig.getRollup().getHourRetention().toMillis());
+            if (startTime == null || startTime < hourHorizon) {
+                long rawStart = floorHour(startTime == null ? 0 : startTime);
+                long rawEnd = endTime == null ? hourHorizon : Math.min(hourHorizon, endTime + 1);
+                if (rawStart < rawEnd) {
+                    for (Map<String, Object> row : trackingEventMapper.countByBucket(rawStart, rawEnd, HOUR_MS)) {
+                        expiredHours.merge(((Number) row.get("bucket")).longValue(), ((Number) row.get("count")).longValue(), Long::sum);
+                    }
+                }
+                startTime = hourHorizon;
+            }
+        }
+        boolean rollupRange = endTime == null || startTime == null || startTime <= endTime;
+        List<RollupSegment> segments = rollupRange ? cover(startTime, endTime, byHour ? HOUR : DAY) : List.of();
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (segments.isEmpty() && expiredHours.isEmpty()) {
+            return result;
+        }
+        if ("page_path".equals(groupBy) || "event_type".equals(groupBy) || "element_id".equals(groupBy)) {
+            for (Map<String, Object> row : trackingRollupMapper.sumByDimension(segments, groupBy, null, limit)) {
+                Object dimension = row.get("dimension");
+                result.add(statRow("".equals(dimension) ? null : dimension, ((Number) row.get("count")).longValue()));
+            }
+            return result;
+        }
+        if (!"date".equals(groupBy) && !byHour) {
+            result.add(statRow("unknown", trackingRollupMapper.sumCounts(segments, null)));
+            return result;
+        }
+        // 时间桶换算为日期/小时后合并
+        DateTimeFormatter format = byHour ? HOUR_FORMAT : DATE_FORMAT;
+        Map<String, Long> merged = new HashMap<>();
+        expiredHours.forEach((bucket, count) -> merged.merge(format.format(Instant.ofEpochMilli(bucket).atZone(zone)), count, Long::sum));
+        if (!segments.isEmpty()) {
+            for (Map<String, Object> row : trackingRollupMapper.sumByDimension(segments, "bucket", null, null)) {
+                long bucket = ((Number) row.get("dimension")).longValue();
+                merged.merge(format.format(Instant.ofEpochMilli(bucket).atZone(zone)),
+                        ((Number) row.get("count")).longValue(), Long::sum);
+            }
+        }
+        merged.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit == null ? Long.MAX_VALUE : limit)
+                .forEach(e -> result.add(statRow(e.getKey(), e.getValue())));
+        return result;
+    }
+
+    /**
+     * 统计时间范围内的事件总数
+     * @param startTime 开始时间戳（毫秒，含），可为空
+     * @param endTime 结束时间戳（毫秒，含），可为空
+     * @param eventType 事件类型，可为空
+     * @return 事件数
+     */
+    public long countEvents(Long startTime, Long endTime, String eventType) {
+        List<RollupSegment> segments = cover(startTime, endTime, DAY);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Long count = trackingRollupMapper.sumCounts(segments, eventType);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 从原始事件重建日期范围内的汇总
+     * 重建期间新写入、尚未写回的该日期事件可能被重复计入，宜在写入低峰执行
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @param force 为 false 时只补建还没有汇总的日期，为 true 时重建范围内所有有事件的日期
+     * @return 重建的日期数
+     */
+    public int backfill(LocalDate startDate, LocalDate endDate, boolean force) {
+        Set<Long> existing = force ? Set.of()
+                : new HashSet<>(trackingRollupMapper.selectDayBuckets(dayStart(startDate), dayStart(endDate.plusDays(1))));
+        int rebuilt = 0;
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            long from = dayStart(day);
+            long to = dayStart(day.plusDays(1));
+            if (existing.contains(from) || !trackingEventMapper.hasEventsBetween(from, to)) {
+                continue;
+            }
+            rebuildDay(from, to);
+            rebuilt++;
+        }
+        return rebuilt;
+    }
+
+    /**
+     * 压缩任务：删除超过保留期的分钟/小时汇总，补建缺失日期的汇总，核对前一天的汇总
+     */
+    @Scheduled(cron = "${app.tracking.rollup.compaction-cron:0 10 * * * *}")
+    public void compact() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            TrackingConfig.RollupConfig config = trackingConfig.getRollup();
+            long now = System.currentTimeMillis();
+            // 与查询时的对齐方式一致：分钟汇总按整小时、小时汇总按整天删除
+            long deleted = deleteBefore(MINUTE, floorHour(now - config.getMinuteRetention().toMillis()))
+                    + deleteBefore(HOUR, floorDay(now - config.getHourRetention().toMillis()));
+
+            LocalDate today = LocalDate.now(zone);
+            int rebuilt = backfill(today.minusDays(config.getBackfillDays()), today.minusDays(1), false);
+            // 前一天可能只有部分汇总（如当天启用汇总、进程异常退出丢失了未写回的增量），与原始事件数不一致时重建
+            if (reconcile(today.minusDays(1))) {
+                rebuilt++;
+            }
+            if (deleted > 0 || rebuilt > 0) {
+                log.info("埋点汇总压缩完成，删除过期汇总 {} 行，重建 {} 天", deleted, rebuilt);
+            }
+        } catch (Exception e) {
+            log.error("埋点汇总压缩失败", e);
+        }
+    }
+
+    /**
+     * 汇总统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("pendingKeys", pending.size());
+        stats.put("recordedEvents", recordedEvents.sum());
+        stats.put("flushes", flushes.sum());
+        stats.put("flushedRows", flushedRows.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("rebuiltDays", rebuiltDays.sum());
+        stats.put("compactedRows", compactedRows.sum());
+        return stats;
+    }
+
+    private void accumulate(List<TrackingEvent> events) {
+        Map<RollupKey, Long> local = new HashMap<>();
+        for (TrackingEvent event : events) {
+            if (event.getTimestamp() == null || event.getEventType() == null) {
+                continue;
+            }
+            RollupKey key = new RollupKey(floorMinute(event.getTimestamp()), event.getEventType(),
+                    nullToEmpty(event.getPagePath()), nullToEmpty(event.getElementId()));
+            local.merge(key, 1L, Long::sum);
+        }
+        local.forEach((key, count) -> pending.merge(key, count, Long::sum));
+        recordedEvents.add(events.size());
+    }
+
+    private boolean reconcile(LocalDate day) {
+        long from = dayStart(day);
+        long to = dayStart(day.plusDays(1));
+        synchronized (flushLock) {
+            flush();
+            Map<String, Object> params = new HashMap<>();
+            params.put("startTime", from);
+            params.put("endTime", to - 1);
+            Long raw = trackingEventMapper.countEvents(params);
+            Long rolled = trackingRollupMapper.sumCounts(List.of(new RollupSegment(DAY, from, to)), null);
+            if (raw == null || raw.equals(rolled)) {
+                return false;
+            }
+            log.info("埋点汇总与原始事件数不一致，重建: {}, 原始 {}, 汇总 {}", day, raw, rolled);
+            rebuildDay(from, to);
+            return true;
+        }
+    }
+
+    /**
+     * 在一个事务内删除并从原始事件重建某天的汇总；已过保留期的细粒度汇总不再重建
+     */
+    private void rebuildDay(long from, long to) {
+        TrackingConfig.RollupConfig config = trackingConfig.getRollup();
+        long now = System.currentTimeMillis();
+        boolean withMinutes = to > now - config.getMinuteRetention().toMillis();
+        boolean withHours = to > now - config.getHourRetention().toMillis();
+        synchronized (flushLock) {
+            // 先写入内存中的增量，再由重建结果整体覆盖
+            flush();
+            transactionTemplate.executeWithoutResult(status -> {
+                trackingRollupMapper.deleteRange(from, to);
+                if (withMinutes) {
+                    trackingRollupMapper.rebuildFromEvents(MINUTE, from, to, MINUTE_MS);
+                }
+                if (withHours) {
+                    trackingRollupMapper.rebuildFromEvents(HOUR, from, to, HOUR_MS);
+                }
+                trackingRollupMapper.rebuildFromEvents(DAY, from, to, to - from);
+            });
+            rebuiltDays.increment();
+        }
+    }
+
+    private long deleteBefore(String granularity, long before) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = trackingRollupMapper.deleteBefore(granularity, before, DELETE_BATCH_SIZE);
+            total += deleted;
+        } while (deleted >= DELETE_BATCH_SIZE);
+        compactedRows.add(total);
+        return total;
+    }
+
+    /**
+     * 把时间范围拆成整天、整小时和剩余分钟的查询区间；细粒度汇总已过保留期的部分向外对齐到更粗的粒度
+     * @param coarsest 可使用的最粗粒度（按小时分组时不能使用天粒度）
+     */
+    private List<RollupSegment> cover(Long startTime, Long endTime, String coarsest) {
+        TrackingConfig.RollupConfig config = trackingConfig.getRollup();
+        long now = System.currentTimeMillis();
+        boolean useDays = DAY.equals(coarsest);
+        long start = floorMinute(startTime == null ? 0 : startTime);
+        // 结束时间含在内；事件时间允许略超过当前时间
+        long end = ceilMinute(endTime == null ? now + MINUTE_MS : endTime + 1);
+        long minuteHorizon = now - config.getMinuteRetention().toMillis();
+        long hourHorizon = now - config.getHourRetention().toMillis();
+        if (start < minuteHorizon) {
+            start = floorHour(start);
+        }
+        if (useDays && start < hourHorizon) {
+            start = floorDay(start);
+        }
+        if (end < minuteHorizon) {
+            end = ceilHour(end);
+        }
+        if (useDays && end < hourHorizon) {
+            end = ceilDay(end);
+        }
+
+        List<RollupSegment> segments = new ArrayList<>();
+        if (start >= end) {
+            return segments;
+        }
+        if (useDays) {
+            long dayFrom = ceilDay(start);
+            long dayTo = floorDay(end);
+            if (dayFrom < dayTo) {
+                segments.add(new RollupSegment(DAY, dayFrom, dayTo));
+                coverHours(start, dayFrom, segments);
+                coverHours(dayTo, end, segments);
+                return segments;
+            }
+        }
+        coverHours(start, end, segments);
+        return segments;
+    }
+
+    private void coverHours(long start, long end, List<RollupSegment> segments) {
+        if (start >= end) {
+            return;
+        }
+        long hourFrom = ceilHour(start);
+        long hourTo = floorHour(end);
+        if (hourFrom < hourTo) {
+            segments.add(new RollupSegment(HOUR, hourFrom, hourTo));
+            addMinutes(start, hourFrom, segments);
+            addMinutes(hourTo, end, segments);
+        } else {
+            addMinutes(start, end, segments);
+        }
+    }
+
+    private void addMinutes(long start, long end, List<RollupSegment> segments) {
+        if (start < end) {
+            segments.add(new RollupSegment(MINUTE, start, end));
+        }
+    }
+
+    private static Map<String, Object> statRow(Object dimension, long count) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("dimension", dimension);
+        row.put("count", count);
+        return row;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static long floorMinute(long time) {
+        return time - Math.floorMod(time, MINUTE_MS);
+    }
+
+    private static long ceilMinute(long time) {
+        long floor = floorMinute(time);
+        return floor == time ? time : floor + MINUTE_MS;
+    }
+
+    private long floorHour(long time) {
+        return Instant.ofEpochMilli(time).atZone(zone).truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli();
+    }
+
+    private long ceilHour(long time) {
+        ZonedDateTime floor = Instant.ofEpochMilli(time).atZone(zone).truncatedTo(ChronoUnit.HOURS);
+        long floorMillis = floor.toInstant().toEpochMilli();
+        return floorMillis == time ? time : floor.plusHours(1).toInstant().toEpochMilli();
+    }
+
+    private long floorDay(long time) {
+        return dayStart(Instant.ofEpochMilli(time).atZone(zone).toLocalDate());
+    }
+
+    private long ceilDay(long time) {
+        LocalDate day = Instant.ofEpochMilli(time).atZone(zone).toLocalDate();
+        long floor = dayStart(day);
+        return floor == time ? time : dayStart(day.plusDays(1));
+    }
+
+    private long dayStart(LocalDate day) {
+        return day.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 汇总键：时间桶起点 + 事件类型 + 页面路径 + 元素ID
+     */
+    @Value
+    private static class RollupKey {
+        long bucket;
+        String eventType;
+        String pagePath;
+        String elementId;
+
+        RollupKey withBucket(long newBucket) {
+            return new RollupKey(newBucket, eventType, pagePath, elementId);
+        }
+
+        TrackingRollup toRollup(String granularity, long count) {
+            return new TrackingRollup(granularity, bucket, eventType, pagePath, elementId, count);
+        }
+    }
+}
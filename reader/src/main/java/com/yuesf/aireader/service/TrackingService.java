@@ -2,6 +2,7 @@ package com.yuesf.aireader.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yuesf.aireader.config.TrackingConfig;
 import com.yuesf.aireader.dto.tracking.TrackingBatchReportRequest;
 import com.yuesf.aireader.dto.tracking.TrackingReportRequest;
 import com.yuesf.aireader.entity.tracking.TrackingEvent;
@@ -11,12 +12,16 @@ import com.yuesf.aireader.mapper.tracking.TrackingEventMapper;
 import com.yuesf.aireader.mapper.tracking.UserSessionMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -39,34 +44,49 @@ public class TrackingService {
     @Autowired
     private UserSessionMapper userSessionMapper;
 
+    @Autowired
+    private TrackingIngestBuffer trackingIngestBuffer;
+
+    @Autowired
+    private TrackingConfig trackingConfig;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private TrackingRollupService trackingRollupService;
+
+    @Autowired
+    private RealtimeMetricsEngine realtimeMetricsEngine;
+
+    // 经代理调用 writeEvents，使同步写入仍在事务内执行
+    @Lazy
+    @Autowired
+    private TrackingService self;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * 上报单个埋点事件
      * 
-     * 接收并处理单个埋点事件的上报，包括参数验证、数据存储和会话更新
+     * 参数校验在请求线程完成，校验通过后放入异步写入缓冲即返回，由写入线程成批写库；
+     * 异步写入未启用时同步写库
      *
      * @param request 埋点上报请求，包含用户ID、事件类型、页面路径等信息
-     * @return boolean 上报是否成功，true表示成功，false表示失败
+     * @return boolean 上报是否成功，true表示成功，false表示失败（写入缓冲已满且溢出策略为丢弃）
      * @throws BusinessException 当参数验证失败或业务处理异常时抛出
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public boolean reportEvent(TrackingReportRequest request) {
         try {
             // 验证请求参数
             validateTrackingRequest(request);
 
-            // 创建或更新用户会话
-            createOrUpdateSession(request.getSessionId(), request.getUserId(), 
-                                convertToJson(request.getDeviceInfo()), request.getNetworkType());
-
-            // 转换为实体对象
-            TrackingEvent event = convertToTrackingEvent(request);
-
-            // 插入埋点事件
-            int result = trackingEventMapper.insert(event);
+            if (trackingIngestBuffer.isEnabled()) {
+                return trackingIngestBuffer.offer(request);
+            }
 
-            // 更新会话统计
-            updateSessionStats(request.getSessionId());
+            int result = self.writeEvents(List.of(request));
 
             log.info("埋点事件上报成功: userId={}, eventType={}, pagePath={}", 
                     request.getUserId(), request.getEventType(), request.getPagePath());
@@ -81,12 +101,14 @@ public class TrackingService {
     /**
      * 批量上报埋点事件
      * 
-     * 接收并处理批量埋点事件的上报，提高上报效率，减少网络请求次数
+     * 接收并处理批量埋点事件的上报，提高上报效率，减少网络请求次数；
+     * 校验通过后放入异步写入缓冲即返回，异步写入未启用时同步写库
      *
      * @param request 批量埋点上报请求，包含事件列表和批次ID
-     * @return int 成功上报的事件数量
+     * @return int 成功接收的事件数量
      * @throws BusinessException 当参数验证失败或业务处理异常时抛出
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public int batchReportEvents(TrackingBatchReportRequest request) {
         try {
             if (request.getEvents() == null || request.getEvents().isEmpty()) {
@@ -98,43 +120,16 @@ public class TrackingService {
                 validateTrackingRequest(eventRequest);
             }
 
-            // 先创建或更新会话（确保外键约束满足）
-            Map<String, String> sessionUserMap = request.getEvents().stream()
-                    .collect(Collectors.toMap(
-                            TrackingReportRequest::getSessionId,
-                            TrackingReportRequest::getUserId,
-                            (existing, replacement) -> existing
-                    ));
-
-            for (Map.Entry<String, String> entry : sessionUserMap.entrySet()) {
-                String sessionId = entry.getKey();
-                String userId = entry.getValue();
-                
-                // 获取该会话的设备信息和网络类型
-                TrackingReportRequest firstEvent = request.getEvents().stream()
-                        .filter(e -> e.getSessionId().equals(sessionId))
-                        .findFirst()
-                        .orElse(null);
-                
-                if (firstEvent != null) {
-                    // 先创建或更新会话，确保session_id存在
-                    createOrUpdateSession(sessionId, userId, 
-                                        convertToJson(firstEvent.getDeviceInfo()), 
-                                        firstEvent.getNetworkType());
+            int result;
+            if (trackingIngestBuffer.isEnabled()) {
+                result = 0;
+                for (TrackingReportRequest eventRequest : request.getEvents()) {
+                    if (trackingIngestBuffer.offer(eventRequest)) {
+                        result++;
+                    }
                 }
-            }
-
-            // 转换为实体对象列表
-            List<TrackingEvent> events = request.getEvents().stream()
-                    .map(this::convertToTrackingEvent)
-                    .collect(Collectors.toList());
-
-            // 批量插入埋点事件（此时session_id已存在）
-            int result = trackingEventMapper.batchInsert(events);
-
-            // 更新会话统计
-            for (String sessionId : sessionUserMap.keySet()) {
-                updateSessionStats(sessionId);
+            } else {
+                result = self.writeEvents(request.getEvents());
             }
 
             log.info("批量埋点事件上报成功: batchId={}, eventCount={}", 
@@ -147,6 +142,73 @@ public class TrackingService {
         }
     }
 
+    /**
+     * 写入一批已校验的埋点事件
+     * 
+     * 在一个事务内先创建或更新涉及的会话（满足外键约束），再批量插入事件并更新会话统计；
+     * 由异步写入线程调用，也用于同步上报
+     *
+     * @param requests 已校验的埋点事件
+     * @return int 插入的事件数量
+     */
+    public int writeEvents(List<TrackingReportRequest> requests) {
+        if (requests.isEmpty()) {
+            return 0;
+        }
+
+        // 每个会话取第一个事件的用户、设备信息和网络类型
+        Map<String, TrackingReportRequest> firstEventBySession = new LinkedHashMap<>();
+        for (TrackingReportRequest request : requests) {
+            firstEventBySession.putIfAbsent(request.getSessionId(), request);
+        }
+
+        for (TrackingReportRequest firstEvent : firstEventBySession.values()) {
+            String deviceInfo = convertToJson(firstEvent.getDeviceInfo());
+            // 已登记的活跃会话不访问数据库；未登记的会话先 upsert 会话行（确保session_id存在）再登记
+            if (!activeSessionRegistry.touch(firstEvent.getSessionId(), deviceInfo, firstEvent.getNetworkType())) {
+                int affected = userSessionMapper.upsert(UserSession.builder()
+                        .sessionId(firstEvent.getSessionId())
+                        .userId(firstEvent.getUserId())
+                        .startTime(System.currentTimeMillis())
+                        .deviceInfo(deviceInfo)
+                        .networkType(firstEvent.getNetworkType())
+                        .build());
+                // 影响行数为 1 即新插入的会话，统计从零开始，无需再汇总已有事件；
+                // 已存在的会话 upsert 时 updated_at 随之变化，返回 2，仅在同一秒内重复 upsert 且元信息不变时才可能同样返回 1
+                activeSessionRegistry.register(firstEvent.getSessionId(), deviceInfo, firstEvent.getNetworkType(), affected != 1);
+            }
+        }
+
+        // 转换为实体对象列表
+        List<TrackingEvent> events = requests.stream()
+                .map(this::convertToTrackingEvent)
+                .collect(Collectors.toList());
+
+        // 批量插入埋点事件（此时session_id已存在）
+        int result = trackingEventMapper.batchInsert(events);
+
+        // 增量更新会话统计和事件汇总（提交后生效，定时写回数据库）
+        activeSessionRegistry.record(events);
+        trackingRollupService.record(events);
+        realtimeMetricsEngine.record(events);
+
+        return result;
+    }
+
+    /**
+     * 获取埋点异步写入统计
+     *
+     * @return Map<String, Object> 缓冲容量、排队数、已写入、丢弃、溢出及活跃会话登记表、事件汇总、实时指标等统计
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> getIngestStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(trackingIngestBuffer.getStats());
+        stats.put("sessions", activeSessionRegistry.getStats());
+        stats.put("rollups", trackingRollupService.getStats());
+        stats.put("realtime", realtimeMetricsEngine.getStats());
+        return stats;
+    }
+
     /**
      * 获取用户行为轨迹
      * 
@@ -232,6 +294,9 @@ public class TrackingService {
                 groupBy = "date";
             }
 
+            if (trackingRollupService.isEnabled()) {
+                return trackingRollupService.getStatistics(groupBy, startTime, endTime, null);
+            }
             return trackingEventMapper.statisticsByDimension(groupBy, startTime, endTime);
         } catch (Exception e) {
             log.error("获取统计数据失败: {}", e.getMessage(), e);
@@ -255,6 +320,11 @@ public class TrackingService {
                 timeThreshold = System.currentTimeMillis() - 30 * 60 * 1000;
             }
 
+            // 内存实时指标覆盖该时间范围时直接返回（按事件去重的用户数，近似值）
+            if (realtimeMetricsEngine.covers(timeThreshold)) {
+                return realtimeMetricsEngine.activeUsers(timeThreshold);
+            }
+
             return userSessionMapper.countActiveSessions(timeThreshold);
         } catch (Exception e) {
             log.error("获取活跃用户数量失败: {}", e.getMessage(), e);
@@ -284,6 +354,7 @@ public class TrackingService {
                 existingSession.setNetworkType(networkType);
                 existingSession.setDeviceInfo(deviceInfo);
                 existingSession.setUpdatedAt(LocalDateTime.now());
+                activeSessionRegistry.fillStats(existingSession);
                 
                 userSessionMapper.update(existingSession);
                 return existingSession;
@@ -303,6 +374,7 @@ public class TrackingService {
                         .build();
 
                 userSessionMapper.insert(newSession);
+                activeSessionRegistry.register(sessionId, deviceInfo, networkType, false);
                 return newSession;
             }
         } catch (Exception e) {
@@ -328,8 +400,10 @@ public class TrackingService {
                 session.setEndTime(endTime);
                 session.setDuration((int) ((endTime - session.getStartTime()) / 1000));
                 session.setUpdatedAt(LocalDateTime.now());
+                activeSessionRegistry.fillStats(session);
                 
                 int result = userSessionMapper.update(session);
+                activeSessionRegistry.remove(sessionId);
                 return result > 0;
             }
             return false;
@@ -357,6 +431,10 @@ public class TrackingService {
 
             // 清理过期的用户会话
             int deletedSessions = userSessionMapper.deleteExpiredSessions(expireTime);
+            if (deletedSessions > 0) {
+                // 已删除的会话可能仍登记在内存中，清空后按未登记会话重新 upsert
+                activeSessionRegistry.invalidateAll();
+            }
 
             Map<String, Integer> result = new HashMap<>();
             result.put("deletedEvents", deletedEvents);
@@ -371,6 +449,64 @@ public class TrackingService {
         }
     }
 
+    /**
+     * 从原始事件重建事件汇总
+     * 
+     * 用于启用汇总表前的历史数据或修正汇总，默认只补建还没有汇总的日期
+     *
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @param force 是否重建已有汇总的日期
+     * @return Map<String, Object> 重建的日期数
+     * @throws BusinessException 当汇总未启用、日期无效或重建失败时抛出
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> backfillRollups(LocalDate startDate, LocalDate endDate, boolean force) {
+        if (!trackingRollupService.isEnabled()) {
+            throw new BusinessException("事件汇总未启用");
+        }
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            throw new BusinessException("日期范围无效");
+        }
+        try {
+            int rebuilt = trackingRollupService.backfill(startDate, endDate, force);
+            log.info("事件汇总重建完成: startDate={}, endDate={}, force={}, rebuiltDays={}", startDate, endDate, force, rebuilt);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("rebuiltDays", rebuilt);
+            return result;
+        } catch (Exception e) {
+            log.error("事件汇总重建失败: {}", e.getMessage(), e);
+            throw new BusinessException("事件汇总重建失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取实时概况
+     * 
+     * 最近若干分钟的事件数、活跃用户数、热门页面和事件类型及每分钟事件数，全部从内存读取
+     *
+     * @param minutes 时间窗口（分钟）
+     * @param limit 热门项数量
+     * @return Map<String, Object> 实时概况
+     * @throws BusinessException 当实时指标未启用或参数无效时抛出
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, Object> getRealtimeMetrics(Integer minutes, Integer limit) {
+        if (!realtimeMetricsEngine.isEnabled()) {
+            throw new BusinessException("实时指标未启用");
+        }
+        // 未对齐整分钟的窗口会跨 分钟数+1 个分钟桶，最早的桶已被复用，窗口最多为桶数减一
+        int maxMinutes = Math.max(1, trackingConfig.getRealtime().getMinuteBuckets() - 1);
+        if (minutes == null || minutes <= 0 || minutes > maxMinutes) {
+            throw new BusinessException("时间窗口需在1~" + maxMinutes + "分钟之间");
+        }
+        if (limit == null || limit <= 0) {
+            limit = 10;
+        }
+        return realtimeMetricsEngine.getRealtime(minutes, Math.min(limit, 100));
+    }
+
     /**
      * 获取实时监控数据
      * 
@@ -387,15 +523,29 @@ public class TrackingService {
             long todayStart = getTodayStartTimestamp();
             long todayEnd = System.currentTimeMillis();
 
+            Long activeUsers = getActiveUserCount(todayStart);
+            dashboard.put("activeUsers", activeUsers);
+
+            if (trackingRollupService.isEnabled()) {
+                // 从汇总表读取，耗时与原始事件量无关
+                dashboard.put("todayEvents", trackingRollupService.countEvents(todayStart, todayEnd, null));
+                if (realtimeMetricsEngine.covers(todayStart)) {
+                    // 热门项直接从内存实时指标读取
+                    dashboard.put("topPages", realtimeMetricsEngine.topPages(todayStart, 10));
+                    dashboard.put("topEvents", realtimeMetricsEngine.topEventTypes(todayStart, 10));
+                } else {
+                    dashboard.put("topPages", trackingRollupService.getStatistics("page_path", todayStart, todayEnd, 10));
+                    dashboard.put("topEvents", trackingRollupService.getStatistics("event_type", todayStart, todayEnd, 10));
+                }
+                return dashboard;
+            }
+
             Map<String, Object> todayParams = new HashMap<>();
             todayParams.put("startTime", todayStart);
             todayParams.put("endTime", todayEnd);
 
             Long todayEvents = trackingEventMapper.countEvents(todayParams);
-            Long activeUsers = getActiveUserCount(todayStart);
-
             dashboard.put("todayEvents", todayEvents);
-            dashboard.put("activeUsers", activeUsers);
 
             // 获取热门页面
             List<Map<String, Object>> topPages = trackingEventMapper.statisticsByDimension("page_path", todayStart, todayEnd);
@@ -503,47 +653,6 @@ public class TrackingService {
         }
     }
 
-    /**
-     * 更新会话统计信息
-     * 
-     * 统计并更新用户会话的事件数量和页面访问数量
-     * 
-     * @param sessionId 会话ID
-     */
-    private void updateSessionStats(String sessionId) {
-        try {
-            UserSession session = userSessionMapper.selectBySessionId(sessionId);
-            if (session == null) {
-                log.warn("会话不存在，无法更新统计信息: sessionId={}", sessionId);
-                return;
-            }
-
-            // 统计该会话的事件数量
-            List<TrackingEvent> sessionEvents = trackingEventMapper.selectBySessionId(sessionId);
-            
-            // 统计页面访问数量（去重）
-            long pageCount = sessionEvents.stream()
-                    .filter(event -> "page_view".equals(event.getEventType()))
-                    .map(TrackingEvent::getPagePath)
-                    .distinct()
-                    .count();
-
-            session.setEventCount(sessionEvents.size());
-            session.setPageCount((int) pageCount);
-            session.setUpdatedAt(LocalDateTime.now());
-
-            int updateResult = userSessionMapper.update(session);
-            if (updateResult > 0) {
-                log.debug("会话统计更新成功: sessionId={}, eventCount={}, pageCount={}", 
-                        sessionId, sessionEvents.size(), pageCount);
-            } else {
-                log.warn("会话统计更新失败: sessionId={}", sessionId);
-            }
-        } catch (Exception e) {
-            log.error("更新会话统计异常: sessionId={}, error={}", sessionId, e.getMessage(), e);
-        }
-    }
-
     /**
      * 获取今日开始时间戳
      * 
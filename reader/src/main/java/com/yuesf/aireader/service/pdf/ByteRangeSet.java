@@ -0,0 +1,88 @@
+package com.yuesf.aireader.service.pdf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 已下载字节区间集合
+ * 区间为左闭右开 [start, end)，写入时自动合并相邻和重叠区间
+ */
+class ByteRangeSet {
+
+    // 区间起点 -> 区间终点（不含）
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+    private long coveredBytes = 0;
+
+    /**
+     * 标记 [start, end) 已存在
+     */
+    synchronized void add(long start, long end) {
+        if (start >= end) {
+            return;
+        }
+        long newStart = start;
+        long newEnd = end;
+
+        Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            newStart = floor.getKey();
+            newEnd = Math.max(newEnd, floor.getValue());
+        }
+        // 吸收所有与新区间重叠或相邻的区间
+        Map.Entry<Long, Long> next = ranges.ceilingEntry(newStart);
+        while (next != null && next.getKey() <= newEnd) {
+            newEnd = Math.max(newEnd, next.getValue());
+            coveredBytes -= next.getValue() - next.getKey();
+            ranges.remove(next.getKey());
+            next = ranges.ceilingEntry(newStart);
+        }
+        ranges.put(newStart, newEnd);
+        coveredBytes += newEnd - newStart;
+    }
+
+    /**
+     * [start, end) 是否已全部存在
+     */
+    synchronized boolean contains(long start, long end) {
+        if (start >= end) {
+            return true;
+        }
+        Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        return floor != null && floor.getValue() >= end;
+    }
+
+    /**
+     * [start, end) 中尚未存在的区间
+     */
+    synchronized List<long[]> gaps(long start, long end) {
+        List<long[]> result = new ArrayList<>();
+        long cursor = start;
+        Map.Entry<Long, Long> floor = ranges.floorEntry(start);
+        if (floor != null && floor.getValue() > cursor) {
+            cursor = floor.getValue();
+        }
+        for (Map.Entry<Long, Long> e : ranges.subMap(start, false, end, false).entrySet()) {
+            if (e.getKey() > cursor) {
+                result.add(new long[]{cursor, e.getKey()});
+            }
+            cursor = Math.max(cursor, e.getValue());
+            if (cursor >= end) {
+                break;
+            }
+        }
+        if (cursor < end) {
+            result.add(new long[]{cursor, end});
+        }
+        return result;
+    }
+
+    /**
+     * 已存在的总字节数
+     */
+    synchronized long coveredBytes() {
+        return coveredBytes;
+    }
+}
@@ -0,0 +1,221 @@
+package com.yuesf.aireader.service.pdf;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 基于OSS对象本地镜像的PDFBox随机读取源
+ * 通过文件通道按位置读取到一个小的读取窗口，读取某个位置前只确保该位置所在的块已从OSS拉取，
+ * 渲染单页时只会拉取该页对象实际所在的字节区间（以及交叉引用表、页树等必要结构），首屏耗时与文件总大小无关。
+ * 不做内存映射：映射在GC前无法释放，会长期占用地址空间，并使已淘汰的镜像文件迟迟不能真正删除。
+ * 非线程安全，每个 PDDocument 句柄使用独立实例。
+ */
+class MirroredRandomAccessRead implements RandomAccessRead {
+
+    // 读取窗口大小，小段读取从窗口中取，更大的读取直接从文件通道读入调用方数组
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private final OssObjectMirror.Lease lease;
+    private final long length;
+    private final long blockSize;
+    private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+    // 窗口内容对应的文件区间起点，窗口覆盖 [windowStart, windowStart + window.limit())
+    private long windowStart = 0;
+
+    private long position = 0;
+    // 最近一次确认已存在于本地的区间 [readyStart, readyEnd)，区间内的读取无需再检查镜像
+    private long readyStart = 0;
+    private long readyEnd = 0;
+    private boolean closed = false;
+
+    MirroredRandomAccessRead(OssObjectMirror.Lease lease, long blockSize) {
+        this.lease = lease;
+        this.length = lease.length();
+        this.blockSize = Math.max(1, blockSize);
+        this.window.limit(0);
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        if (position >= length) {
+            return -1;
+        }
+        if (!inWindow(position)) {
+            fillWindow(position);
+        }
+        int value = window.get((int) (position - windowStart)) & 0xff;
+        position++;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int len) throws IOException {
+        checkClosed();
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+        int total = (int) Math.min(len, length - position);
+        int copied = 0;
+        while (copied < total) {
+            int remaining = total - copied;
+            if (inWindow(position)) {
+                int index = (int) (position - windowStart);
+                int count = Math.min(remaining, window.limit() - index);
+                window.get(index, b, offset + copied, count);
+                copied += count;
+                position += count;
+            } else if (remaining >= WINDOW_SIZE) {
+                readDirect(position, b, offset + copied, remaining);
+                copied += remaining;
+                position += remaining;
+            } else {
+                fillWindow(position);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long newPosition) throws IOException {
+        checkClosed();
+        if (newPosition < 0) {
+            throw new IOException("无效的读取位置: " + newPosition);
+        }
+        position = Math.min(newPosition, length);
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int value = read();
+        if (value != -1) {
+            rewind(1);
+        }
+        return value;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        checkClosed();
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int len) throws IOException {
+        byte[] bytes = new byte[len];
+        int read = 0;
+        while (read < len) {
+            int count = read(bytes, read, len - read);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            read += count;
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        checkClosed();
+        return position >= length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int) Math.min(length - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            window.limit(0);
+            lease.close();
+        }
+    }
+
+    /**
+     * 确保 [start, end) 已在本地镜像中，缺失时按块拉取并记录已就绪区间
+     */
+    private void ensureReady(long start, long end) throws IOException {
+        if (start >= readyStart && end <= readyEnd) {
+            return;
+        }
+        long[] ready = lease.ensure(start, end, blockSize);
+        readyStart = ready[0];
+        readyEnd = ready[1];
+    }
+
+    private boolean inWindow(long offset) {
+        return offset >= windowStart && offset < windowStart + window.limit();
+    }
+
+    /**
+     * 从 offset 起把已就绪的字节读入窗口
+     */
+    private void fillWindow(long offset) throws IOException {
+        ensureReady(offset, offset + 1);
+        int count = (int) Math.min(WINDOW_SIZE, readyEnd - offset);
+        window.clear();
+        window.limit(count);
+        readChannel(offset, window);
+        window.flip();
+        windowStart = offset;
+    }
+
+    /**
+     * 绕过窗口，把 [offset, offset + count) 直接读入调用方数组
+     */
+    private void readDirect(long offset, byte[] b, int arrayOffset, int count) throws IOException {
+        ensureReady(offset, offset + count);
+        readChannel(offset, ByteBuffer.wrap(b, arrayOffset, count));
+    }
+
+    private void readChannel(long offset, ByteBuffer target) throws IOException {
+        FileChannel channel = lease.channel();
+        long cursor = offset;
+        while (target.hasRemaining()) {
+            int read = channel.read(target, cursor);
+            if (read < 0) {
+                throw new EOFException("镜像文件读取中断，位置: " + cursor);
+            }
+            cursor += read;
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("PDF读取源已关闭");
+        }
+    }
+}
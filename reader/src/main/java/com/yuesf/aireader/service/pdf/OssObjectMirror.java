@@ -0,0 +1,471 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.model.GetObjectRequest;
+import com.aliyun.oss.model.OSSObject;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.yuesf.aireader.config.OssConfig.OssProperties;
+import com.yuesf.aireader.config.PdfConfig;
+import com.yuesf.aireader.util.StreamTransferUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * OSS对象本地镜像
+ * 为每个OSS对象维护一个本地稀疏文件，按需拉取缺失的字节区间并记录已存在的区间；
+ * 之后命中的区间直接从本地文件写入响应，不再访问OSS。
+ * 按磁盘配额以LRU方式淘汰冷对象。
+ */
+@Slf4j
+@Component
+public class OssObjectMirror {
+
+    @Autowired
+    private OSS ossClient;
+
+    @Autowired
+    private OssProperties ossProperties;
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    private Path mirrorDir;
+
+    // OSS对象键 -> 镜像条目
+    private final Map<String, MirrorEntry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder ossFetches = new LongAdder();
+    private final LongAdder fetchedBytes = new LongAdder();
+    private final LongAdder servedBytes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void init() throws IOException {
+        mirrorDir = Paths.get(pdfConfig.getMirror().getDir());
+        // 已存在区间只记录在内存中，重启后无法复用旧文件
+        if (Files.exists(mirrorDir)) {
+            FileUtils.deleteDirectory(mirrorDir.toFile());
+        }
+        Files.createDirectories(mirrorDir);
+        log.info("OSS对象镜像目录: {}, 磁盘配额: {}, 拉取块大小: {}", mirrorDir,
+                pdfConfig.getMirror().getMaxSize(), pdfConfig.getMirror().getBlockSize());
+    }
+
+    /**
+     * 将对象的 [startByte, endByte] 区间写入输出流，缺失部分先从OSS拉取到本地
+     * 按拉取块逐块确保并写出，大区间不必等全部拉取完成才开始响应。
+     * 这里不是零拷贝：数据从文件读入池化的堆缓冲区再写入输出流。零拷贝需要把文件交给容器的 sendfile，
+     * 而容器在请求方法返回后才打开文件，届时已无法持有镜像条目，文件可能已被淘汰删除，因此不采用
+     * @param objectKey OSS对象键
+     * @param objectLength 对象总长度
+     * @param startByte 起始字节（含）
+     * @param endByte 结束字节（含）
+     * @param output 输出流（不负责关闭）
+     */
+    public void transferTo(String objectKey, long objectLength, long startByte, long endByte, OutputStream output) throws IOException {
+        MirrorEntry entry = acquire(objectKey, objectLength);
+        try {
+            long blockSize = pdfConfig.getMirror().getBlockSize().toBytes();
+            long position = startByte;
+            while (position <= endByte) {
+                long blockEnd = Math.min(endByte + 1, (position / blockSize + 1) * blockSize);
+                ensureRange(entry, position, blockEnd, blockSize);
+                StreamTransferUtils.copy(entry.channel, position, blockEnd - position, output);
+                servedBytes.add(blockEnd - position);
+                position = blockEnd;
+            }
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * 确保对象完整存在于本地，返回本地文件路径（用于PDFBox解析）
+     * @param objectKey OSS对象键
+     * @param objectLength 对象总长度
+     * @return 本地镜像文件
+     */
+    public Path ensureComplete(String objectKey, long objectLength) throws IOException {
+        MirrorEntry entry = acquire(objectKey, objectLength);
+        try {
+            ensureRange(entry, 0, objectLength);
+            return entry.path;
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * 租用对象的本地镜像，用于按需随机读取（如PDFBox解析）
+     * 租用期间镜像文件不会被淘汰删除，调用方按读取位置调用 {@link Lease#ensure} 拉取缺失区间，用完后必须关闭
+     * @param objectKey OSS对象键
+     * @param objectLength 对象总长度
+     * @return 镜像租约
+     */
+    public Lease lease(String objectKey, long objectLength) throws IOException {
+        return new Lease(acquire(objectKey, objectLength));
+    }
+
+    /**
+     * 获取对象的元数据（ETag、最后修改时间），同一镜像条目只向OSS查询一次
+     * @param objectKey OSS对象键
+     * @param objectLength 对象总长度
+     * @return 对象元数据
+     */
+    public ObjectVersion getObjectVersion(String objectKey, long objectLength) throws IOException {
+        MirrorEntry entry = acquire(objectKey, objectLength);
+        try {
+            return loadVersion(entry);
+        } finally {
+            release(entry);
+        }
+    }
+
+    /**
+     * 定期淘汰长时间未访问的对象
+     */
+    public void cleanupExpired() {
+        long threshold = System.currentTimeMillis() - pdfConfig.getMirror().getExpireAfterAccess().toMillis();
+        for (MirrorEntry entry : entries.values()) {
+            if (entry.lastAccess < threshold && entry.readers() == 0) {
+                evict(entry);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (MirrorEntry entry : new ArrayList<>(entries.values())) {
+            evict(entry);
+        }
+    }
+
+    /**
+     * 镜像统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("objects", entries.size());
+        stats.put("cachedBytes", cachedBytes());
+        stats.put("maxBytes", pdfConfig.getMirror().getMaxSize().toBytes());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("ossFetches", ossFetches.sum());
+        stats.put("fetchedBytes", fetchedBytes.sum());
+        stats.put("servedBytes", servedBytes.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    /**
+     * 确保 [start, end) 已存在于本地，缺失部分按块对齐后从OSS拉取
+     */
+    private void ensureRange(MirrorEntry entry, long start, long end) throws IOException {
+        ensureRange(entry, start, end, pdfConfig.getMirror().getBlockSize().toBytes());
+    }
+
+    /**
+     * 确保 [start, end) 已存在于本地，缺失部分按指定块大小对齐后从OSS拉取
+     */
+    private void ensureRange(MirrorEntry entry, long start, long end, long blockSize) throws IOException {
+        entry.lastAccess = System.currentTimeMillis();
+        if (entry.present.contains(start, end)) {
+            hits.increment();
+            return;
+        }
+        misses.increment();
+
+        long alignedStart = (start / blockSize) * blockSize;
+        long alignedEnd = Math.min(entry.length, ((end + blockSize - 1) / blockSize) * blockSize);
+
+        entry.fetchLock.lock();
+        try {
+            for (long[] gap : entry.present.gaps(alignedStart, alignedEnd)) {
+                fetch(entry, gap[0], gap[1]);
+            }
+        } finally {
+            entry.fetchLock.unlock();
+        }
+        enforceQuota(entry);
+    }
+
+    /**
+     * 从OSS拉取 [start, end) 写入稀疏文件对应位置
+     */
+    private void fetch(MirrorEntry entry, long start, long end) throws IOException {
+        GetObjectRequest request = new GetObjectRequest(ossProperties.getBucketName(), entry.objectKey);
+        request.setRange(start, end - 1);
+        ObjectVersion version = entry.version;
+        if (version != null && version.getRawETag() != null) {
+            // 对象在镜像期间被覆盖时让OSS拒绝请求，避免同一文件混入新旧两个版本的字节
+            request.setMatchingETagConstraints(Collections.singletonList(version.getRawETag()));
+        }
+        OSSObject ossObject = ossClient.getObject(request);
+        try (InputStream input = ossObject.getObjectContent();
+             ReadableByteChannel source = Channels.newChannel(input)) {
+            long position = start;
+            while (position < end) {
+                long read = entry.channel.transferFrom(source, position, end - position);
+                if (read <= 0) {
+                    break;
+                }
+                position += read;
+            }
+            if (position < end) {
+                throw new IOException("OSS对象读取不完整: " + entry.objectKey + ", 期望至 " + end + ", 实际至 " + position);
+            }
+        } finally {
+            try { ossObject.close(); } catch (Exception ignored) {}
+        }
+        entry.present.add(start, end);
+        ossFetches.increment();
+        fetchedBytes.add(end - start);
+    }
+
+    private ObjectVersion loadVersion(MirrorEntry entry) {
+        ObjectVersion version = entry.version;
+        if (version != null) {
+            return version;
+        }
+        synchronized (entry) {
+            if (entry.version == null) {
+                ObjectMetadata metadata = ossClient.getObjectMetadata(ossProperties.getBucketName(), entry.objectKey);
+                long lastModified = metadata.getLastModified() != null ? metadata.getLastModified().getTime() : -1;
+                entry.version = new ObjectVersion(metadata.getETag(), lastModified);
+            }
+            return entry.version;
+        }
+    }
+
+    private MirrorEntry acquire(String objectKey, long objectLength) throws IOException {
+        while (true) {
+            MirrorEntry entry = entries.get(objectKey);
+            if (entry != null && entry.length != objectLength) {
+                evict(entry);
+                entry = null;
+            }
+            if (entry == null) {
+                MirrorEntry created = createEntry(objectKey, objectLength);
+                entry = entries.putIfAbsent(objectKey, created);
+                if (entry == null) {
+                    entry = created;
+                } else {
+                    created.close();
+                }
+            }
+            synchronized (entry) {
+                if (!entry.closed) {
+                    entry.readers++;
+                    return entry;
+                }
+            }
+        }
+    }
+
+    private void release(MirrorEntry entry) {
+        boolean close;
+        synchronized (entry) {
+            entry.readers--;
+            close = entry.closed && entry.readers == 0;
+        }
+        if (close) {
+            entry.close();
+        }
+    }
+
+    private MirrorEntry createEntry(String objectKey, long objectLength) throws IOException {
+        Path path = mirrorDir.resolve(UUID.randomUUID().toString().replace("-", "") + ".bin");
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        try {
+            // 预设文件长度，未写入的区域在文件系统中保持稀疏
+            file.setLength(objectLength);
+        } catch (IOException e) {
+            file.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new MirrorEntry(objectKey, objectLength, path, file);
+    }
+
+    /**
+     * 超出磁盘配额时按最近访问时间淘汰未被使用的对象
+     */
+    private void enforceQuota(MirrorEntry current) {
+        long maxBytes = pdfConfig.getMirror().getMaxSize().toBytes();
+        while (cachedBytes() > maxBytes) {
+            MirrorEntry victim = entries.values().stream()
+                    .filter(e -> e != current && e.readers() == 0)
+                    .min(Comparator.comparingLong(e -> e.lastAccess))
+                    .orElse(null);
+            if (victim == null) {
+                break;
+            }
+            evict(victim);
+            evictions.increment();
+        }
+    }
+
+    private long cachedBytes() {
+        long total = 0;
+        for (MirrorEntry entry : entries.values()) {
+            total += entry.present.coveredBytes();
+        }
+        return total;
+    }
+
+    private void evict(MirrorEntry entry) {
+        entries.remove(entry.objectKey, entry);
+        boolean close;
+        synchronized (entry) {
+            if (entry.closed) {
+                return;
+            }
+            entry.closed = true;
+            close = entry.readers == 0;
+        }
+        if (close) {
+            entry.close();
+        }
+        log.debug("淘汰OSS对象镜像: {}", entry.objectKey);
+    }
+
+    /**
+     * 镜像条目：一个OSS对象对应的稀疏文件及已存在区间
+     */
+    private static class MirrorEntry {
+        private final String objectKey;
+        private final long length;
+        private final Path path;
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        private final ByteRangeSet present = new ByteRangeSet();
+        private final ReentrantLock fetchLock = new ReentrantLock();
+        private volatile ObjectVersion version;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private int readers = 0;
+        private boolean closed = false;
+
+        MirrorEntry(String objectKey, long length, Path path, RandomAccessFile file) {
+            this.objectKey = objectKey;
+            this.length = length;
+            this.path = path;
+            this.file = file;
+            this.channel = file.getChannel();
+        }
+
+        synchronized int readers() {
+            return readers;
+        }
+
+        void close() {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.debug("删除镜像文件失败: {}", path);
+            }
+        }
+    }
+
+    /**
+     * 镜像租约：持有期间对应的镜像条目不会被关闭
+     */
+    public class Lease implements Closeable {
+        private final MirrorEntry entry;
+        private boolean released = false;
+
+        private Lease(MirrorEntry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * 对象总长度
+         */
+        public long length() {
+            return entry.length;
+        }
+
+        /**
+         * 镜像文件通道（只应读取已确保存在的区间）
+         */
+        public FileChannel channel() {
+            return entry.channel;
+        }
+
+        /**
+         * 确保 [start, end) 已存在于本地，缺失部分按 blockSize 对齐后从OSS拉取
+         * @param start 起始字节（含）
+         * @param end 结束字节（不含）
+         * @param blockSize 拉取对齐块大小
+         * @return 实际已确保存在的对齐区间 [alignedStart, alignedEnd)
+         */
+        public long[] ensure(long start, long end, long blockSize) throws IOException {
+            long alignedStart = (start / blockSize) * blockSize;
+            long alignedEnd = Math.min(entry.length, ((end + blockSize - 1) / blockSize) * blockSize);
+            ensureRange(entry, alignedStart, alignedEnd, blockSize);
+            return new long[]{alignedStart, alignedEnd};
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * 对象版本信息：OSS返回的ETag及最后修改时间
+     */
+    @Getter
+    public static class ObjectVersion {
+        private final String rawETag;
+        private final long lastModified;
+
+        ObjectVersion(String rawETag, long lastModified) {
+            this.rawETag = rawETag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * HTTP强校验ETag（带引号）
+         */
+        public String getETag() {
+            String value = rawETag == null ? "" : rawETag.replace("\"", "");
+            return "\"" + value + "\"";
+        }
+    }
+}
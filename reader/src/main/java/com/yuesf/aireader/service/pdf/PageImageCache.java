@@ -0,0 +1,289 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.yuesf.aireader.config.PdfConfig;
+import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.event.FileInfoChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 页图磁盘缓存
+ * 以 (文件ID, 页码, DPI, 格式) 为键，将渲染好的页图保存在本地磁盘，按LRU淘汰，
+ * 同时限制磁盘占用字节数和条目数。命中时只需一次本地文件读取。
+ */
+@Slf4j
+@Component
+public class PageImageCache {
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    private Path cacheDir;
+
+    // 访问顺序的LinkedHashMap，头部为最久未访问的条目，所有访问都在 this 锁内进行
+    private final LinkedHashMap<PageImageKey, CacheEntry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    // 文件ID -> 文件指纹，用于发现文件被替换后失效旧页图
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+
+    private long totalBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @PostConstruct
+    public void init() throws IOException {
+        cacheDir = Paths.get(pdfConfig.getPageCache().getDir());
+        // 进程重启后内存索引丢失，残留文件无法统计占用，直接清空
+        if (Files.exists(cacheDir)) {
+            FileUtils.deleteDirectory(cacheDir.toFile());
+        }
+        Files.createDirectories(cacheDir);
+        log.info("页图缓存目录: {}, 上限: {}, 最大条目数: {}", cacheDir,
+                pdfConfig.getPageCache().getMaxSize(), pdfConfig.getPageCache().getMaxEntries());
+    }
+
+    /**
+     * 读取缓存的页图
+     * @param fileInfo 文件信息，用于校验文件是否已变更
+     * @param key 缓存键
+     * @return 页图字节，未命中返回null
+     */
+    public byte[] get(FileInfo fileInfo, PageImageKey key) {
+        if (!pdfConfig.getPageCache().isEnabled()) {
+            return null;
+        }
+        checkFingerprint(fileInfo);
+
+        CacheEntry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        try {
+            byte[] data = Files.readAllBytes(entry.path);
+            hits.increment();
+            return data;
+        } catch (NoSuchFileException e) {
+            // 读取前已被并发淘汰
+            misses.increment();
+            return null;
+        } catch (IOException e) {
+            log.warn("读取页图缓存失败: {}, {}", entry.path, e.getMessage());
+            remove(key);
+            misses.increment();
+            return null;
+        }
+    }
+
+    /**
+     * 页图是否已缓存（不读取文件内容，不计入命中统计）
+     * @param fileInfo 文件信息，用于校验文件是否已变更
+     * @param key 缓存键
+     */
+    public boolean contains(FileInfo fileInfo, PageImageKey key) {
+        if (!pdfConfig.getPageCache().isEnabled()) {
+            return false;
+        }
+        checkFingerprint(fileInfo);
+        synchronized (this) {
+            return entries.containsKey(key);
+        }
+    }
+
+    /**
+     * 写入页图缓存
+     * @param fileInfo 文件信息
+     * @param key 缓存键
+     * @param data 页图字节
+     */
+    public void put(FileInfo fileInfo, PageImageKey key, byte[] data) {
+        if (!pdfConfig.getPageCache().isEnabled() || data == null || data.length == 0) {
+            return;
+        }
+        long maxBytes = pdfConfig.getPageCache().getMaxSize().toBytes();
+        if (data.length > maxBytes) {
+            return;
+        }
+        checkFingerprint(fileInfo);
+
+        Path target = cacheDir.resolve(directoryName(key.getFileId())).resolve(key.toFileName());
+        try {
+            // 先写临时文件再原子替换，避免并发读到半截文件
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), "page_", ".tmp");
+            Files.write(tmp, data);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入页图缓存失败: {}, {}", target, e.getMessage());
+            return;
+        }
+
+        List<Path> evicted = new ArrayList<>();
+        synchronized (this) {
+            CacheEntry previous = entries.put(key, new CacheEntry(target, data.length));
+            if (previous != null) {
+                totalBytes -= previous.size;
+            }
+            totalBytes += data.length;
+            puts.increment();
+
+            int maxEntries = pdfConfig.getPageCache().getMaxEntries();
+            Iterator<Map.Entry<PageImageKey, CacheEntry>> it = entries.entrySet().iterator();
+            while ((totalBytes > maxBytes || entries.size() > maxEntries) && it.hasNext()) {
+                Map.Entry<PageImageKey, CacheEntry> eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                it.remove();
+                totalBytes -= eldest.getValue().size;
+                evicted.add(eldest.getValue().path);
+                evictions.increment();
+            }
+        }
+        deleteQuietly(evicted);
+    }
+
+    /**
+     * 失效某个文件的全部页图
+     * @param fileId 文件ID
+     */
+    public void invalidate(String fileId) {
+        List<Path> removed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<PageImageKey, CacheEntry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<PageImageKey, CacheEntry> e = it.next();
+                if (e.getKey().getFileId().equals(fileId)) {
+                    it.remove();
+                    totalBytes -= e.getValue().size;
+                    removed.add(e.getValue().path);
+                }
+            }
+        }
+        fingerprints.remove(fileId);
+        if (!removed.isEmpty()) {
+            invalidations.increment();
+            log.info("页图缓存失效，文件ID: {}, 条目数: {}", fileId, removed.size());
+        }
+        deleteQuietly(removed);
+    }
+
+    /**
+     * 文件信息变更时失效对应页图
+     */
+    @EventListener
+    public void onFileInfoChanged(FileInfoChangedEvent event) {
+        invalidate(event.getFileId());
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long lookups = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxEntries", pdfConfig.getPageCache().getMaxEntries());
+        stats.put("maxBytes", pdfConfig.getPageCache().getMaxSize().toBytes());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        stats.put("puts", puts.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * 校验文件指纹，文件被替换（对象路径、大小或上传时间变化）时清除旧页图
+     */
+    private void checkFingerprint(FileInfo fileInfo) {
+        String current = fingerprint(fileInfo);
+        String previous = fingerprints.put(fileInfo.getId(), current);
+        if (previous != null && !previous.equals(current)) {
+            invalidate(fileInfo.getId());
+            fingerprints.put(fileInfo.getId(), current);
+        }
+    }
+
+    private String fingerprint(FileInfo fileInfo) {
+        return fileInfo.getFileName() + "|" + fileInfo.getFileSize() + "|" + Objects.toString(fileInfo.getUploadTime());
+    }
+
+    private synchronized void remove(PageImageKey key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size;
+        }
+    }
+
+    /**
+     * 文件ID对应的缓存子目录名：取ID的 SHA-256 十六进制串，长度固定且不同ID不会落到同一目录
+     */
+    private String directoryName(String fileId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fileId.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void deleteQuietly(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.debug("删除页图缓存文件失败: {}", path);
+            }
+        }
+    }
+
+    /**
+     * 缓存条目：磁盘路径与字节数
+     */
+    private static class CacheEntry {
+        private final Path path;
+        private final long size;
+
+        CacheEntry(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
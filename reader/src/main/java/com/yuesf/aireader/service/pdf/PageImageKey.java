@@ -0,0 +1,101 @@
+package com.yuesf.aireader.service.pdf;
+
+import lombok.Value;
+
+/**
+ * 页图缓存键
+ * 由文件ID、页码、分辨率（DPI或目标像素宽度）、图片格式和压缩质量唯一确定一张页图；
+ * 瓦片另由缩放级别和瓦片坐标确定
+ */
+@Value
+public class PageImageKey {
+
+    /**
+     * 文件ID
+     */
+    String fileId;
+
+    /**
+     * 页码（从1开始）
+     */
+    int page;
+
+    /**
+     * 渲染DPI，按目标宽度渲染时为0
+     */
+    int dpi;
+
+    /**
+     * 目标像素宽度，按DPI渲染时为0
+     */
+    int width;
+
+    /**
+     * 图片格式：png / jpeg / webp
+     */
+    String format;
+
+    /**
+     * 有损格式的压缩质量（1-100），png 为0
+     */
+    int quality;
+
+    /**
+     * 瓦片位置（缩放级别、列、行），整页图为null
+     */
+    TileCoord tile;
+
+    /**
+     * 按DPI渲染的无损PNG页图
+     */
+    public static PageImageKey png(String fileId, int page, int dpi) {
+        return new PageImageKey(fileId, page, dpi, 0, "png", 0, null);
+    }
+
+    /**
+     * 瓦片
+     */
+    public static PageImageKey tile(String fileId, int page, int zoom, int x, int y, String format, int quality) {
+        return new PageImageKey(fileId, page, 0, 0, format, quality, new TileCoord(zoom, x, y));
+    }
+
+    /**
+     * 同一规格的另一页
+     */
+    public PageImageKey withPage(int otherPage) {
+        return new PageImageKey(fileId, otherPage, dpi, width, format, quality, tile);
+    }
+
+    /**
+     * 响应的 Content-Type
+     */
+    public String getContentType() {
+        return "image/" + format;
+    }
+
+    /**
+     * 缓存文件名（不含目录）
+     */
+    public String toFileName() {
+        StringBuilder name = new StringBuilder().append(page).append('_');
+        if (tile != null) {
+            name.append("t").append(tile.getZoom()).append('_').append(tile.getX()).append('_').append(tile.getY());
+        } else {
+            name.append(width > 0 ? "w" + width : String.valueOf(dpi));
+        }
+        if (quality > 0) {
+            name.append("_q").append(quality);
+        }
+        return name.append('.').append(format).toString();
+    }
+
+    /**
+     * 瓦片坐标
+     */
+    @Value
+    public static class TileCoord {
+        int zoom;
+        int x;
+        int y;
+    }
+}
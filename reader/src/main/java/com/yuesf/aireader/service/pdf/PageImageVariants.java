@@ -0,0 +1,132 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.yuesf.aireader.exception.BusinessException;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 页图规格协商
+ * 根据客户端提供的目标宽度、设备像素比、DPI、格式及质量提示，确定实际渲染与编码的规格。
+ * 宽度、DPI和质量都归并到有限的档位，避免任意参数组合撑满页图缓存。
+ */
+public class PageImageVariants {
+
+    /**
+     * 未指定分辨率时的默认DPI，平衡清晰度与体积
+     */
+    public static final int DEFAULT_DPI = 150;
+
+    /**
+     * 有损格式的默认压缩质量
+     */
+    public static final int DEFAULT_QUALITY = 80;
+
+    /**
+     * 渲染分辨率上限（DPI），按宽度渲染时换算后的分辨率同样不超过该值
+     */
+    public static final int MAX_DPI = 300;
+
+    // 可选DPI档位，请求值向上取最近的档位
+    private static final int[] DPI_BUCKETS = {72, 96, 120, 150, 200, 300};
+
+    // 目标宽度按此步长向上取整
+    private static final int WIDTH_STEP = 160;
+    private static final int MIN_WIDTH = 160;
+    private static final int MAX_WIDTH = 2560;
+
+    private static final int MIN_QUALITY = 30;
+    private static final int MAX_QUALITY = 95;
+
+    // 运行环境中是否存在 WebP 编码器（需额外的 ImageIO 插件）
+    private static final boolean WEBP_SUPPORTED = ImageIO.getImageWritersByFormatName("webp").hasNext();
+
+    private PageImageVariants() {
+    }
+
+    /**
+     * 解析客户端提示，得到页图缓存键
+     * @param fileId 文件ID
+     * @param page 页码
+     * @param width 目标显示宽度（CSS像素），可为空
+     * @param dpr 设备像素比，可为空
+     * @param dpi 期望DPI，可为空；指定宽度时忽略
+     * @param format 格式提示：png / jpeg / jpg / webp / auto，为空时为 png
+     * @param quality 有损压缩质量（1-100），可为空
+     * @param accept 请求的 Accept 头，format=auto 时用于判断客户端是否支持 WebP
+     * @return 页图缓存键
+     */
+    public static PageImageKey resolve(String fileId, int page, Integer width, Double dpr, Integer dpi,
+                                       String format, Integer quality, String accept) {
+        String resolvedFormat = resolveFormat(format, accept);
+        int resolvedQuality = "png".equals(resolvedFormat) ? 0 : resolveQuality(quality);
+
+        if (width != null && width > 0) {
+            double ratio = dpr == null ? 1.0 : Math.max(1.0, Math.min(dpr, 4.0));
+            int target = (int) Math.ceil(width * ratio);
+            int bucket = ((target + WIDTH_STEP - 1) / WIDTH_STEP) * WIDTH_STEP;
+            bucket = Math.max(MIN_WIDTH, Math.min(MAX_WIDTH, bucket));
+            return new PageImageKey(fileId, page, 0, bucket, resolvedFormat, resolvedQuality, null);
+        }
+        int resolvedDpi = dpi == null ? DEFAULT_DPI : resolveDpi(dpi);
+        return new PageImageKey(fileId, page, resolvedDpi, 0, resolvedFormat, resolvedQuality, null);
+    }
+
+    /**
+     * 解析瓦片请求，瓦片默认使用JPEG以减小体积
+     * @param fileId 文件ID
+     * @param page 页码
+     * @param zoom 缩放级别
+     * @param x 瓦片列
+     * @param y 瓦片行
+     * @param format 格式提示，为空时为 jpeg
+     * @param quality 有损压缩质量，可为空
+     * @param accept 请求的 Accept 头
+     * @return 瓦片缓存键
+     */
+    public static PageImageKey resolveTile(String fileId, int page, int zoom, int x, int y,
+                                           String format, Integer quality, String accept) {
+        if (zoom < 0 || x < 0 || y < 0) {
+            throw new BusinessException(400, "瓦片坐标无效");
+        }
+        String resolvedFormat = resolveFormat(StringUtils.hasText(format) ? format : "jpeg", accept);
+        int resolvedQuality = "png".equals(resolvedFormat) ? 0 : resolveQuality(quality);
+        return PageImageKey.tile(fileId, page, zoom, x, y, resolvedFormat, resolvedQuality);
+    }
+
+    /**
+     * 当前环境是否可以输出 WebP
+     */
+    public static boolean isWebpSupported() {
+        return WEBP_SUPPORTED;
+    }
+
+    private static String resolveFormat(String format, String accept) {
+        if (!StringUtils.hasText(format)) {
+            return "png";
+        }
+        return switch (format.trim().toLowerCase()) {
+            case "png" -> "png";
+            case "jpg", "jpeg" -> "jpeg";
+            // 没有 WebP 编码器时退回 JPEG
+            case "webp" -> WEBP_SUPPORTED ? "webp" : "jpeg";
+            case "auto" -> WEBP_SUPPORTED && accept != null && accept.contains("image/webp") ? "webp" : "jpeg";
+            default -> throw new BusinessException(400, "不支持的图片格式: " + format);
+        };
+    }
+
+    private static int resolveDpi(int dpi) {
+        for (int bucket : DPI_BUCKETS) {
+            if (dpi <= bucket) {
+                return bucket;
+            }
+        }
+        return DPI_BUCKETS[DPI_BUCKETS.length - 1];
+    }
+
+    private static int resolveQuality(Integer quality) {
+        int value = quality == null ? DEFAULT_QUALITY : Math.max(MIN_QUALITY, Math.min(MAX_QUALITY, quality));
+        // 按5归档
+        return (value + 2) / 5 * 5;
+    }
+}
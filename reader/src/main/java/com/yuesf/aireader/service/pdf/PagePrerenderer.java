@@ -0,0 +1,397 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.yuesf.aireader.config.PdfConfig;
+import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.event.FileInfoChangedEvent;
+import com.yuesf.aireader.service.FileInfoService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 后台页图预渲染
+ * 报告上传后将前N页及低分辨率缩略图渲染进页图缓存，用户翻页时预取后续页，
+ * 把解析与渲染的CPU开销从请求线程移到可控的后台线程上。
+ * 待渲染队列有界并按优先级出队：翻页预取优先于上传预热，队列满时丢弃优先级最低的任务。
+ */
+@Slf4j
+@Component
+public class PagePrerenderer {
+
+    /**
+     * 任务优先级，数值越小越先执行
+     */
+    public static final int PRIORITY_PREFETCH = 0;
+    public static final int PRIORITY_WARMUP = 1;
+    public static final int PRIORITY_THUMBNAIL = 2;
+    private static final int PRIORITY_LEVELS = 3;
+
+    @Autowired
+    private PdfPageRenderer pdfPageRenderer;
+
+    @Autowired
+    private FileInfoService fileInfoService;
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    // 按优先级分开的待渲染队列，全部访问都在 lock 内进行
+    private final List<Deque<RenderTask>> queues = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int queued = 0;
+
+    // 任务键 -> 已入队的最高优先级，用于去重
+    private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+
+    // 文件ID -> 预渲染进度
+    private final Map<String, Progress> progresses = new ConcurrentHashMap<>();
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @PostConstruct
+    public void start() {
+        for (int i = 0; i < PRIORITY_LEVELS; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+        int workerCount = Math.max(1, pdfConfig.getPrerender().getWorkers());
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::workLoop, "pdf-prerender-" + i);
+            worker.setDaemon(true);
+            // 低于请求线程的优先级，CPU紧张时让出给在线请求
+            worker.setPriority(Thread.NORM_PRIORITY - 2);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("PDF预渲染线程已启动，线程数: {}, 队列容量: {}", workerCount, pdfConfig.getPrerender().getQueueCapacity());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 报告上传后预渲染前N页及缩略图
+     * @param fileId 文件ID
+     */
+    public void submitUpload(String fileId) {
+        PdfConfig.PrerenderConfig config = pdfConfig.getPrerender();
+        if (!config.isEnabled()) {
+            return;
+        }
+        FileInfo fileInfo = fileInfoService.getFileInfoById(fileId);
+        if (fileInfo == null || !"pdf".equalsIgnoreCase(fileInfo.getFileType())) {
+            return;
+        }
+        int pageNums = fileInfo.getPageNums() == null ? 0 : fileInfo.getPageNums();
+        progresses.remove(fileId);
+        int warmupPages = Math.min(config.getWarmupPages(), pageNums);
+        for (int page = 1; page <= warmupPages; page++) {
+            enqueue(new RenderTask(PageImageKey.png(fileId, page, PageImageVariants.DEFAULT_DPI), PRIORITY_WARMUP));
+        }
+        int thumbnailPages = Math.min(config.getThumbnailMaxPages(), pageNums);
+        for (int page = 1; page <= thumbnailPages; page++) {
+            enqueue(new RenderTask(PageImageKey.png(fileId, page, config.getThumbnailDpi()), PRIORITY_THUMBNAIL));
+        }
+        log.info("已提交PDF预渲染任务，文件ID: {}, 预热页数: {}, 缩略图页数: {}", fileId, warmupPages, thumbnailPages);
+    }
+
+    /**
+     * 用户请求某页后按相同规格预取后续页
+     * @param fileInfo 文件信息
+     * @param requested 用户请求的页图规格
+     */
+    public void onPageRequested(FileInfo fileInfo, PageImageKey requested) {
+        PdfConfig.PrerenderConfig config = pdfConfig.getPrerender();
+        if (!config.isEnabled() || fileInfo.getPageNums() == null) {
+            return;
+        }
+        int page = requested.getPage();
+        if (page < 1 || page > fileInfo.getPageNums()) {
+            return;
+        }
+        int last = Math.min(fileInfo.getPageNums(), page + config.getPrefetchPages());
+        for (int next = page + 1; next <= last; next++) {
+            PageImageKey key = requested.withPage(next);
+            if (!pdfPageRenderer.isCached(fileInfo, key)) {
+                enqueue(new RenderTask(key, PRIORITY_PREFETCH));
+            }
+        }
+    }
+
+    /**
+     * 获取文件的预渲染进度
+     * @param fileId 文件ID
+     * @return 进度信息，未提交过任务时返回null
+     */
+    public Map<String, Object> getProgress(String fileId) {
+        Progress progress = progresses.get(fileId);
+        return progress == null ? null : progress.toMap(fileId);
+    }
+
+    /**
+     * 文件信息变更时移除该文件尚未执行的任务
+     */
+    @EventListener
+    public void onFileInfoChanged(FileInfoChangedEvent event) {
+        String fileId = event.getFileId();
+        lock.lock();
+        try {
+            for (Deque<RenderTask> queue : queues) {
+                queue.removeIf(task -> {
+                    if (task.fileId.equals(fileId)) {
+                        pending.remove(task.key(), task.priority);
+                        queued--;
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        } finally {
+            lock.unlock();
+        }
+        progresses.remove(fileId);
+    }
+
+    /**
+     * 定期清理已完成且超过保留时长的进度记录
+     */
+    @Scheduled(fixedDelay = 5 * 60 * 1000)
+    public void cleanupProgress() {
+        long threshold = System.currentTimeMillis() - pdfConfig.getPrerender().getProgressRetention().toMillis();
+        progresses.entrySet().removeIf(e -> e.getValue().isFinished() && e.getValue().lastUpdate < threshold);
+    }
+
+    /**
+     * 预渲染统计信息
+     */
+    public Map<String, Object> getStats() {
+        int[] depths = new int[PRIORITY_LEVELS];
+        lock.lock();
+        try {
+            for (int i = 0; i < PRIORITY_LEVELS; i++) {
+                depths[i] = queues.get(i).size();
+            }
+        } finally {
+            lock.unlock();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queuedPrefetch", depths[PRIORITY_PREFETCH]);
+        stats.put("queuedWarmup", depths[PRIORITY_WARMUP]);
+        stats.put("queuedThumbnail", depths[PRIORITY_THUMBNAIL]);
+        stats.put("queueCapacity", pdfConfig.getPrerender().getQueueCapacity());
+        stats.put("workers", workers.size());
+        stats.put("rendered", rendered.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("failed", failed.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("trackedFiles", progresses.size());
+        return stats;
+    }
+
+    private void enqueue(RenderTask task) {
+        String key = task.key();
+        Integer existing = pending.get(key);
+        if (existing != null && existing <= task.priority) {
+            return;
+        }
+        RenderTask droppedTask = null;
+        lock.lock();
+        try {
+            if (queued >= pdfConfig.getPrerender().getQueueCapacity()) {
+                droppedTask = pollLowest(task.priority);
+                if (droppedTask == null) {
+                    // 队列中没有比新任务更低优先级的任务，丢弃新任务
+                    dropped.increment();
+                    return;
+                }
+                pending.remove(droppedTask.key(), droppedTask.priority);
+                queued--;
+            }
+            queues.get(task.priority).addLast(task);
+            pending.put(key, task.priority);
+            queued++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        progresses.computeIfAbsent(task.fileId, id -> new Progress()).submitted();
+        if (droppedTask != null) {
+            dropped.increment();
+            Progress progress = progresses.get(droppedTask.fileId);
+            if (progress != null) {
+                progress.dropped();
+            }
+        }
+    }
+
+    /**
+     * 取出一个比给定优先级更低的任务（从最低优先级队列尾部取），没有时返回null
+     */
+    private RenderTask pollLowest(int priority) {
+        for (int level = PRIORITY_LEVELS - 1; level > priority; level--) {
+            RenderTask task = queues.get(level).pollLast();
+            if (task != null) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private RenderTask take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queued == 0) {
+                notEmpty.await(1, TimeUnit.MINUTES);
+            }
+            for (Deque<RenderTask> queue : queues) {
+                RenderTask task = queue.pollFirst();
+                if (task != null) {
+                    pending.remove(task.key(), task.priority);
+                    queued--;
+                    return task;
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workLoop() {
+        while (running) {
+            RenderTask task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (task != null) {
+                execute(task);
+            }
+        }
+    }
+
+    private void execute(RenderTask task) {
+        Progress progress = progresses.get(task.fileId);
+        try {
+            FileInfo fileInfo = fileInfoService.getFileInfoById(task.fileId);
+            if (fileInfo == null) {
+                skipped.increment();
+                if (progress != null) {
+                    progress.failed();
+                }
+                return;
+            }
+            if (pdfPageRenderer.isCached(fileInfo, task.key)) {
+                skipped.increment();
+            } else {
+                pdfPageRenderer.renderInline(fileInfo, task.key);
+                rendered.increment();
+            }
+            if (progress != null) {
+                progress.completed();
+            }
+        } catch (Exception e) {
+            failed.increment();
+            if (progress != null) {
+                progress.failed();
+            }
+            log.warn("PDF预渲染失败，文件ID: {}, 页图: {}, 错误: {}", task.fileId, task.key.toFileName(), e.getMessage());
+        }
+    }
+
+    /**
+     * 渲染任务
+     */
+    private static class RenderTask {
+        private final String fileId;
+        private final PageImageKey key;
+        private final int priority;
+
+        RenderTask(PageImageKey key, int priority) {
+            this.fileId = key.getFileId();
+            this.key = key;
+            this.priority = priority;
+        }
+
+        String key() {
+            return fileId + ":" + key.toFileName();
+        }
+    }
+
+    /**
+     * 单个文件的预渲染进度
+     */
+    private static class Progress {
+        private final AtomicInteger submitted = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger dropped = new AtomicInteger();
+        private final long startTime = System.currentTimeMillis();
+        private volatile long lastUpdate = startTime;
+
+        void submitted() {
+            submitted.incrementAndGet();
+            lastUpdate = System.currentTimeMillis();
+        }
+
+        void completed() {
+            completed.incrementAndGet();
+            lastUpdate = System.currentTimeMillis();
+        }
+
+        void failed() {
+            failed.incrementAndGet();
+            lastUpdate = System.currentTimeMillis();
+        }
+
+        void dropped() {
+            dropped.incrementAndGet();
+            lastUpdate = System.currentTimeMillis();
+        }
+
+        boolean isFinished() {
+            return completed.get() + failed.get() + dropped.get() >= submitted.get();
+        }
+
+        Map<String, Object> toMap(String fileId) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("fileId", fileId);
+            map.put("status", isFinished() ? "DONE" : "RUNNING");
+            map.put("submitted", submitted.get());
+            map.put("completed", completed.get());
+            map.put("failed", failed.get());
+            map.put("dropped", dropped.get());
+            map.put("startTime", startTime);
+            map.put("lastUpdate", lastUpdate);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.yuesf.aireader.config.PdfConfig;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PDF分片清单
+ * 为小程序端分片下载计算每个分片的偏移、长度和SHA-256，客户端据此校验分片完整性，
+ * 并在再次打开同一报告时跳过哈希未变的本地分片。
+ * 分片大小按文件大小和网络类型在固定档位中选择；清单按对象版本和分片大小缓存，对象不变时只计算一次。
+ */
+@Slf4j
+@Component
+public class PdfChunkManifests {
+
+    /**
+     * 允许的最小分片大小
+     */
+    public static final int MIN_CHUNK_SIZE = 128 * 1024;
+
+    /**
+     * 允许的最大分片大小
+     */
+    public static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    // 缓存的清单数上限
+    private static final int MAX_MANIFESTS = 512;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private OssObjectMirror ossObjectMirror;
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    // 对象键|版本|分片大小 -> 清单，按访问顺序淘汰
+    private final Map<String, ChunkManifest> manifests = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ChunkManifest> eldest) {
+            return size() > MAX_MANIFESTS;
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder computations = new LongAdder();
+    private final LongAdder hashedBytes = new LongAdder();
+
+    /**
+     * 按文件大小和网络类型选择分片大小
+     * 小文件用小分片以尽早显示首页，大文件用大分片减少请求数；弱网减小分片以降低单次失败重传的代价
+     * @param fileSize 文件大小
+     * @param networkType 网络类型（wifi / 5g / 4g / 3g / 2g 等），可为空
+     * @return 分片大小（2的幂，位于 [MIN_CHUNK_SIZE, MAX_CHUNK_SIZE]）
+     */
+    public static int chooseChunkSize(long fileSize, String networkType) {
+        int size;
+        if (fileSize <= 2L * 1024 * 1024) {
+            size = 256 * 1024;
+        } else if (fileSize <= 16L * 1024 * 1024) {
+            size = 512 * 1024;
+        } else if (fileSize <= 64L * 1024 * 1024) {
+            size = 1024 * 1024;
+        } else {
+            size = 2 * 1024 * 1024;
+        }
+        if (networkType != null) {
+            switch (networkType.trim().toLowerCase()) {
+                case "wifi", "5g", "ethernet" -> size *= 2;
+                case "3g" -> size /= 2;
+                case "2g" -> size /= 4;
+                default -> {
+                }
+            }
+        }
+        return Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size));
+    }
+
+    /**
+     * 分片大小是否为允许的档位
+     */
+    public static boolean isValidChunkSize(int chunkSize) {
+        return chunkSize >= MIN_CHUNK_SIZE && chunkSize <= MAX_CHUNK_SIZE && Integer.bitCount(chunkSize) == 1;
+    }
+
+    /**
+     * 获取对象的分片清单，未缓存时从本地镜像计算
+     * @param objectKey OSS对象键
+     * @param objectLength 对象总长度
+     * @param version 对象版本（OSS ETag），用于区分同一键下的不同内容
+     * @param chunkSize 分片大小
+     * @return 分片清单
+     */
+    public ChunkManifest getManifest(String objectKey, long objectLength, String version, int chunkSize) throws IOException {
+        String cacheKey = objectKey + "|" + version + "|" + chunkSize;
+        synchronized (manifests) {
+            ChunkManifest cached = manifests.get(cacheKey);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        // 计算在锁外进行，并发的重复计算结果一致，只是多算一次
+        ChunkManifest manifest = compute(objectKey, objectLength, chunkSize);
+        synchronized (manifests) {
+            manifests.put(cacheKey, manifest);
+        }
+        return manifest;
+    }
+
+    /**
+     * 清单统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (manifests) {
+            stats.put("manifests", manifests.size());
+        }
+        stats.put("hits", hits.sum());
+        stats.put("computations", computations.sum());
+        stats.put("hashedBytes", hashedBytes.sum());
+        return stats;
+    }
+
+    private ChunkManifest compute(String objectKey, long objectLength, int chunkSize) throws IOException {
+        long startTime = System.currentTimeMillis();
+        MessageDigest fileDigest = sha256();
+        MessageDigest chunkDigest = sha256();
+        HexFormat hex = HexFormat.of();
+        int totalChunks = (int) ((objectLength + chunkSize - 1) / chunkSize);
+        List<ChunkInfo> chunks = new ArrayList<>(totalChunks);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        try (OssObjectMirror.Lease lease = ossObjectMirror.lease(objectKey, objectLength)) {
+            long blockSize = pdfConfig.getMirror().getBlockSize().toBytes();
+            FileChannel channel = lease.channel();
+            for (int index = 0; index < totalChunks; index++) {
+                long offset = (long) index * chunkSize;
+                long length = Math.min(chunkSize, objectLength - offset);
+                lease.ensure(offset, offset + length, blockSize);
+                long position = offset;
+                long end = offset + length;
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read <= 0) {
+                        throw new IOException("读取镜像文件失败: " + objectKey + ", 位置 " + position);
+                    }
+                    buffer.flip();
+                    chunkDigest.update(buffer.duplicate());
+                    fileDigest.update(buffer);
+                    position += read;
+                }
+                chunks.add(new ChunkInfo(index, offset, length, hex.formatHex(chunkDigest.digest())));
+            }
+        }
+
+        computations.increment();
+        hashedBytes.add(objectLength);
+        log.info("计算PDF分片清单，对象: {}, 分片大小: {}, 分片数: {}, 耗时: {}ms", objectKey, chunkSize, totalChunks,
+                System.currentTimeMillis() - startTime);
+        return new ChunkManifest(chunkSize, objectLength, hex.formatHex(fileDigest.digest()), Collections.unmodifiableList(chunks));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 分片清单
+     */
+    @Value
+    public static class ChunkManifest {
+        int chunkSize;
+        long fileSize;
+        String sha256;
+        List<ChunkInfo> chunks;
+    }
+
+    /**
+     * 单个分片：序号、偏移、长度与SHA-256（十六进制）
+     */
+    @Value
+    public static class ChunkInfo {
+        int index;
+        long offset;
+        long length;
+        String sha256;
+    }
+}
@@ -0,0 +1,107 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.yuesf.aireader.config.PdfConfig;
+import com.yuesf.aireader.entity.FileInfo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * PDF文档加载器
+ * 统一的文档打开入口：PDF内容始终以本地文件（或按需拉取的本地镜像）形式交给PDFBox随机读取，不整体读入堆内存；
+ * 解析过程中的临时数据使用 MemoryUsageSetting 混合模式，超过堆内上限的部分写入磁盘临时文件。
+ */
+@Slf4j
+@Component
+public class PdfDocumentLoader {
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    @Autowired
+    private OssObjectMirror ossObjectMirror;
+
+    private Path scratchDir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        scratchDir = Paths.get(pdfConfig.getLoader().getScratchDir());
+        Files.createDirectories(scratchDir);
+        log.info("PDF解析临时目录: {}, 单文档堆内上限: {}", scratchDir, pdfConfig.getLoader().getMaxMainMemory());
+    }
+
+    /**
+     * 打开本地PDF文件
+     * @param file 本地文件
+     * @return 已解析的文档，调用方负责关闭
+     */
+    public PDDocument open(Path file) throws IOException {
+        return PDDocument.load(file.toFile(), memoryUsageSetting());
+    }
+
+    /**
+     * 打开OSS上的PDF
+     * 启用按需读取时基于本地镜像的内存映射随机读取，只拉取实际访问到的区间；否则先完整镜像到本地再打开
+     * @param fileInfo PDF文件信息
+     * @return 已解析的文档，调用方负责关闭
+     */
+    public PDDocument open(FileInfo fileInfo) throws IOException {
+        PdfConfig.LoaderConfig config = pdfConfig.getLoader();
+        if (!config.isLazyFetch()) {
+            return open(ossObjectMirror.ensureComplete(fileInfo.getFileName(), fileInfo.getFileSize()));
+        }
+
+        OssObjectMirror.Lease lease = ossObjectMirror.lease(fileInfo.getFileName(), fileInfo.getFileSize());
+        MirroredRandomAccessRead source = new MirroredRandomAccessRead(lease, config.getFetchBlockSize().toBytes());
+        ScratchFile scratchFile = new ScratchFile(memoryUsageSetting());
+        try {
+            // 文档关闭时一并关闭读取源（归还镜像租约）和临时缓冲
+            PDFParser parser = new PDFParser(source, "", null, null, scratchFile);
+            parser.parse();
+            return parser.getPDDocument();
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(scratchFile);
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 从输入流打开PDF：先将流写入临时文件再打开，避免整份文档进入堆内存
+     * 临时文件在打开后即删除，已打开的文件句柄仍可读取，关闭文档后空间自动释放
+     * @param input 输入流（不负责关闭）
+     * @return 已解析的文档，调用方负责关闭
+     */
+    public PDDocument open(InputStream input) throws IOException {
+        Path spool = Files.createTempFile(scratchDir, "spool_", ".pdf");
+        try {
+            Files.copy(input, spool, StandardCopyOption.REPLACE_EXISTING);
+            return open(spool);
+        } finally {
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException e) {
+                // 部分平台不允许删除已打开的文件，退回到进程退出时删除
+                spool.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private MemoryUsageSetting memoryUsageSetting() {
+        return MemoryUsageSetting.setupMixed(pdfConfig.getLoader().getMaxMainMemory().toBytes())
+                .setTempDir(scratchDir.toFile());
+    }
+}
@@ -0,0 +1,312 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.yuesf.aireader.config.PdfConfig;
+import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.event.FileInfoChangedEvent;
+import com.yuesf.aireader.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已解析PDF文档池
+ * 通过 {@link PdfDocumentLoader} 基于OSS对象本地镜像按需打开并保持 PDDocument 常驻，连续翻页时无需重复下载和解析。
+ * 每个文档最多打开若干句柄，句柄借出期间独占使用（PDDocument 非线程安全）；
+ * 按估算内存预算和文档数上限做LRU淘汰，空闲超时后自动关闭。
+ */
+@Slf4j
+@Component
+public class PdfDocumentPool {
+
+    @Autowired
+    private PdfDocumentLoader pdfDocumentLoader;
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    // 文件ID -> 池条目
+    private final Map<String, PoolEntry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * 借用文档句柄，调用方必须通过 close() 归还
+     * @param fileInfo PDF文件信息
+     * @return 独占的文档句柄
+     */
+    public PooledDocument borrow(FileInfo fileInfo) throws IOException {
+        PdfConfig.DocumentPoolConfig config = pdfConfig.getDocumentPool();
+        if (!config.isEnabled()) {
+            // 不启用文档池：使用一次性条目，归还时关闭文档
+            PoolEntry transientEntry = new PoolEntry(fileInfo, fingerprint(fileInfo), 1);
+            transientEntry.closed = true;
+            transientEntry.borrowed = 1;
+            transientEntry.openHandles = 1;
+            misses.increment();
+            return new PooledDocument(this, transientEntry, openDocument(transientEntry));
+        }
+
+        String fileId = fileInfo.getId();
+        String fingerprint = fingerprint(fileInfo);
+        while (true) {
+            PoolEntry entry = entries.get(fileId);
+            if (entry != null && !entry.fingerprint.equals(fingerprint)) {
+                // 文件已被替换，丢弃旧文档
+                evict(entry);
+                invalidations.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                PoolEntry created = new PoolEntry(fileInfo, fingerprint, config.getMaxHandlesPerDocument());
+                entry = entries.putIfAbsent(fileId, created);
+                if (entry == null) {
+                    entry = created;
+                }
+            }
+
+            boolean acquired;
+            try {
+                acquired = entry.permits.tryAcquire(config.getBorrowTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待PDF文档句柄被中断", e);
+            }
+            if (!acquired) {
+                throw new BusinessException(503, "文档繁忙，请稍后重试");
+            }
+
+            PDDocument document;
+            synchronized (entry) {
+                if (entry.closed) {
+                    // 等待期间条目已被淘汰，重新获取
+                    entry.permits.release();
+                    continue;
+                }
+                entry.borrowed++;
+                entry.lastAccess = System.currentTimeMillis();
+                document = entry.idle.poll();
+            }
+            if (document != null) {
+                hits.increment();
+                return new PooledDocument(this, entry, document);
+            }
+
+            try {
+                document = openDocument(entry);
+            } catch (IOException | RuntimeException e) {
+                synchronized (entry) {
+                    entry.borrowed--;
+                }
+                entry.permits.release();
+                throw e;
+            }
+            synchronized (entry) {
+                entry.openHandles++;
+            }
+            misses.increment();
+            enforceBudget(entry);
+            return new PooledDocument(this, entry, document);
+        }
+    }
+
+    /**
+     * 归还文档句柄
+     */
+    void release(PoolEntry entry, PDDocument document) {
+        synchronized (entry) {
+            entry.borrowed--;
+            entry.lastAccess = System.currentTimeMillis();
+            if (entry.closed) {
+                closeQuietly(document);
+                entry.openHandles--;
+            } else {
+                entry.idle.push(document);
+            }
+        }
+        entry.permits.release();
+    }
+
+    /**
+     * 失效某个文件的常驻文档
+     * @param fileId 文件ID
+     */
+    public void invalidate(String fileId) {
+        PoolEntry entry = entries.get(fileId);
+        if (entry != null) {
+            evict(entry);
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * 文件信息变更时关闭对应文档
+     */
+    @EventListener
+    public void onFileInfoChanged(FileInfoChangedEvent event) {
+        invalidate(event.getFileId());
+    }
+
+    /**
+     * 定期关闭空闲超时的文档
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void evictIdle() {
+        long threshold = System.currentTimeMillis() - pdfConfig.getDocumentPool().getIdleTimeout().toMillis();
+        for (PoolEntry entry : entries.values()) {
+            boolean idle;
+            synchronized (entry) {
+                idle = entry.borrowed == 0 && entry.lastAccess < threshold;
+            }
+            if (idle) {
+                evict(entry);
+                idleEvictions.increment();
+                log.debug("关闭空闲PDF文档，文件ID: {}", entry.fileInfo.getId());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (PoolEntry entry : new ArrayList<>(entries.values())) {
+            evict(entry);
+        }
+    }
+
+    /**
+     * 文档池统计信息
+     */
+    public Map<String, Object> getStats() {
+        int openHandles = 0;
+        int idleHandles = 0;
+        int borrowed = 0;
+        for (PoolEntry entry : entries.values()) {
+            synchronized (entry) {
+                openHandles += entry.openHandles;
+                idleHandles += entry.idle.size();
+                borrowed += entry.borrowed;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", entries.size());
+        stats.put("openHandles", openHandles);
+        stats.put("idleHandles", idleHandles);
+        stats.put("borrowedHandles", borrowed);
+        stats.put("estimatedBytes", estimatedBytes());
+        stats.put("maxMemoryBytes", pdfConfig.getDocumentPool().getMaxMemory().toBytes());
+        stats.put("maxDocuments", pdfConfig.getDocumentPool().getMaxDocuments());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("idleEvictions", idleEvictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * 超出内存预算或文档数上限时，按最近访问时间淘汰未被借出的文档
+     */
+    private void enforceBudget(PoolEntry current) {
+        long maxBytes = pdfConfig.getDocumentPool().getMaxMemory().toBytes();
+        int maxDocuments = pdfConfig.getDocumentPool().getMaxDocuments();
+        while (estimatedBytes() > maxBytes || entries.size() > maxDocuments) {
+            PoolEntry victim = entries.values().stream()
+                    .filter(e -> e != current && e.isIdle())
+                    .min(Comparator.comparingLong(e -> e.lastAccess))
+                    .orElse(null);
+            if (victim == null) {
+                break;
+            }
+            evict(victim);
+            evictions.increment();
+        }
+    }
+
+    private long estimatedBytes() {
+        long total = 0;
+        for (PoolEntry entry : entries.values()) {
+            total += entry.estimatedBytes();
+        }
+        return total;
+    }
+
+    private void evict(PoolEntry entry) {
+        entries.remove(entry.fileInfo.getId(), entry);
+        List<PDDocument> toClose;
+        synchronized (entry) {
+            if (entry.closed) {
+                return;
+            }
+            entry.closed = true;
+            toClose = new ArrayList<>(entry.idle);
+            entry.openHandles -= entry.idle.size();
+            entry.idle.clear();
+        }
+        toClose.forEach(this::closeQuietly);
+    }
+
+    private PDDocument openDocument(PoolEntry entry) throws IOException {
+        return pdfDocumentLoader.open(entry.fileInfo);
+    }
+
+    private String fingerprint(FileInfo fileInfo) {
+        return fileInfo.getFileName() + "|" + fileInfo.getFileSize() + "|" + Objects.toString(fileInfo.getUploadTime());
+    }
+
+    private void closeQuietly(PDDocument document) {
+        try {
+            document.close();
+        } catch (IOException e) {
+            log.debug("关闭PDF文档失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 池条目：一个文件已打开的文档句柄
+     */
+    class PoolEntry {
+        private final FileInfo fileInfo;
+        private final String fingerprint;
+        private final Semaphore permits;
+        private final Deque<PDDocument> idle = new ArrayDeque<>();
+        private int openHandles = 0;
+        private int borrowed = 0;
+        private boolean closed = false;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        PoolEntry(FileInfo fileInfo, String fingerprint, int maxHandles) {
+            this.fileInfo = fileInfo;
+            this.fingerprint = fingerprint;
+            this.permits = new Semaphore(Math.max(1, maxHandles));
+        }
+
+        synchronized boolean isIdle() {
+            return borrowed == 0;
+        }
+
+        synchronized long estimatedBytes() {
+            return (long) openHandles * (fileInfo.getFileSize() == null ? 0 : fileInfo.getFileSize());
+        }
+    }
+}
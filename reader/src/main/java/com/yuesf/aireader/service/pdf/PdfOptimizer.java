@@ -0,0 +1,304 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.aliyun.oss.OSS;
+import com.yuesf.aireader.config.OssConfig.OssProperties;
+import com.yuesf.aireader.config.PdfConfig;
+import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.service.FileInfoService;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.Thumbnails;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PDF上传后优化
+ * 在后台将上传的PDF改写为线性化（快速网页查看）布局，可选地缩小并重新压缩过大的内嵌图片，
+ * 优化结果作为独立OSS对象与原文件并存，流式下载和分片接口优先使用优化版本，
+ * 阅读器只需下载开头少量数据即可显示首页。页面渲染仍使用原文件。
+ */
+@Slf4j
+@Component
+public class PdfOptimizer {
+
+    @Autowired
+    private OSS ossClient;
+
+    @Autowired
+    private OssProperties ossProperties;
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    @Autowired
+    private FileInfoService fileInfoService;
+
+    @Autowired
+    private OssObjectMirror ossObjectMirror;
+
+    @Autowired
+    private PdfDocumentLoader pdfDocumentLoader;
+
+    @Autowired
+    @Qualifier("pdfOptimizeExecutor")
+    private ThreadPoolTaskExecutor executor;
+
+    // qpdf 不可用时只提示一次，之后跳过线性化
+    private volatile boolean qpdfAvailable = true;
+
+    private final LongAdder optimized = new LongAdder();
+    private final LongAdder linearized = new LongAdder();
+    private final LongAdder imagesRecompressed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * 提交文件的优化任务，队列满时跳过（原文件仍可正常访问）
+     * @param fileId 文件ID
+     */
+    public void submit(String fileId) {
+        if (!pdfConfig.getOptimize().isEnabled()) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    optimize(fileId);
+                } catch (Exception e) {
+                    failed.increment();
+                    log.error("PDF优化失败，文件ID: {}", fileId, e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            log.warn("PDF优化队列已满，跳过文件: {}", fileId);
+        }
+    }
+
+    /**
+     * 优化统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", pdfConfig.getOptimize().isEnabled());
+        stats.put("qpdfAvailable", qpdfAvailable);
+        stats.put("queueDepth", executor.getThreadPoolExecutor().getQueue().size());
+        stats.put("optimized", optimized.sum());
+        stats.put("linearized", linearized.sum());
+        stats.put("imagesRecompressed", imagesRecompressed.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("savedBytes", savedBytes.sum());
+        return stats;
+    }
+
+    /**
+     * 生成并上传优化版本
+     */
+    private void optimize(String fileId) throws IOException {
+        FileInfo fileInfo = fileInfoService.getFileInfoById(fileId);
+        if (fileInfo == null || !"pdf".equalsIgnoreCase(fileInfo.getFileType()) || fileInfo.getFileSize() == null) {
+            skipped.increment();
+            return;
+        }
+        PdfConfig.OptimizeConfig config = pdfConfig.getOptimize();
+        if (!qpdfAvailable && !config.isRecompressImages()) {
+            skipped.increment();
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        Path scratchDir = Paths.get(pdfConfig.getLoader().getScratchDir());
+        List<Path> tempFiles = new ArrayList<>();
+        // 处理期间持有镜像租约，避免本地镜像文件被淘汰删除
+        try (OssObjectMirror.Lease ignored = ossObjectMirror.lease(fileInfo.getFileName(), fileInfo.getFileSize())) {
+            Path source = ossObjectMirror.ensureComplete(fileInfo.getFileName(), fileInfo.getFileSize());
+            Path current = source;
+            boolean changed = false;
+
+            if (config.isRecompressImages()) {
+                Path recompressed = Files.createTempFile(scratchDir, "recompress_", ".pdf");
+                tempFiles.add(recompressed);
+                if (recompressImages(current, recompressed, config)) {
+                    current = recompressed;
+                    changed = true;
+                }
+            }
+
+            boolean isLinearized = false;
+            if (qpdfAvailable) {
+                Path output = Files.createTempFile(scratchDir, "linearized_", ".pdf");
+                tempFiles.add(output);
+                if (linearize(current, output, config)) {
+                    current = output;
+                    changed = true;
+                    isLinearized = true;
+                }
+            }
+
+            long optimizedSize = Files.size(current);
+            // 未线性化时，只有体积确实变小才值得保存
+            if (!changed || (!isLinearized && optimizedSize >= fileInfo.getFileSize())) {
+                skipped.increment();
+                log.info("PDF无需优化，文件ID: {}", fileId);
+                return;
+            }
+            verifyPageCount(current, fileInfo);
+
+            String objectKey = FilenameUtils.removeExtension(fileInfo.getFileName()) + "_web.pdf";
+            ossClient.putObject(ossProperties.getBucketName(), objectKey, current.toFile());
+            fileInfoService.updateOptimizedFile(fileId, objectKey, optimizedSize, isLinearized);
+
+            optimized.increment();
+            if (isLinearized) {
+                linearized.increment();
+            }
+            savedBytes.add(Math.max(0, fileInfo.getFileSize() - optimizedSize));
+            log.info("PDF优化完成，文件ID: {}, 线性化: {}, 原大小: {}, 优化后: {}, 耗时: {}ms", fileId, isLinearized,
+                    fileInfo.getFileSize(), optimizedSize, System.currentTimeMillis() - startTime);
+        } finally {
+            for (Path temp : tempFiles) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * 使用 qpdf 线性化，并生成对象流以减小交叉引用与小对象的体积
+     * @return 是否成功
+     */
+    private boolean linearize(Path input, Path output, PdfConfig.OptimizeConfig config) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(config.getQpdfPath(), "--linearize", "--object-streams=generate",
+                "--compress-streams=y", input.toString(), output.toString());
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            qpdfAvailable = false;
+            log.warn("qpdf不可用，跳过PDF线性化: {}", e.getMessage());
+            return false;
+        }
+        try {
+            if (!process.waitFor(config.getTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                log.warn("qpdf处理超时: {}", input);
+                return false;
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("PDF线性化被中断", e);
+        }
+        // 退出码3表示处理成功但有警告
+        int exitCode = process.exitValue();
+        if (exitCode != 0 && exitCode != 3) {
+            log.warn("qpdf处理失败，退出码: {}", exitCode);
+            return false;
+        }
+        return Files.size(output) > 0;
+    }
+
+    /**
+     * 将长边超过上限的内嵌图片缩小后以JPEG重新编码
+     * 带透明蒙版或模板蒙版的图片保持不变
+     * @return 是否有图片被替换
+     */
+    private boolean recompressImages(Path input, Path output, PdfConfig.OptimizeConfig config) throws IOException {
+        int maxDimension = config.getMaxImageDimension();
+        // 多个页面共享的图片只处理一次
+        Map<COSBase, PDImageXObject> replaced = new HashMap<>();
+        int count = 0;
+        try (PDDocument document = pdfDocumentLoader.open(input)) {
+            for (PDPage page : document.getPages()) {
+                PDResources resources = page.getResources();
+                if (resources == null) {
+                    continue;
+                }
+                for (COSName name : resources.getXObjectNames()) {
+                    PDXObject xObject = resources.getXObject(name);
+                    if (!(xObject instanceof PDImageXObject image)) {
+                        continue;
+                    }
+                    PDImageXObject replacement = replaced.get(image.getCOSObject());
+                    if (replacement == null) {
+                        if (image.isStencil() || image.getCOSObject().containsKey(COSName.SMASK)
+                                || image.getCOSObject().containsKey(COSName.MASK)
+                                || Math.max(image.getWidth(), image.getHeight()) <= maxDimension) {
+                            continue;
+                        }
+                        BufferedImage scaled = toRgb(Thumbnails.of(image.getImage())
+                                .size(maxDimension, maxDimension)
+                                .asBufferedImage());
+                        replacement = JPEGFactory.createFromImage(document, scaled, config.getImageQuality());
+                        replaced.put(image.getCOSObject(), replacement);
+                        count++;
+                    }
+                    resources.put(name, replacement);
+                }
+            }
+            if (count == 0) {
+                return false;
+            }
+            document.save(output.toFile());
+        }
+        imagesRecompressed.add(count);
+        return true;
+    }
+
+    /**
+     * 优化结果页数必须与原文件一致，避免保存损坏的对象
+     */
+    private void verifyPageCount(Path file, FileInfo fileInfo) throws IOException {
+        if (fileInfo.getPageNums() == null || fileInfo.getPageNums() <= 0) {
+            return;
+        }
+        try (PDDocument document = pdfDocumentLoader.open(file)) {
+            if (document.getNumberOfPages() != fileInfo.getPageNums()) {
+                throw new IOException("优化后页数不一致: " + document.getNumberOfPages() + " != " + fileInfo.getPageNums());
+            }
+        }
+    }
+
+    private BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, java.awt.Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+}
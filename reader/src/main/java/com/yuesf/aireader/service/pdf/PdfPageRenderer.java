@@ -0,0 +1,524 @@
+package com.yuesf.aireader.service.pdf;
+
+import com.yuesf.aireader.config.PdfConfig;
+import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PDF页图渲染器
+ * 先查页图缓存，未命中时从文档池借用已解析文档渲染，并将结果写回缓存。
+ * 请求触发的渲染统一提交到按CPU核数设置的专用线程池执行，请求线程只负责等待结果，
+ * 突发的渲染请求只会排队或被拒绝（503），不会占满Tomcat工作线程。
+ * 同一规格的并发请求只渲染一次（single-flight），其余请求等待并共享结果。
+ */
+@Slf4j
+@Component
+public class PdfPageRenderer {
+
+    // 单页渲染耗时分布的桶上界（毫秒），最后一个桶收集其余所有
+    private static final long[] LATENCY_BUCKETS_MS = {50, 100, 250, 500, 1000, 2500, 5000};
+
+    @Autowired
+    private PageImageCache pageImageCache;
+
+    @Autowired
+    private PdfDocumentPool pdfDocumentPool;
+
+    @Autowired
+    @Qualifier("pdfRenderExecutor")
+    private ThreadPoolTaskExecutor renderExecutor;
+
+    @Autowired
+    private PdfConfig pdfConfig;
+
+    private final LongAdder renderedPages = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+    private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS_MS.length + 1];
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    // 在途渲染：同一规格的并发请求共享一次渲染
+    private final Map<PageImageKey, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public PdfPageRenderer() {
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            latencyBuckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 获取指定规格的页图，未命中缓存时在渲染线程池中渲染（用于请求线程）
+     * 同一规格已有渲染在进行时不再重复渲染，等待并共享其结果
+     * @param fileInfo PDF文件信息
+     * @param cacheKey 页图规格（页码超出范围时取最近的有效页）
+     * @return 页图字节
+     */
+    public byte[] render(FileInfo fileInfo, PageImageKey cacheKey) throws IOException {
+        byte[] cached = pageImageCache.get(fileInfo, cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        long timeoutMillis = pdfConfig.getRender().getTimeout().toMillis();
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(cacheKey, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing, timeoutMillis, false);
+        }
+        try {
+            renderExecutor.execute(() -> runFlight(fileInfo, cacheKey, flight));
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            BusinessException busy = new BusinessException(503, "渲染服务繁忙，请稍后重试");
+            // 期间加入等待的请求同样收到繁忙错误
+            inFlight.remove(cacheKey, flight);
+            flight.completeExceptionally(busy);
+            throw busy;
+        }
+        return await(flight, timeoutMillis, false);
+    }
+
+    /**
+     * 获取指定规格的页图，未命中缓存时在当前线程渲染（用于后台预渲染线程）
+     */
+    public byte[] renderInline(FileInfo fileInfo, PageImageKey cacheKey) throws IOException {
+        byte[] cached = pageImageCache.get(fileInfo, cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(cacheKey, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing, pdfConfig.getRender().getTimeout().toMillis(), false);
+        }
+        runFlight(fileInfo, cacheKey, flight);
+        return await(flight, pdfConfig.getRender().getTimeout().toMillis(), false);
+    }
+
+    /**
+     * 批量渲染连续多页并写入页图缓存
+     * 未缓存的页按文档句柄数切分成若干组并行渲染，每组借用一个独立的文档句柄并创建自己的 PDFRenderer
+     * @param fileInfo PDF文件信息
+     * @param fromPage 起始页（含）
+     * @param toPage 结束页（含）
+     * @param spec 页图规格（页码字段忽略）
+     * @return 每页的渲染结果（页码、大小、是否命中缓存、耗时）
+     */
+    public List<Map<String, Object>> renderBatch(FileInfo fileInfo, int fromPage, int toPage, PageImageKey spec) throws IOException {
+        Map<Integer, Map<String, Object>> results = new LinkedHashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (int page = fromPage; page <= toPage; page++) {
+            if (pageImageCache.contains(fileInfo, spec.withPage(page))) {
+                results.put(page, pageResult(page, -1, true, 0));
+            } else {
+                results.put(page, null);
+                missing.add(page);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            int handles = Math.max(1, pdfConfig.getDocumentPool().getMaxHandlesPerDocument());
+            int groups = Math.min(missing.size(), Math.min(handles, renderExecutor.getMaxPoolSize()));
+            List<Future<List<Map<String, Object>>>> futures = new ArrayList<>(groups);
+            for (int g = 0; g < groups; g++) {
+                // 交错分组，使各组的页面负载接近
+                List<Integer> groupPages = new ArrayList<>();
+                for (int i = g; i < missing.size(); i += groups) {
+                    groupPages.add(missing.get(i));
+                }
+                futures.add(submit(() -> renderGroup(fileInfo, groupPages, spec)));
+            }
+            long deadline = System.currentTimeMillis() + pdfConfig.getRender().getTimeout().toMillis() * missing.size();
+            for (Future<List<Map<String, Object>>> future : futures) {
+                for (Map<String, Object> result : await(future, Math.max(1, deadline - System.currentTimeMillis()))) {
+                    results.put((Integer) result.get("page"), result);
+                }
+            }
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * 指定页图是否已在缓存中
+     */
+    public boolean isCached(FileInfo fileInfo, PageImageKey cacheKey) {
+        return pageImageCache.contains(fileInfo, cacheKey);
+    }
+
+    /**
+     * 描述某页的瓦片金字塔：每个缩放级别的整页像素尺寸和瓦片行列数
+     * @param fileInfo PDF文件信息
+     * @param pageNumber 页码
+     */
+    public Map<String, Object> describeTiles(FileInfo fileInfo, int pageNumber) throws IOException {
+        int tileSize = pdfConfig.getTile().getTileSize();
+        float[] size;
+        try (PooledDocument pooled = pdfDocumentPool.borrow(fileInfo)) {
+            PDDocument document = pooled.getDocument();
+            int pageIndex = Math.max(1, Math.min(pageNumber, document.getNumberOfPages())) - 1;
+            size = displaySize(document.getPage(pageIndex));
+        }
+        int maxZoom = maxZoom(size);
+        List<Map<String, Object>> levels = new ArrayList<>();
+        for (int zoom = 0; zoom <= maxZoom; zoom++) {
+            float scale = tileScale(size, zoom);
+            int width = (int) Math.ceil(size[0] * scale);
+            int height = (int) Math.ceil(size[1] * scale);
+            Map<String, Object> level = new LinkedHashMap<>();
+            level.put("zoom", zoom);
+            level.put("width", width);
+            level.put("height", height);
+            level.put("columns", (width + tileSize - 1) / tileSize);
+            level.put("rows", (height + tileSize - 1) / tileSize);
+            levels.add(level);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("fileId", fileInfo.getId());
+        result.put("page", pageNumber);
+        result.put("tileSize", tileSize);
+        result.put("pageWidthPt", size[0]);
+        result.put("pageHeightPt", size[1]);
+        result.put("maxZoom", maxZoom);
+        result.put("levels", levels);
+        return result;
+    }
+
+    /**
+     * 渲染统计信息：线程池队列深度及单页渲染耗时
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", renderExecutor.getMaxPoolSize());
+        stats.put("activeThreads", renderExecutor.getActiveCount());
+        stats.put("queueDepth", renderExecutor.getThreadPoolExecutor().getQueue().size());
+        stats.put("queueCapacity", pdfConfig.getRender().getQueueCapacity());
+        long count = renderedPages.sum();
+        stats.put("renderedPages", count);
+        stats.put("avgRenderMs", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(renderNanos.sum() / count));
+        stats.put("maxRenderMs", TimeUnit.NANOSECONDS.toMillis(maxRenderNanos.get()));
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+            histogram.put("<" + LATENCY_BUCKETS_MS[i] + "ms", latencyBuckets[i].sum());
+        }
+        histogram.put(">=" + LATENCY_BUCKETS_MS[LATENCY_BUCKETS_MS.length - 1] + "ms", latencyBuckets[LATENCY_BUCKETS_MS.length].sum());
+        stats.put("latencyHistogram", histogram);
+        stats.put("rejected", rejected.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("inFlight", inFlight.size());
+        stats.put("executedRenders", executed.sum());
+        stats.put("coalescedRenders", coalesced.sum());
+        return stats;
+    }
+
+    /**
+     * 执行一次渲染并把结果交给所有等待者，结束后移除在途记录
+     */
+    private void runFlight(FileInfo fileInfo, PageImageKey cacheKey, CompletableFuture<byte[]> flight) {
+        try {
+            flight.complete(renderUncached(fileInfo, cacheKey));
+            executed.increment();
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+        } finally {
+            inFlight.remove(cacheKey, flight);
+        }
+    }
+
+    private byte[] renderUncached(FileInfo fileInfo, PageImageKey cacheKey) throws IOException {
+        // 排队期间可能已被其他请求或预渲染写入缓存
+        byte[] cached = pageImageCache.get(fileInfo, cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        // 从文档池借用已解析的文档，同一报告连续翻页时无需重复下载和解析
+        try (PooledDocument pooled = pdfDocumentPool.borrow(fileInfo)) {
+            return renderPage(new PDFRenderer(pooled.getDocument()), pooled.getDocument(), fileInfo, cacheKey);
+        }
+    }
+
+    private List<Map<String, Object>> renderGroup(FileInfo fileInfo, List<Integer> pages, PageImageKey spec) throws IOException {
+        List<Map<String, Object>> results = new ArrayList<>(pages.size());
+        // 正由其他请求渲染的页：归还文档句柄后再等待，避免持有句柄等待一个同样需要句柄的渲染
+        Map<Integer, CompletableFuture<byte[]>> shared = new LinkedHashMap<>();
+        try (PooledDocument pooled = pdfDocumentPool.borrow(fileInfo)) {
+            PDDocument document = pooled.getDocument();
+            PDFRenderer renderer = new PDFRenderer(document);
+            for (int page : pages) {
+                long start = System.nanoTime();
+                PageImageKey cacheKey = spec.withPage(page);
+                CompletableFuture<byte[]> flight = new CompletableFuture<>();
+                CompletableFuture<byte[]> existing = inFlight.putIfAbsent(cacheKey, flight);
+                if (existing != null) {
+                    coalesced.increment();
+                    shared.put(page, existing);
+                    continue;
+                }
+                byte[] data;
+                try {
+                    data = renderPage(renderer, document, fileInfo, cacheKey);
+                    executed.increment();
+                    flight.complete(data);
+                } catch (RuntimeException e) {
+                    flight.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    inFlight.remove(cacheKey, flight);
+                }
+                results.add(pageResult(page, data.length, false, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            }
+        }
+        for (Map.Entry<Integer, CompletableFuture<byte[]>> entry : shared.entrySet()) {
+            long start = System.nanoTime();
+            byte[] data = await(entry.getValue(), pdfConfig.getRender().getTimeout().toMillis(), false);
+            results.add(pageResult(entry.getKey(), data.length, false, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        return results;
+    }
+
+    private byte[] renderPage(PDFRenderer renderer, PDDocument document, FileInfo fileInfo, PageImageKey cacheKey) {
+        int total = document.getNumberOfPages();
+        int pageIndex = Math.max(1, Math.min(cacheKey.getPage(), total)) - 1;
+        long start = System.nanoTime();
+        try {
+            BufferedImage bim = cacheKey.getTile() != null
+                    ? renderTile(renderer, document.getPage(pageIndex), pageIndex, cacheKey.getTile())
+                    : renderer.renderImage(pageIndex, renderScale(document.getPage(pageIndex), cacheKey), ImageType.RGB);
+            byte[] imageBytes = encode(bim, cacheKey);
+            pageImageCache.put(fileInfo, cacheKey, imageBytes);
+            recordLatency(System.nanoTime() - start);
+            return imageBytes;
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("PDF页面渲染失败，文件ID: {}, 页码: {}, 错误: {}", fileInfo.getId(), cacheKey.getPage(), e.getMessage());
+            if (e.getMessage() != null && e.getMessage().contains("JPEG2000")) {
+                log.error("JPEG2000图像处理错误，请确保已安装JAI Image I/O Tools依赖");
+                throw new BusinessException("PDF包含JPEG2000图像，需要额外的图像处理组件支持");
+            }
+            throw new BusinessException("PDF页面渲染失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 只渲染瓦片覆盖的区域：在瓦片大小的画布上平移后绘制整页，画布之外的内容被裁剪，
+     * 内存占用只与瓦片大小有关，与缩放级别无关
+     */
+    private BufferedImage renderTile(PDFRenderer renderer, PDPage page, int pageIndex, PageImageKey.TileCoord tile) throws IOException {
+        int tileSize = pdfConfig.getTile().getTileSize();
+        float[] size = displaySize(page);
+        if (tile.getZoom() > maxZoom(size)) {
+            throw new BusinessException(400, "缩放级别超出范围");
+        }
+        float scale = tileScale(size, tile.getZoom());
+        int pageWidth = (int) Math.ceil(size[0] * scale);
+        int pageHeight = (int) Math.ceil(size[1] * scale);
+        int offsetX = tile.getX() * tileSize;
+        int offsetY = tile.getY() * tileSize;
+        if (offsetX >= pageWidth || offsetY >= pageHeight) {
+            throw new BusinessException(400, "瓦片坐标超出范围");
+        }
+        // 边缘瓦片按实际剩余尺寸输出
+        int width = Math.min(tileSize, pageWidth - offsetX);
+        int height = Math.min(tileSize, pageHeight - offsetY);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setBackground(Color.WHITE);
+            graphics.clearRect(0, 0, width, height);
+            graphics.setClip(0, 0, width, height);
+            graphics.translate(-offsetX, -offsetY);
+            renderer.renderPageToGraphics(pageIndex, graphics, scale);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * 页面显示尺寸（点），旋转90/270度时宽高互换
+     */
+    private float[] displaySize(PDPage page) {
+        PDRectangle box = page.getCropBox();
+        return page.getRotation() % 180 == 0
+                ? new float[]{box.getWidth(), box.getHeight()}
+                : new float[]{box.getHeight(), box.getWidth()};
+    }
+
+    /**
+     * 缩放级别对应的比例：级别0时整页宽度等于一个瓦片，每升一级翻倍，不超过分辨率上限
+     */
+    private float tileScale(float[] size, int zoom) {
+        float maxScale = pdfConfig.getTile().getMaxDpi() / 72f;
+        return Math.min(pdfConfig.getTile().getTileSize() * (float) (1L << Math.min(zoom, 30)) / Math.max(1f, size[0]), maxScale);
+    }
+
+    /**
+     * 最高缩放级别：比例首次达到分辨率上限的级别
+     */
+    private int maxZoom(float[] size) {
+        float maxScale = pdfConfig.getTile().getMaxDpi() / 72f;
+        int zoom = 0;
+        while (zoom < 30 && tileScale(size, zoom) < maxScale) {
+            zoom++;
+        }
+        return zoom;
+    }
+
+    /**
+     * 计算渲染缩放比例：按目标宽度时取满足宽度的最小比例，按DPI时为 DPI/72，均不超过分辨率上限
+     */
+    private float renderScale(PDPage page, PageImageKey cacheKey) {
+        float maxScale = PageImageVariants.MAX_DPI / 72f;
+        if (cacheKey.getWidth() <= 0) {
+            return Math.min(cacheKey.getDpi() / 72f, maxScale);
+        }
+        // 旋转90/270度时显示宽度对应页面高度
+        float pointWidth = displaySize(page)[0];
+        if (pointWidth <= 0) {
+            return PageImageVariants.DEFAULT_DPI / 72f;
+        }
+        return Math.min(cacheKey.getWidth() / pointWidth, maxScale);
+    }
+
+    /**
+     * 按规格编码页图，有损格式使用指定的压缩质量
+     */
+    private byte[] encode(BufferedImage image, PageImageKey cacheKey) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (cacheKey.getQuality() <= 0) {
+            ImageIO.write(image, cacheKey.getFormat(), baos);
+            return baos.toByteArray();
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(cacheKey.getFormat());
+        if (!writers.hasNext()) {
+            throw new IOException("缺少图片编码器: " + cacheKey.getFormat());
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(baos)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                String[] types = param.getCompressionTypes();
+                if (types != null && types.length > 0 && param.getCompressionType() == null) {
+                    // WebP 编码器需显式选择有损模式
+                    param.setCompressionType(Arrays.asList(types).contains("Lossy") ? "Lossy" : types[0]);
+                }
+                param.setCompressionQuality(cacheKey.getQuality() / 100f);
+            }
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return baos.toByteArray();
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return renderExecutor.submit(task);
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            throw new BusinessException(503, "渲染服务繁忙，请稍后重试");
+        }
+    }
+
+    private <T> T await(Future<T> future, long timeoutMillis) throws IOException {
+        return await(future, timeoutMillis, true);
+    }
+
+    /**
+     * 等待渲染结果
+     * @param cancelOnTimeout 超时或中断时是否取消任务；共享的在途渲染不能因某个等待者放弃而取消
+     */
+    private <T> T await(Future<T> future, long timeoutMillis, boolean cancelOnTimeout) throws IOException {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (cancelOnTimeout) {
+                future.cancel(true);
+            }
+            timeouts.increment();
+            throw new BusinessException(503, "页面渲染超时，请稍后重试");
+        } catch (InterruptedException e) {
+            if (cancelOnTimeout) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("等待页面渲染被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BusinessException("PDF页面渲染失败: " + cause.getMessage());
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        renderedPages.increment();
+        renderNanos.add(nanos);
+        maxRenderNanos.accumulateAndGet(nanos, Math::max);
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MS.length && millis >= LATENCY_BUCKETS_MS[bucket]) {
+            bucket++;
+        }
+        latencyBuckets[bucket].increment();
+    }
+
+    private Map<String, Object> pageResult(int page, long size, boolean cached, long renderMs) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("page", page);
+        result.put("cached", cached);
+        if (size >= 0) {
+            result.put("size", size);
+        }
+        result.put("renderMs", renderMs);
+        return result;
+    }
+}
@@ -0,0 +1,33 @@
+package com.yuesf.aireader.service.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * 从文档池借出的PDF文档句柄
+ * 使用 try-with-resources 归还，归还前该句柄只被当前线程使用
+ */
+public class PooledDocument implements AutoCloseable {
+
+    private final PdfDocumentPool pool;
+    private final PdfDocumentPool.PoolEntry entry;
+    private final PDDocument document;
+    private boolean released = false;
+
+    PooledDocument(PdfDocumentPool pool, PdfDocumentPool.PoolEntry entry, PDDocument document) {
+        this.pool = pool;
+        this.entry = entry;
+        this.document = document;
+    }
+
+    public PDDocument getDocument() {
+        return document;
+    }
+
+    @Override
+    public void close() {
+        if (!released) {
+            released = true;
+            pool.release(entry, document);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.yuesf.aireader.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpRange;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * HTTP范围请求与条件请求工具类（RFC 7232 / RFC 7233）
+ * 负责解析 Range 头（含后缀区间与多区间）、校验边界、合并重叠区间，
+ * 以及 If-None-Match / If-Modified-Since / If-Range 的判定
+ */
+@Slf4j
+public class HttpRangeUtils {
+
+    // 单个请求允许的最大区间数，超出时忽略 Range 头返回完整内容
+    private static final int MAX_RANGES = 32;
+
+    private HttpRangeUtils() {
+    }
+
+    /**
+     * 条件请求是否命中（应返回304）
+     * If-None-Match 存在时只按ETag判定（弱比较），否则按 If-Modified-Since 判定
+     * @param request 当前请求
+     * @param etag 当前资源的强ETag（带引号）
+     * @param lastModified 最后修改时间（毫秒），未知时为负数
+     * @return 是否未修改
+     */
+    public static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (StringUtils.hasText(ifNoneMatch)) {
+            return matchesAny(ifNoneMatch, etag, false);
+        }
+        long ifModifiedSince = parseDateHeader(request, "If-Modified-Since");
+        // HTTP日期精确到秒
+        return ifModifiedSince >= 0 && lastModified >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * If-Range 是否允许按区间响应
+     * 未携带 If-Range 时允许；携带ETag时要求强匹配，携带日期时要求与最后修改时间一致
+     * @param request 当前请求
+     * @param etag 当前资源的强ETag（带引号）
+     * @param lastModified 最后修改时间（毫秒），未知时为负数
+     * @return 是否可以返回206
+     */
+    public static boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (!StringUtils.hasText(ifRange)) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return !ifRange.startsWith("W/") && ifRange.equals(etag);
+        }
+        long ifRangeDate = parseDateHeader(request, "If-Range");
+        return ifRangeDate >= 0 && lastModified >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+    }
+
+    /**
+     * 解析 Range 头并转换为按起点排序、已合并重叠和相邻部分的闭区间列表
+     * @param rangeHeader Range 头
+     * @param length 资源总长度
+     * @return 区间列表（每项为 [start, end]，均含）；Range 头无效或应被忽略时返回 null；
+     *         所有区间都无法满足时返回空列表（应返回416）
+     */
+    public static List<long[]> resolveRanges(String rangeHeader, long length) {
+        if (!StringUtils.hasText(rangeHeader)) {
+            return null;
+        }
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // 语法错误或单位不是 bytes 时按规范忽略 Range 头
+            log.debug("忽略无效的Range头: {}, {}", rangeHeader, e.getMessage());
+            return null;
+        }
+        if (httpRanges.isEmpty() || httpRanges.size() > MAX_RANGES) {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>();
+        for (HttpRange httpRange : httpRanges) {
+            try {
+                long start = httpRange.getRangeStart(length);
+                long end = httpRange.getRangeEnd(length);
+                if (start <= end) {
+                    ranges.add(new long[]{start, end});
+                }
+            } catch (IllegalArgumentException e) {
+                // 起点超出资源长度的区间无法满足，跳过
+            }
+        }
+        if (ranges.isEmpty()) {
+            return ranges;
+        }
+
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>();
+        long[] current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] next = ranges.get(i);
+            if (next[0] <= current[1] + 1) {
+                current = new long[]{current[0], Math.max(current[1], next[1])};
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /**
+     * 判断ETag列表头是否包含指定ETag
+     * @param header If-None-Match / If-Match 头
+     * @param etag 当前资源的强ETag（带引号）
+     * @param strong 是否强比较
+     */
+    private static boolean matchesAny(String header, String etag, boolean strong) {
+        if ("*".equals(header.trim())) {
+            return true;
+        }
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                if (strong) {
+                    continue;
+                }
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long parseDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
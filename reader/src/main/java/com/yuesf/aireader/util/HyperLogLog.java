@@ -0,0 +1,111 @@
+package com.yuesf.aireader.util;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog 基数估计
+ * 2^precision 个寄存器（每个一字节），内存固定，与加入的元素数量无关；标准误差约 1.04 / sqrt(2^precision)。
+ * 多个实例可合并（取寄存器最大值），用于按时间桶统计后汇总去重数。非线程安全。
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision 寄存器数的位数，取值 4~16
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog precision 取值范围为 4~16");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * 加入一个元素
+     */
+    public void add(String value) {
+        long hash = hash64(value);
+        int index = (int) (hash >>> (64 - precision));
+        // 剩余位的前导零个数 + 1，全零时取上限
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * 合并另一个同精度的实例
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("HyperLogLog 精度不同，无法合并");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * 估计去重元素数
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+        double estimate = alpha * m * m / sum;
+        // 小基数时用线性计数修正
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * 占用的寄存器字节数
+     */
+    public int sizeInBytes() {
+        return registers.length;
+    }
+
+    /**
+     * 64位字符串哈希：FNV-1a 后再做 MurmurHash3 的 fmix64 混合，使高位分布均匀
+     */
+    static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
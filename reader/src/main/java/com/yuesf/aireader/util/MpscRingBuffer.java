@@ -0,0 +1,85 @@
+package com.yuesf.aireader.util;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 有界多生产者单消费者环形缓冲
+ * 生产者通过 CAS 认领序号后写入槽位，无锁；唯一的消费者线程按序号顺序取出并清空槽位。
+ * 槽位已被认领但尚未写入时消费者停在该位置，下次取出时继续，保证顺序不乱。
+ * @param <E> 元素类型
+ */
+public class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    // 只由消费者线程写入
+    private volatile long consumerIndex = 0;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * 放入元素，缓冲已满时立即返回 false
+     * @param element 元素，不能为 null
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        while (true) {
+            long index = producerIndex.get();
+            if (index - consumerIndex >= capacity) {
+                return false;
+            }
+            if (producerIndex.compareAndSet(index, index + 1)) {
+                slots.lazySet((int) (index & mask), element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 取出最多 max 个元素追加到 sink，只能由消费者线程调用
+     * @return 取出的元素数
+     */
+    public int drainTo(List<? super E> sink, int max) {
+        long index = consumerIndex;
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) (index & mask);
+            E element = slots.get(slot);
+            if (element == null) {
+                break;
+            }
+            // 先清空槽位再推进序号，生产者看到新序号时该槽位已可复用
+            slots.lazySet(slot, null);
+            sink.add(element);
+            index++;
+            drained++;
+        }
+        consumerIndex = index;
+        return drained;
+    }
+
+    /**
+     * 当前元素数（近似值）
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(capacity, producerIndex.get() - consumerIndex));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,70 @@
+package com.yuesf.aireader.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving 频繁项统计
+ * 最多跟踪 capacity 个键，内存固定；已满时新键替换计数最小的键并继承其计数，
+ * 因此每个键的计数最多高估被替换键的计数，出现次数超过总数 / capacity 的键一定会被保留。
+ * 多个实例的计数可按键相加后取前 K 个，用于按时间桶统计后汇总热门项。非线程安全。
+ */
+public class SpaceSavingTopK {
+
+    private final int capacity;
+    private final Map<String, long[]> counters;
+
+    /**
+     * @param capacity 最多跟踪的键数
+     */
+    public SpaceSavingTopK(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("SpaceSavingTopK capacity 必须大于0");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * 累加一个键的计数
+     */
+    public void add(String key, long increment) {
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0] += increment;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[]{increment});
+            return;
+        }
+        // 替换计数最小的键（capacity 较小，线性查找即可）
+        String minKey = null;
+        long minCount = Long.MAX_VALUE;
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if (entry.getValue()[0] < minCount) {
+                minCount = entry.getValue()[0];
+                minKey = entry.getKey();
+            }
+        }
+        counters.remove(minKey);
+        counters.put(key, new long[]{minCount + increment});
+    }
+
+    /**
+     * 把当前计数按键累加到 totals
+     */
+    public void addTo(Map<String, Long> totals) {
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            totals.merge(entry.getKey(), entry.getValue()[0], Long::sum);
+        }
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,90 @@
+package com.yuesf.aireader.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 流传输工具类
+ * 从OSS流或本地文件向响应写出数据：复用池化缓冲区，读写过程中不产生新的字节数组。
+ * 写出使用阻塞的 Servlet 输出流，客户端读取变慢时写入自然阻塞，不会在内存中堆积数据。
+ */
+public class StreamTransferUtils {
+
+    // 单个传输缓冲区大小：64KB
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // 池中最多保留的缓冲区数量，超出的归还后直接丢弃
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private static final ArrayBlockingQueue<byte[]> BUFFER_POOL = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    private StreamTransferUtils() {
+    }
+
+    /**
+     * 将输入流全部写入输出流
+     * @param input 输入流（不负责关闭）
+     * @param output 输出流（不负责关闭）
+     * @return 写出的字节数
+     */
+    public static long copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = borrowBuffer();
+        try {
+            long total = 0;
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    /**
+     * 将文件通道的 [position, position + count) 写入输出流
+     * 按位置读取，不修改通道的当前位置，多个请求可并发读取同一通道。
+     * 数据经池化的堆缓冲区复制一次，Servlet 输出流只接受字节数组，这里不使用 {@link FileChannel#transferTo}
+     * @param source 文件通道（不负责关闭）
+     * @param position 起始位置
+     * @param count 字节数
+     * @param output 输出流（不负责关闭）
+     */
+    public static void copy(FileChannel source, long position, long count, OutputStream output) throws IOException {
+        byte[] buffer = borrowBuffer();
+        try {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            long remaining = count;
+            long cursor = position;
+            while (remaining > 0) {
+                byteBuffer.clear();
+                if (remaining < buffer.length) {
+                    byteBuffer.limit((int) remaining);
+                }
+                int read = source.read(byteBuffer, cursor);
+                if (read <= 0) {
+                    throw new IOException("文件读取中断，位置: " + cursor + ", 剩余: " + remaining);
+                }
+                output.write(buffer, 0, read);
+                cursor += read;
+                remaining -= read;
+            }
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    private static byte[] borrowBuffer() {
+        byte[] buffer = BUFFER_POOL.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    private static void returnBuffer(byte[] buffer) {
+        BUFFER_POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,196 @@
+package com.yuesf.aireader.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 带过期时间的有界LRU缓存
+ * 条目数超过上限时淘汰最久未访问的条目；加载结果为 null 时按较短的负缓存时间缓存，避免不存在的键反复穿透到数据库。
+ * 加载在锁外执行；加载期间若发生失效，加载结果不写入缓存，避免旧数据覆盖失效操作。
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class TtlLruCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    // 每次失效递增，用于识别加载期间发生的失效
+    private long invalidationVersion = 0;
+
+    private long hits = 0;
+    private long negativeHits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long expirations = 0;
+    private long invalidations = 0;
+
+    /**
+     * @param maxSize 最大条目数
+     * @param ttl 有值条目的存活时间
+     * @param negativeTtl 空值条目的存活时间，为0时不缓存空值
+     */
+    public TtlLruCache(int maxSize, Duration ttl, Duration negativeTtl) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMillis = ttl.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TtlLruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存值，未命中或已过期时调用 loader 加载并缓存
+     * @param key 键
+     * @param loader 加载函数，可返回 null
+     * @return 缓存或加载的值，可能为 null
+     */
+    public V get(K key, Function<K, V> loader) {
+        long version;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expireAt > System.currentTimeMillis()) {
+                    if (entry.value == null) {
+                        negativeHits++;
+                    } else {
+                        hits++;
+                    }
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            version = invalidationVersion;
+        }
+
+        V value = loader.apply(key);
+
+        long ttl = value == null ? negativeTtlMillis : ttlMillis;
+        if (ttl > 0) {
+            synchronized (this) {
+                if (version == invalidationVersion) {
+                    entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttl));
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 获取未过期的缓存值，不触发加载；未命中或为负缓存时返回 null
+     */
+    public synchronized V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.expireAt <= System.currentTimeMillis()) {
+            misses++;
+            return null;
+        }
+        if (entry.value == null) {
+            negativeHits++;
+        } else {
+            hits++;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 直接写入缓存值
+     */
+    public synchronized void put(K key, V value) {
+        long ttl = value == null ? negativeTtlMillis : ttlMillis;
+        if (ttl > 0) {
+            entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttl));
+        }
+    }
+
+    /**
+     * 当前失效版本号，在缓存外部读取数据前获取，写入时交给 {@link #putIfVersion}
+     */
+    public synchronized long version() {
+        return invalidationVersion;
+    }
+
+    /**
+     * 写入缓存值；读取数据后若发生过失效（版本号已变化）则放弃写入，避免旧数据覆盖失效操作
+     * @param version 读取数据前通过 {@link #version()} 获取的版本号
+     * @return 是否写入
+     */
+    public synchronized boolean putIfVersion(K key, V value, long version) {
+        if (version != invalidationVersion) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    /**
+     * 失效单个键
+     */
+    public synchronized void invalidate(K key) {
+        invalidationVersion++;
+        if (entries.remove(key) != null) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * 失效满足条件的键
+     */
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        invalidationVersion++;
+        int before = entries.size();
+        entries.keySet().removeIf(predicate);
+        invalidations += before - entries.size();
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void invalidateAll() {
+        invalidationVersion++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public synchronized Map<String, Object> getStats() {
+        long lookups = hits + negativeHits + misses;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits);
+        stats.put("negativeHits", negativeHits);
+        stats.put("misses", misses);
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) (hits + negativeHits) / lookups);
+        stats.put("evictions", evictions);
+        stats.put("expirations", expirations);
+        stats.put("invalidations", invalidations);
+        return stats;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expireAt;
+
+        Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
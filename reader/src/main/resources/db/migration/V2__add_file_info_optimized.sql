@@ -0,0 +1,5 @@
+-- 为file_info表添加线性化优化后对象字段
+-- 执行时间: 2026-10-17
+
+ALTER TABLE file_info ADD COLUMN IF NOT EXISTS optimized_file_name VARCHAR(500);
+ALTER TABLE file_info ADD COLUMN IF NOT EXISTS optimized_file_size BIGINT;
@@ -0,0 +1,7 @@
+-- 为报告列表常用排序列添加 (排序列, id) 组合索引，支持游标分页按索引定位
+-- 执行时间: 2026-10-17
+
+CREATE INDEX IF NOT EXISTS idx_reports_publish_date_id ON reports(publish_date, id);
+CREATE INDEX IF NOT EXISTS idx_reports_update_date_id ON reports(update_date, id);
+CREATE INDEX IF NOT EXISTS idx_reports_view_count_id ON reports(view_count, id);
+CREATE INDEX IF NOT EXISTS idx_reports_download_count_id ON reports(download_count, id);
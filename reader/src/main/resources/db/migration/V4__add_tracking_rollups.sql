@@ -0,0 +1,12 @@
+-- 新增埋点事件汇总表，统计接口按分钟/小时/天汇总读取，历史数据由压缩任务补建
+-- 执行时间: 2026-10-17
+
+CREATE TABLE IF NOT EXISTS tracking_rollups (
+    granularity VARCHAR(8) NOT NULL,
+    bucket_start BIGINT NOT NULL,
+    event_type VARCHAR(32) NOT NULL,
+    page_path VARCHAR(128) NOT NULL DEFAULT '',
+    element_id VARCHAR(64) NOT NULL DEFAULT '',
+    event_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (granularity, bucket_start, event_type, page_path, element_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='埋点事件汇总表';
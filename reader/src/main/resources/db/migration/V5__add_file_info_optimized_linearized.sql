@@ -0,0 +1,5 @@
+-- 为file_info表添加优化后对象是否已线性化的标记，qpdf 不可用、仅压缩图片时优化后对象未线性化
+-- 已有的优化对象无法确定是否线性化，按未线性化处理
+-- 执行时间: 2026-10-17
+
+ALTER TABLE file_info ADD COLUMN IF NOT EXISTS optimized_linearized BOOLEAN DEFAULT FALSE;
@@ -46,7 +46,10 @@ CREATE TABLE IF NOT EXISTS file_info (
     upload_user_id VARCHAR(50),
     status VARCHAR(20) DEFAULT 'ACTIVE',
     request_id VARCHAR(100),
-    page_nums INT DEFAULT 0
+    page_nums INT DEFAULT 0,
+    optimized_file_name VARCHAR(500) COMMENT '线性化（快速网页查看）优化后的OSS对象键',
+    optimized_file_size BIGINT COMMENT '优化后对象大小',
+    optimized_linearized TINYINT(1) DEFAULT 0 COMMENT '优化后对象是否已线性化（仅压缩图片时为否）'
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='文件信息表';
 
 -- 后台用户表
@@ -112,6 +115,17 @@ CREATE TABLE IF NOT EXISTS tracking_events (
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='埋点事件表';
 
+-- 埋点事件汇总表（按分钟/小时/天，空的页面路径、元素ID存为空串）
+CREATE TABLE IF NOT EXISTS tracking_rollups (
+    granularity VARCHAR(8) NOT NULL,
+    bucket_start BIGINT NOT NULL,
+    event_type VARCHAR(32) NOT NULL,
+    page_path VARCHAR(128) NOT NULL DEFAULT '',
+    element_id VARCHAR(64) NOT NULL DEFAULT '',
+    event_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (granularity, bucket_start, event_type, page_path, element_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='埋点事件汇总表';
+
 -- 索引（MySQL 5.7 不支持 IF NOT EXISTS；默认空库初始化不重复执行）
 CREATE INDEX idx_tracking_events_user_id ON tracking_events(user_id);
 CREATE INDEX idx_tracking_events_timestamp ON tracking_events(timestamp);
@@ -127,4 +141,10 @@ CREATE INDEX idx_user_sessions_start_time ON user_sessions(start_time);
 CREATE INDEX idx_tracking_events_user_time ON tracking_events(user_id, timestamp);
 CREATE INDEX idx_tracking_events_page_time ON tracking_events(page_path, timestamp);
 
+-- 报告列表排序（游标分页按 (排序列, id) 定位）
+CREATE INDEX idx_reports_publish_date_id ON reports(publish_date, id);
+CREATE INDEX idx_reports_update_date_id ON reports(update_date, id);
+CREATE INDEX idx_reports_view_count_id ON reports(view_count, id);
+CREATE INDEX idx_reports_download_count_id ON reports(download_count, id);
+
 SET FOREIGN_KEY_CHECKS=1;
\ No newline at end of file
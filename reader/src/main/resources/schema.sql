@@ -41,7 +41,10 @@ CREATE TABLE IF NOT EXISTS file_info (
     upload_user_id VARCHAR(50),
     status VARCHAR(20) DEFAULT 'ACTIVE', -- ACTIVE, DELETED
     request_id VARCHAR(100),
-    page_nums INTEGER DEFAULT 0
+    page_nums INTEGER DEFAULT 0,
+    optimized_file_name VARCHAR(500), -- 线性化（快速网页查看）优化后的OSS对象键
+    optimized_file_size BIGINT,
+    optimized_linearized BOOLEAN DEFAULT FALSE -- 优化后对象是否已线性化（仅压缩图片时为否）
 );
 
 -- 后台用户表（简单账号密码，实际生产请使用加盐哈希）
@@ -110,6 +113,17 @@ CREATE TABLE IF NOT EXISTS tracking_events (
     FOREIGN KEY (session_id) REFERENCES user_sessions(session_id)
 );
 
+-- 埋点事件汇总表
+CREATE TABLE IF NOT EXISTS tracking_rollups (
+    granularity VARCHAR(8) NOT NULL, -- minute, hour, day
+    bucket_start BIGINT NOT NULL, -- 时间桶起点（毫秒）
+    event_type VARCHAR(32) NOT NULL,
+    page_path VARCHAR(128) NOT NULL DEFAULT '', -- 空串表示无页面路径
+    element_id VARCHAR(64) NOT NULL DEFAULT '', -- 空串表示无元素ID
+    event_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (granularity, bucket_start, event_type, page_path, element_id)
+);
+
 -- 创建索引优化查询性能
 CREATE INDEX IF NOT EXISTS idx_tracking_events_user_id ON tracking_events(user_id);
 CREATE INDEX IF NOT EXISTS idx_tracking_events_timestamp ON tracking_events(timestamp);
@@ -124,3 +138,9 @@ CREATE INDEX IF NOT EXISTS idx_user_sessions_start_time ON user_sessions(start_t
 -- 创建复合索引支持常用查询
 CREATE INDEX IF NOT EXISTS idx_tracking_events_user_time ON tracking_events(user_id, timestamp);
 CREATE INDEX IF NOT EXISTS idx_tracking_events_page_time ON tracking_events(page_path, timestamp);
+
+-- 报告列表排序（游标分页按 (排序列, id) 定位）
+CREATE INDEX IF NOT EXISTS idx_reports_publish_date_id ON reports(publish_date, id);
+CREATE INDEX IF NOT EXISTS idx_reports_update_date_id ON reports(update_date, id);
+CREATE INDEX IF NOT EXISTS idx_reports_view_count_id ON reports(view_count, id);
+CREATE INDEX IF NOT EXISTS idx_reports_download_count_id ON reports(download_count, id);
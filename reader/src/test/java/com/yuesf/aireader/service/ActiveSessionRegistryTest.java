@@ -0,0 +1,164 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.TrackingConfig;
+import com.yuesf.aireader.entity.tracking.SessionStats;
+import com.yuesf.aireader.entity.tracking.TrackingEvent;
+import com.yuesf.aireader.mapper.tracking.TrackingEventMapper;
+import com.yuesf.aireader.mapper.tracking.UserSessionMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 活跃会话登记表测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ActiveSessionRegistryTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final int PAGES = 50;
+
+    @Mock
+    private TrackingEventMapper trackingEventMapper;
+
+    @Mock
+    private UserSessionMapper userSessionMapper;
+
+    @Spy
+    private TrackingConfig trackingConfig = new TrackingConfig();
+
+    @InjectMocks
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    /**
+     * 新会话登记后累加 2000 个事件：不读取任何事件或会话行，写回的统计正确
+     */
+    @Test
+    void longNewSessionNeverReadsDatabase() {
+        activeSessionRegistry.register("s1", "{}", "wifi", false);
+
+        List<TrackingEvent> events = sessionEvents("s1", 2000);
+        // 按客户端上报的批次大小分批累加
+        for (int i = 0; i < events.size(); i += 20) {
+            activeSessionRegistry.record(events.subList(i, i + 20));
+        }
+        activeSessionRegistry.flush();
+
+        verifyNoInteractions(trackingEventMapper);
+        verify(userSessionMapper, never()).selectBySessionId(any());
+        SessionStats stats = flushedStats();
+        assertEquals(2000, stats.getEventCount());
+        assertEquals(PAGES, stats.getPageCount());
+        assertEquals(START, stats.getFirstTimestamp());
+        assertEquals(START + 1999 * 1000L, stats.getLastTimestamp());
+        assertEquals(1999, stats.getDuration());
+    }
+
+    /**
+     * 已有事件的会话登记时只汇总一次，之后 1200 个事件均在内存中累加
+     */
+    @Test
+    void existingSessionLoadsSummaryOnce() {
+        when(trackingEventMapper.selectSessionSummary("s2"))
+                .thenReturn(new SessionStats("s2", 300, 2, 0, START - 60_000, START - 1000, null, null));
+        when(trackingEventMapper.selectDistinctPagePaths("s2")).thenReturn(List.of("/pages/page0", "/pages/home"));
+        activeSessionRegistry.register("s2", "{}", "4g", true);
+
+        List<TrackingEvent> events = sessionEvents("s2", 1200);
+        for (TrackingEvent event : events) {
+            activeSessionRegistry.record(List.of(event));
+        }
+        activeSessionRegistry.flush();
+
+        verify(trackingEventMapper, times(1)).selectSessionSummary("s2");
+        verify(trackingEventMapper, times(1)).selectDistinctPagePaths("s2");
+        verify(trackingEventMapper, never()).selectBySessionId(any());
+        verify(userSessionMapper, never()).selectBySessionId(any());
+        SessionStats stats = flushedStats();
+        assertEquals(1500, stats.getEventCount());
+        // “/pages/page0” 已在汇总中，不重复计数
+        assertEquals(PAGES + 1, stats.getPageCount());
+        assertEquals(START - 60_000, stats.getFirstTimestamp());
+        assertEquals(START + 1199 * 1000L, stats.getLastTimestamp());
+    }
+
+    /**
+     * 单事件耗时对比：改造前每个事件读取会话全部事件重新统计，改造后原地累加。
+     * 改造前的路径以内存列表代替数据库查询，不含网络和数据库开销，仍随会话长度线性增长
+     */
+    @Test
+    void compareWithFullRecompute() {
+        for (int size : new int[]{1000, 5000}) {
+            List<TrackingEvent> events = sessionEvents("b" + size, size);
+
+            long start = System.nanoTime();
+            List<TrackingEvent> stored = new ArrayList<>();
+            long rowsRead = 0;
+            long pageCount = 0;
+            for (TrackingEvent event : events) {
+                stored.add(event);
+                rowsRead += stored.size();
+                pageCount = stored.stream()
+                        .filter(e -> "page_view".equals(e.getEventType()))
+                        .map(TrackingEvent::getPagePath)
+                        .distinct()
+                        .count();
+            }
+            double legacyMicros = (System.nanoTime() - start) / 1e3 / size;
+            assertEquals(PAGES, pageCount);
+
+            activeSessionRegistry.register("b" + size, "{}", "wifi", false);
+            start = System.nanoTime();
+            for (TrackingEvent event : events) {
+                activeSessionRegistry.record(List.of(event));
+            }
+            double incrementalMicros = (System.nanoTime() - start) / 1e3 / size;
+
+            System.out.printf("会话事件数 %d：全量重算 %.2f µs/事件（共读取 %d 行），增量累加 %.3f µs/事件（读取 0 行）%n",
+                    size, legacyMicros, rowsRead, incrementalMicros);
+        }
+        verifyNoInteractions(trackingEventMapper);
+        activeSessionRegistry.flush();
+        verify(userSessionMapper).updateSessionStats(anyList());
+    }
+
+    private SessionStats flushedStats() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SessionStats>> captor = ArgumentCaptor.forClass(List.class);
+        verify(userSessionMapper).updateSessionStats(captor.capture());
+        assertEquals(1, captor.getValue().size());
+        return captor.getValue().get(0);
+    }
+
+    /**
+     * 生成会话事件：每秒一个，奇数为点击事件，偶数为在 PAGES 个页面间轮换的浏览事件
+     */
+    private static List<TrackingEvent> sessionEvents(String sessionId, int count) {
+        List<TrackingEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TrackingEvent event = new TrackingEvent();
+            event.setSessionId(sessionId);
+            event.setTimestamp(START + i * 1000L);
+            event.setEventType(i % 2 == 0 ? "page_view" : "click");
+            event.setPagePath("/pages/page" + (i / 2) % PAGES);
+            events.add(event);
+        }
+        return events;
+    }
+}
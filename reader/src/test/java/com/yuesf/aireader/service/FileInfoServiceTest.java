@@ -0,0 +1,86 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.CacheConfig;
+import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.event.FileInfoChangedEvent;
+import com.yuesf.aireader.mapper.FileInfoMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 文件信息服务测试
+ */
+@ExtendWith(MockitoExtension.class)
+class FileInfoServiceTest {
+
+    @Mock
+    private FileInfoMapper fileInfoMapper;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private CacheConfig cacheConfig = new CacheConfig();
+
+    @InjectMocks
+    private FileInfoService fileInfoService;
+
+    @BeforeEach
+    void setUp() {
+        fileInfoService.init();
+    }
+
+    /**
+     * 页数更新不发布变更事件：预渲染队列、页图缓存和已解析文档只随该事件失效，因此保持不变
+     */
+    @Test
+    void updatePageNumsKeepsPrerenderAndPageCache() {
+        when(fileInfoMapper.selectById("file_1")).thenReturn(fileInfo("file_1", null), fileInfo("file_1", 12));
+        assertEquals(null, fileInfoService.getFileInfoById("file_1").getPageNums());
+
+        fileInfoService.updatePageNums("file_1", 12);
+
+        ArgumentCaptor<FileInfo> update = ArgumentCaptor.forClass(FileInfo.class);
+        verify(fileInfoMapper).updateFileInfo(update.capture());
+        assertEquals("file_1", update.getValue().getId());
+        assertEquals(12, update.getValue().getPageNums());
+        verify(eventPublisher, never()).publishEvent(any());
+        // 文件信息缓存已失效，重新加载到新页数
+        assertEquals(12, fileInfoService.getFileInfoById("file_1").getPageNums());
+        verify(fileInfoMapper, times(2)).selectById("file_1");
+    }
+
+    /**
+     * 状态变更仍发布变更事件
+     */
+    @Test
+    void updateFileStatusPublishesChange() {
+        fileInfoService.updateFileStatus("file_1", "INACTIVE");
+
+        ArgumentCaptor<FileInfoChangedEvent> event = ArgumentCaptor.forClass(FileInfoChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("file_1", event.getValue().getFileId());
+    }
+
+    private static FileInfo fileInfo(String id, Integer pageNums) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setId(id);
+        fileInfo.setStatus("ACTIVE");
+        fileInfo.setPageNums(pageNums);
+        return fileInfo;
+    }
+}
@@ -0,0 +1,88 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.CacheConfig;
+import com.yuesf.aireader.entity.FileInfo;
+import com.yuesf.aireader.mapper.FileInfoMapper;
+import com.yuesf.aireader.service.pdf.OssObjectMirror;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PDF文件流服务测试
+ */
+@ExtendWith(MockitoExtension.class)
+class PdfStreamServiceTest {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNK_COUNT = 30;
+
+    @Mock
+    private FileInfoMapper fileInfoMapper;
+
+    @Mock
+    private OssObjectMirror ossObjectMirror;
+
+    @Mock
+    private ReportCounterService reportCounterService;
+
+    @InjectMocks
+    private PdfStreamService pdfStreamService;
+
+    @BeforeEach
+    void setUp() {
+        // 文件信息服务使用真实缓存，只模拟底层 Mapper
+        FileInfoService fileInfoService = new FileInfoService();
+        ReflectionTestUtils.setField(fileInfoService, "fileInfoMapper", fileInfoMapper);
+        ReflectionTestUtils.setField(fileInfoService, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(fileInfoService, "cacheConfig", new CacheConfig());
+        fileInfoService.init();
+        ReflectionTestUtils.setField(pdfStreamService, "fileInfoService", fileInfoService);
+    }
+
+    /**
+     * 回放一次30个分片的下载：文件信息只查询一次数据库，其余分片命中缓存
+     */
+    @Test
+    void chunkedDownloadQueriesFileInfoOnce() throws Exception {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setId("file_1");
+        fileInfo.setFileName("reports/file_1.pdf");
+        fileInfo.setFileType("pdf");
+        fileInfo.setFileSize((long) CHUNK_SIZE * CHUNK_COUNT);
+        fileInfo.setStatus("ACTIVE");
+        when(fileInfoMapper.selectById("file_1")).thenReturn(fileInfo);
+        OssObjectMirror.ObjectVersion version = mock(OssObjectMirror.ObjectVersion.class);
+        when(version.getETag()).thenReturn("\"etag\"");
+        when(version.getLastModified()).thenReturn(-1L);
+        when(ossObjectMirror.getObjectVersion("reports/file_1.pdf", (long) CHUNK_SIZE * CHUNK_COUNT)).thenReturn(version);
+
+        for (int chunk = 0; chunk < CHUNK_COUNT; chunk++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            pdfStreamService.streamPdfChunk("file_1", chunk, null, new MockHttpServletRequest(), response);
+            assertEquals(String.valueOf(CHUNK_SIZE), response.getHeader("Content-Length"));
+        }
+
+        verify(fileInfoMapper, times(1)).selectById("file_1");
+        verify(ossObjectMirror, times(CHUNK_COUNT)).transferTo(eq("reports/file_1.pdf"), anyLong(), anyLong(), anyLong(), any(OutputStream.class));
+        verify(reportCounterService, times(1)).recordFileDownload("file_1");
+    }
+}
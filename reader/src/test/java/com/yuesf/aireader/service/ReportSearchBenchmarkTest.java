@@ -0,0 +1,238 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.SearchConfig;
+import com.yuesf.aireader.entity.Report;
+import com.yuesf.aireader.mapper.ReportMapper;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 报告关键词检索基准：数据库 LIKE 扫描与内存检索索引对比
+ * 在 H2 内存库中建立与 schema.sql 相同的 reports / report_tags 表，分别写入 1万、10万篇生成的报告，
+ * 数据库路径执行 ReportMapper.xml 中真实的 selectReports + countReports，
+ * 索引路径执行 ReportSearchIndex.search 后按ID读取当页报告（与 ReportService.getReportList 一致）。
+ * 输出每种关键词两条路径的平均耗时，以及索引构建耗时。运行时间较长，默认不执行：
+ * mvn test -Dtest=ReportSearchBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ReportSearchBenchmarkTest {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP_ROUNDS = 1;
+    // 每条查询最多执行的轮数和总时长，较慢的数据库路径在时长用完后停止
+    private static final int MEASURE_ROUNDS = 10;
+    private static final long MEASURE_NANOS = 5_000_000_000L;
+
+    private static final String[] WORDS = {
+            "数字经济", "人工智能", "芯片", "新能源汽车", "光伏", "储能", "医疗器械", "创新药", "消费电子", "云计算",
+            "大模型", "半导体", "锂电池", "跨境电商", "直播带货", "碳中和", "智能制造", "工业互联网", "数据中心", "元宇宙",
+            "市场规模", "竞争格局", "产业链", "投融资", "政策解读", "发展趋势", "行业研究", "用户画像", "商业模式", "供应链",
+            "区域经济", "城市更新", "乡村振兴", "养老产业", "教育科技", "金融科技", "保险", "证券", "银行", "房地产",
+            "物流", "快递", "餐饮", "零售", "旅游", "文化娱乐", "游戏", "短视频", "社交媒体", "广告营销",
+            "AI", "SaaS", "ESG", "IoT", "5G", "GPU", "Cloud", "Fintech", "Robotics", "EV"
+    };
+    private static final String[] CATEGORIES = {"宏观", "科技", "消费", "医疗", "金融", "能源", "制造", "地产", "文娱", "汽车"};
+    private static final String[] SOURCES = {"国家统计局", "艾瑞咨询", "IDC", "Gartner", "中信证券", "华泰证券", "麦肯锡", "德勤",
+            "普华永道", "毕马威", "易观", "QuestMobile", "头豹研究院", "前瞻产业研究院", "36氪研究院", "亿欧智库",
+            "罗兰贝格", "波士顿咨询", "贝恩", "埃森哲"};
+
+    // 填充字取自基本汉字区开头的这些字，两两组成填充词
+    private static final int FILLER_CHARS = 500;
+
+    private static final String[] KEYWORDS = {"数字经济", "新能源汽车", "芯", "市场规模", "AI 芯片", "gpu"};
+
+    @Test
+    void compareAt10k() throws Exception {
+        run(10_000);
+    }
+
+    @Test
+    void compareAt100k() throws Exception {
+        run(100_000);
+    }
+
+    private void run(int reportCount) throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:reports" + reportCount + ";DB_CLOSE_DELAY=-1");
+        createTables(dataSource);
+        insertReports(dataSource, reportCount);
+
+        SqlSessionFactory factory = sessionFactory(dataSource);
+        try (SqlSession session = factory.openSession(true)) {
+            ReportMapper reportMapper = session.getMapper(ReportMapper.class);
+
+            ReportSearchIndex index = new ReportSearchIndex();
+            ReflectionTestUtils.setField(index, "reportMapper", reportMapper);
+            ReflectionTestUtils.setField(index, "searchConfig", new SearchConfig());
+            long buildStart = System.nanoTime();
+            assertTrue(index.rebuild());
+            long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+            System.out.printf("报告数 %d，索引构建 %d ms，索引统计 %s%n", reportCount, buildMillis, index.getStats());
+
+            for (String keyword : KEYWORDS) {
+                long[] sqlTotal = new long[1];
+                double sqlMillis = measure(() -> {
+                    reportMapper.selectReports(keyword, null, null, null, null, null, null, "publishDate", "desc", 0, PAGE_SIZE);
+                    sqlTotal[0] = reportMapper.countReports(keyword, null, null, null, null, null, null);
+                });
+                long[] indexTotal = new long[1];
+                double indexMillis = measure(() -> {
+                    ReportSearchIndex.SearchResult result = index.search(keyword, null, null, null, null, null, null,
+                            ReportSearchIndex.SORT_RELEVANCE, "desc", 0, PAGE_SIZE);
+                    if (!result.getIds().isEmpty()) {
+                        List<Report> rows = reportMapper.selectByIds(result.getIds());
+                        assertEquals(result.getIds().size(), rows.size());
+                    }
+                    indexTotal[0] = result.getTotal();
+                });
+                System.out.printf("报告数 %d，关键词 \"%s\"：SQL %.2f ms（命中 %d），索引 %.2f ms（命中 %d），加速 %.1f 倍%n",
+                        reportCount, keyword, sqlMillis, sqlTotal[0], indexMillis, indexTotal[0], sqlMillis / indexMillis);
+                if (keyword.codePoints().allMatch(Character::isIdeographic) && keyword.length() > 1) {
+                    // 多字中文关键词：子串命中必然包含全部二元组，索引结果是 SQL 结果的超集
+                    assertTrue(indexTotal[0] >= sqlTotal[0], keyword);
+                }
+            }
+        }
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private static double measure(Runnable query) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            query.run();
+        }
+        long start = System.nanoTime();
+        int rounds = 0;
+        do {
+            query.run();
+            rounds++;
+        } while (rounds < MEASURE_ROUNDS && System.nanoTime() - start < MEASURE_NANOS);
+        return (System.nanoTime() - start) / 1e6 / rounds;
+    }
+
+    /**
+     * 取 schema.sql 中 reports、report_tags 的建表与索引语句
+     */
+    private static void createTables(JdbcDataSource dataSource) throws Exception {
+        String schema;
+        try (InputStream input = ReportSearchBenchmarkTest.class.getResourceAsStream("/schema.sql")) {
+            schema = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : schema.split(";")) {
+                if (sql.contains("CREATE TABLE IF NOT EXISTS reports ")
+                        || sql.contains("CREATE TABLE IF NOT EXISTS report_tags ")
+                        || sql.contains(" ON reports(")) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    private static void insertReports(JdbcDataSource dataSource, int reportCount) throws Exception {
+        Random random = new Random(reportCount);
+        LocalDate firstDate = LocalDate.of(2020, 1, 1);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement reports = connection.prepareStatement(
+                     "INSERT INTO reports (id, title, summary, source, category, pages, file_size, publish_date, update_date) "
+                             + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement tags = connection.prepareStatement("INSERT INTO report_tags (report_id, tag) VALUES (?, ?)")) {
+            connection.setAutoCommit(false);
+            for (int i = 0; i < reportCount; i++) {
+                String id = String.format("r%07d", i);
+                LocalDate publishDate = firstDate.plusDays(random.nextInt(2000));
+                reports.setString(1, id);
+                reports.setString(2, phrase(random, 4 + random.nextInt(3), 1) + "报告");
+                reports.setString(3, phrase(random, 40 + random.nextInt(40), 2));
+                reports.setString(4, SOURCES[random.nextInt(SOURCES.length)]);
+                reports.setString(5, CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                reports.setInt(6, 10 + random.nextInt(200));
+                reports.setLong(7, 100_000L + random.nextInt(10_000_000));
+                reports.setDate(8, Date.valueOf(publishDate));
+                reports.setDate(9, Date.valueOf(publishDate));
+                reports.addBatch();
+                List<String> reportTags = new ArrayList<>();
+                for (int t = 1 + random.nextInt(3); t > 0; t--) {
+                    String tag = WORDS[random.nextInt(WORDS.length)];
+                    if (!reportTags.contains(tag)) {
+                        reportTags.add(tag);
+                        tags.setString(1, id);
+                        tags.setString(2, tag);
+                        tags.addBatch();
+                    }
+                }
+                if (i % 1000 == 999) {
+                    reports.executeBatch();
+                    tags.executeBatch();
+                }
+            }
+            reports.executeBatch();
+            tags.executeBatch();
+            connection.commit();
+        }
+    }
+
+    /**
+     * 生成由随机常用字组成的填充词，其中随机位置放入 topics 个主题词，使每个关键词只命中一小部分报告
+     */
+    private static String phrase(Random random, int words, int topics) {
+        List<String> parts = new ArrayList<>();
+        for (int i = 0; i < words; i++) {
+            parts.add(new String(new int[]{filler(random), filler(random)}, 0, 2));
+        }
+        for (int i = 0; i < topics; i++) {
+            parts.set(random.nextInt(words), WORDS[random.nextInt(WORDS.length)]);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (String part : parts) {
+            // 英文词前后保留空格，避免与相邻文字拼成一个词
+            builder.append(part.charAt(0) < 128 ? " " + part + " " : part);
+            if (random.nextInt(6) == 0) {
+                builder.append('，');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int filler(Random random) {
+        return 0x4E00 + random.nextInt(FILLER_CHARS);
+    }
+
+    private static SqlSessionFactory sessionFactory(JdbcDataSource dataSource) throws Exception {
+        Configuration configuration = new Configuration(new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        // 关闭会话级缓存，否则重复查询直接返回缓存结果
+        configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+        configuration.getTypeAliasRegistry().registerAliases("com.yuesf.aireader.entity");
+        String resource = "mappers/ReportMapper.xml";
+        try (InputStream input = ReportSearchBenchmarkTest.class.getClassLoader().getResourceAsStream(resource)) {
+            new XMLMapperBuilder(input, configuration, resource, configuration.getSqlFragments()).parse();
+        }
+        return new SqlSessionFactoryBuilder().build(configuration);
+    }
+}
@@ -0,0 +1,178 @@
+package com.yuesf.aireader.service;
+
+import com.yuesf.aireader.config.SearchConfig;
+import com.yuesf.aireader.dto.FacetCount;
+import com.yuesf.aireader.entity.Report;
+import com.yuesf.aireader.entity.ReportTag;
+import com.yuesf.aireader.mapper.ReportMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+/**
+ * 报告全文检索索引测试
+ */
+@ExtendWith(MockitoExtension.class)
+class ReportSearchIndexTest {
+
+    @Mock
+    private ReportMapper reportMapper;
+
+    @Spy
+    private SearchConfig searchConfig = new SearchConfig();
+
+    @InjectMocks
+    private ReportSearchIndex reportSearchIndex;
+
+    // 报告ID -> 标签
+    private final Map<String, List<String>> tags = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        tags.put("r1", List.of("数字经济"));
+        tags.put("r2", List.of("半导体"));
+    }
+
+    @Test
+    void tokenizeSplitsCjkIntoBigrams() {
+        // 末字单独输出，使每个汉字都是某个词项的首字
+        assertEquals(List.of("数字", "字经", "经济", "济"), ReportSearchIndex.tokenize("数字经济"));
+        assertEquals(List.of("芯"), ReportSearchIndex.tokenize("芯"));
+    }
+
+    @Test
+    void tokenizeSplitsMixedLatinAndCjk() {
+        assertEquals(List.of("ai", "芯片", "片", "2024", "年报", "报"), ReportSearchIndex.tokenize("AI芯片2024年报"));
+        assertEquals(List.of("hello", "world"), ReportSearchIndex.tokenize("Hello, World!"));
+        assertTrue(ReportSearchIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    void parseQueryUsesExactBigramsAndPrefixTerms() {
+        assertEquals(List.of(term("数字", false), term("字经", false), term("经济", false)),
+                ReportSearchIndex.parseQuery("数字经济"));
+        // 单字和英文整词按前缀匹配
+        assertEquals(List.of(term("芯", true)), ReportSearchIndex.parseQuery("芯"));
+        assertEquals(List.of(term("ai", true), term("芯片", false)), ReportSearchIndex.parseQuery("AI 芯片"));
+        // 重复词项只保留一个
+        assertEquals(List.of(term("经济", false), term("济经", false)), ReportSearchIndex.parseQuery("经济经济"));
+        assertTrue(ReportSearchIndex.parseQuery(" ,!? ").isEmpty());
+    }
+
+    @Test
+    void searchRequiresAllCjkBigrams() {
+        build();
+
+        ReportSearchIndex.SearchResult result = search("数字经济");
+
+        // r3 只包含“数字”，不包含“字经”“经济”
+        assertEquals(List.of("r1"), result.getIds());
+        assertEquals(1, result.getTotal());
+    }
+
+    @Test
+    void searchMatchesSingleCharacterByPrefix() {
+        build();
+
+        ReportSearchIndex.SearchResult result = search("芯");
+
+        // r2 标题命中，权重高于 r3 的摘要命中
+        assertEquals(List.of("r2", "r3"), result.getIds());
+    }
+
+    @Test
+    void searchMatchesMixedLatinAndCjk() {
+        build();
+
+        assertEquals(List.of("r2", "r3"), search("AI 芯片").getIds().stream().sorted().toList());
+        assertEquals(List.of("r3"), search("infra").getIds());
+        assertNull(search("!!!"));
+    }
+
+    @Test
+    void deleteAndReAddKeepFacetCounts() {
+        build();
+        assertEquals(Map.of("科技", 2L, "宏观", 1L), facetCounts("categories"));
+        assertEquals(Map.of("数字经济", 1L, "半导体", 1L), facetCounts("tags"));
+
+        when(reportMapper.selectById("r2")).thenReturn(null);
+        reportSearchIndex.refresh("r2");
+
+        assertEquals(Map.of("科技", 1L, "宏观", 1L), facetCounts("categories"));
+        assertEquals(Map.of("数字经济", 1L), facetCounts("tags"));
+        assertEquals(List.of("r3"), search("芯").getIds());
+
+        when(reportMapper.selectById("r2")).thenReturn(reports().get(1));
+        reportSearchIndex.refresh("r2");
+
+        assertEquals(Map.of("科技", 2L, "宏观", 1L), facetCounts("categories"));
+        assertEquals(Map.of("数字经济", 1L, "半导体", 1L), facetCounts("tags"));
+        assertEquals(Map.of("IDC", 1L, "Gartner", 1L, "国家统计局", 1L), facetCounts("sources"));
+        assertEquals(List.of("r2", "r3"), search("芯").getIds());
+    }
+
+    private void build() {
+        when(reportMapper.selectIndexBatch(isNull(), anyInt())).thenReturn(reports());
+        when(reportMapper.selectTagsByReportIds(anyList())).thenAnswer(invocation -> {
+            List<String> ids = invocation.getArgument(0);
+            List<ReportTag> rows = new ArrayList<>();
+            for (String id : ids) {
+                for (String tag : tags.getOrDefault(id, List.of())) {
+                    rows.add(new ReportTag(id, tag));
+                }
+            }
+            return rows;
+        });
+        assertTrue(reportSearchIndex.rebuild());
+        assertTrue(reportSearchIndex.isReady());
+    }
+
+    private ReportSearchIndex.SearchResult search(String keyword) {
+        return reportSearchIndex.search(keyword, null, null, null, null, null, null,
+                ReportSearchIndex.SORT_RELEVANCE, "desc", 0, 10);
+    }
+
+    private Map<String, Long> facetCounts(String facet) {
+        return reportSearchIndex.getFacets(10).get(facet).stream()
+                .collect(Collectors.toMap(FacetCount::getName, FacetCount::getCount));
+    }
+
+    private static List<Report> reports() {
+        return List.of(
+                report("r1", "数字经济发展报告", "全国数字经济规模持续增长", "宏观", "国家统计局"),
+                report("r2", "芯片产业研究", "AI芯片市场规模与竞争格局", "科技", "IDC"),
+                report("r3", "AI Infrastructure Outlook", "数字化转型带动芯片需求", "科技", "Gartner"));
+    }
+
+    private static Report report(String id, String title, String summary, String category, String source) {
+        Report report = new Report();
+        report.setId(id);
+        report.setTitle(title);
+        report.setSummary(summary);
+        report.setCategory(category);
+        report.setSource(source);
+        return report;
+    }
+
+    private static ReportSearchIndex.QueryTerm term(String text, boolean prefix) {
+        return new ReportSearchIndex.QueryTerm(text, prefix);
+    }
+}
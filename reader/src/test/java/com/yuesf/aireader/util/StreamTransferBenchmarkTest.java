@@ -0,0 +1,141 @@
+package com.yuesf.aireader.util;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 流传输吞吐与分配基准
+ * 对 50MB 文件比较改造前的复制方式（8KB 缓冲区，每次读取另分配一个字节数组）与池化缓冲区的两条路径，
+ * 输出每种方式的吞吐（MB/s）和每次传输的堆分配字节数。吞吐只输出不断言，分配量断言池化路径不随传输量增长。
+ */
+class StreamTransferBenchmarkTest {
+
+    private static final int FILE_SIZE = 50 * 1024 * 1024;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURE_ROUNDS = 5;
+
+    private static Path pdf;
+
+    @BeforeAll
+    static void createFile() throws IOException {
+        pdf = Files.createTempFile("stream-benchmark", ".pdf");
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        try (FileChannel channel = FileChannel.open(pdf, StandardOpenOption.WRITE)) {
+            for (int written = 0; written < FILE_SIZE; written += block.length) {
+                channel.write(ByteBuffer.wrap(block));
+            }
+        }
+    }
+
+    @AfterAll
+    static void deleteFile() throws IOException {
+        Files.deleteIfExists(pdf);
+    }
+
+    @Test
+    void compareCopyPaths() throws IOException {
+        Result legacy = measure("改造前 8KB缓冲+逐次分配", sink -> {
+            try (InputStream input = Files.newInputStream(pdf)) {
+                return legacyCopy(input, sink, FILE_SIZE);
+            }
+        });
+        Result pooledStream = measure("池化缓冲 InputStream", sink -> {
+            try (InputStream input = Files.newInputStream(pdf)) {
+                return StreamTransferUtils.copy(input, sink);
+            }
+        });
+        Result pooledChannel = measure("池化缓冲 FileChannel", sink -> {
+            try (FileChannel channel = FileChannel.open(pdf, StandardOpenOption.READ)) {
+                StreamTransferUtils.copy(channel, 0, FILE_SIZE, sink);
+                return FILE_SIZE;
+            }
+        });
+
+        // 改造前每读取一次就分配一份数据副本，分配量与传输量相当
+        assertTrue(legacy.allocatedPerRound >= FILE_SIZE, legacy.toString());
+        // 池化路径的分配量与传输量无关，只有流对象等常量开销
+        assertTrue(pooledStream.allocatedPerRound < 1024 * 1024, pooledStream.toString());
+        assertTrue(pooledChannel.allocatedPerRound < 1024 * 1024, pooledChannel.toString());
+    }
+
+    /**
+     * 改造前 streamPdfFromOss 的复制循环
+     */
+    private static long legacyCopy(InputStream input, OutputStream output, long length) throws IOException {
+        byte[] buffer = new byte[8192];
+        int bytesRead;
+        long totalBytesRead = 0;
+        while ((bytesRead = input.read(buffer)) != -1 && totalBytesRead < length) {
+            byte[] actualData = new byte[bytesRead];
+            System.arraycopy(buffer, 0, actualData, 0, bytesRead);
+            output.write(actualData);
+            totalBytesRead += bytesRead;
+        }
+        return totalBytesRead;
+    }
+
+    private static Result measure(String name, Copier copier) throws IOException {
+        CountingOutputStream sink = new CountingOutputStream();
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            copier.copy(sink);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        sink.count = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            assertEquals(FILE_SIZE, copier.copy(sink));
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        assertEquals((long) FILE_SIZE * MEASURE_ROUNDS, sink.count);
+        Result result = new Result(name, sink.count * 1e9 / elapsed / (1024 * 1024), allocated / MEASURE_ROUNDS);
+        System.out.println(result);
+        return result;
+    }
+
+    private interface Copier {
+        long copy(OutputStream sink) throws IOException;
+    }
+
+    /**
+     * 只计数不保存数据的输出流
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private record Result(String name, double megabytesPerSecond, long allocatedPerRound) {
+        @Override
+        public String toString() {
+            return String.format("%s: %.0f MB/s, 每次传输分配 %d 字节", name, megabytesPerSecond, allocatedPerRound);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.yuesf.aireader.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 带过期时间的LRU缓存测试
+ */
+class TtlLruCacheTest {
+
+    @Test
+    void cachesLoadedValue() {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v", cache.get("k", k -> { loads.incrementAndGet(); return "v"; }));
+        assertEquals("v", cache.get("k", k -> { loads.incrementAndGet(); return "other"; }));
+
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.getStats().get("hits"));
+    }
+
+    @Test
+    void cachesMissingKeyForNegativeTtl() throws InterruptedException {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(10, Duration.ofMinutes(1), Duration.ofMillis(50));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("k", k -> { loads.incrementAndGet(); return null; }));
+        assertNull(cache.get("k", k -> { loads.incrementAndGet(); return null; }));
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.getStats().get("negativeHits"));
+
+        // 负缓存过期后重新加载
+        Thread.sleep(80);
+        assertEquals("v", cache.get("k", k -> { loads.incrementAndGet(); return "v"; }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void zeroNegativeTtlDoesNotCacheMissingKey() {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(10, Duration.ofMinutes(1), Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("k", k -> { loads.incrementAndGet(); return null; });
+        cache.get("k", k -> { loads.incrementAndGet(); return null; });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void expiresValueAfterTtl() throws InterruptedException {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(10, Duration.ofMillis(50), Duration.ZERO);
+        cache.put("k", "v");
+        assertEquals("v", cache.getIfPresent("k"));
+
+        Thread.sleep(80);
+        assertNull(cache.getIfPresent("k"));
+        assertEquals("new", cache.get("k", k -> "new"));
+        assertEquals(1L, cache.getStats().get("expirations"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(2, Duration.ofMinutes(1), Duration.ZERO);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        // 访问 a 后 b 成为最久未访问的条目
+        cache.getIfPresent("a");
+        cache.put("c", "3");
+
+        assertEquals("1", cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertEquals("3", cache.getIfPresent("c"));
+        assertEquals(1L, cache.getStats().get("evictions"));
+    }
+
+    @Test
+    void invalidationDuringLoadDropsLoadedValue() {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+        // 加载期间发生失效，加载到的旧值只返回给本次调用，不写入缓存
+        assertEquals("old", cache.get("k", k -> { cache.invalidate(k); return "old"; }));
+        assertNull(cache.getIfPresent("k"));
+        assertEquals("new", cache.get("k", k -> "new"));
+        assertEquals("new", cache.getIfPresent("k"));
+    }
+
+    @Test
+    void putIfVersionRejectsStaleVersion() {
+        TtlLruCache<String, String> cache = new TtlLruCache<>(10, Duration.ofMinutes(1), Duration.ZERO);
+        long version = cache.version();
+        cache.invalidateIf(k -> k.startsWith("list:"));
+
+        assertFalse(cache.putIfVersion("list:1", "stale", version));
+        assertNull(cache.getIfPresent("list:1"));
+        assertTrue(cache.putIfVersion("list:1", "fresh", cache.version()));
+        assertEquals("fresh", cache.getIfPresent("list:1"));
+    }
+}